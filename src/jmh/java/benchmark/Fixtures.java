@@ -0,0 +1,84 @@
+package benchmark;
+
+import parser.SourceFile;
+import tokenizer.line.AbstractLineTokenizer;
+import tokenizer.line.java.JavaLemmeLineTokenizer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Corpora of the benchmarks: the java fixtures of the tests, and scaled copies of them.
+ * Benchmarks are run from the project directory, or from the directory given by the {@value #DIR_PROPERTY} property.
+ */
+public final class Fixtures {
+
+    public static final String DIR_PROPERTY = "benchmark.fixtures";
+    private static final String DEFAULT_DIR = "src/test/resources/files";
+
+    private Fixtures() throws IllegalAccessException {
+        throw new IllegalAccessException("Utility class : static access only.");
+    }
+
+    public static Path directory() {
+        return Paths.get(System.getProperty(DIR_PROPERTY, DEFAULT_DIR)).toAbsolutePath();
+    }
+
+    /**
+     * @return the non-empty java fixtures, sorted by name.
+     */
+    public static List<Path> javaFiles() throws IOException {
+        try (Stream<Path> paths = Files.list(directory())) {
+            return paths.filter(p -> p.toString().endsWith(".java")).filter(p -> p.toFile().length() > 0).sorted().collect(Collectors.toList());
+        }
+    }
+
+    public static Path javaFile(String name) {
+        return directory().resolve(name);
+    }
+
+    /**
+     * @return the non-empty tokenized lines of every java fixture.
+     */
+    public static List<Iterable<String>> sentences() throws Exception {
+        AbstractLineTokenizer tokenizer = new JavaLemmeLineTokenizer();
+        List<Iterable<String>> res = new ArrayList<>();
+        for (Path p : javaFiles()) {
+            for (Iterable<String> line : tokenizer.tokenize(SourceFile.read(p).reader())) {
+                if (line != null && line.iterator().hasNext()) {
+                    res.add(line);
+                }
+            }
+        }
+        return res;
+    }
+
+    /**
+     * @param copies number of copies of the sentences.
+     * @return the sentences repeated, the identifiers of each copy being renamed so that the vocabulary and the n-grams
+     * grow with the copies, as in a larger code base.
+     */
+    public static List<Iterable<String>> scaled(List<Iterable<String>> sentences, int copies) {
+        List<Iterable<String>> res = new ArrayList<>(sentences.size() * copies);
+        for (int c = 0; c < copies; c++) {
+            for (Iterable<String> sentence : sentences) {
+                List<String> copy = new ArrayList<>();
+                for (String token : sentence) {
+                    copy.add(c == 0 || !isIdentifier(token) ? token : token + '_' + c);
+                }
+                res.add(copy);
+            }
+        }
+        return res;
+    }
+
+    private static boolean isIdentifier(String token) {
+        return token != null && !token.isEmpty() && Character.isJavaIdentifierStart(token.charAt(0)) && Character.isLowerCase(token.charAt(0));
+    }
+}
@@ -0,0 +1,32 @@
+package benchmark;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * "-name=value" options of the benchmark tools.
+ */
+final class Options {
+
+    private Options() throws IllegalAccessException {
+        throw new IllegalAccessException("Utility class : static access only.");
+    }
+
+    /**
+     * @throws IllegalArgumentException on malformed or unknown options.
+     */
+    static Map<String, String> parse(String[] args, String... names) {
+        List<String> known = Arrays.asList(names);
+        Map<String, String> res = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("-") || eq < 0 || !known.contains(arg.substring(1, eq))) {
+                throw new IllegalArgumentException("Unknown option : " + arg + ", expected -name=value with name in " + known);
+            }
+            res.put(arg.substring(1, eq), arg.substring(eq + 1));
+        }
+        return res;
+    }
+}
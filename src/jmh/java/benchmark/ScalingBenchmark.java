@@ -0,0 +1,125 @@
+package benchmark;
+
+import cli.CliRequest;
+import utils.Json;
+import utils.RunMetrics;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * End-to-end scaling benchmark: for each corpus size, generates a {@link SyntheticCorpus}, then runs
+ * {@link CliRequest#parseArgs(String...)}, train and rank on it, with a few of its files as targets, and reports
+ * the training and ranking times, the training tokens per second and the peak heap, as a JSON array.
+ * <p>
+ * {@code java -Xmx8g -cp target/benchmarks.jar benchmark.ScalingBenchmark -lines=1000,10000,100000,1000000 -engine=INT -out=scaling.json}
+ * <p>
+ * Sizes are run one after the other in the same JVM, from the smallest: run one size per JVM for exact peak heaps.
+ * The heap is collected once before each run, then the used heap is sampled every {@value #SAMPLING_MS} ms: the peak
+ * includes the garbage not collected yet, it bounds the live heap from above.
+ */
+public final class ScalingBenchmark {
+
+    static final String DEFAULT_LINES = "1000,10000,100000,1000000";
+    static final int TARGETS = 10;
+    private static final int SAMPLING_MS = 5;
+
+    private ScalingBenchmark() throws IllegalAccessException {
+        throw new IllegalAccessException("Utility class : static access only.");
+    }
+
+    public static void main(String... args) throws Exception {
+        Map<String, String> options = Options.parse(args, "lines", "engine", "n", "tokenizer", "vocabulary", "skew", "seed", "dir", "out");
+        Path dir = options.containsKey("dir") ? Paths.get(options.get("dir")) : Files.createTempDirectory("corpus");
+        List<Object> results = new ArrayList<>();
+        for (String lines : options.getOrDefault("lines", DEFAULT_LINES).split(",")) {
+            SyntheticCorpus corpus = SyntheticCorpus.ofLines(Integer.parseInt(lines.trim()),
+                    Integer.parseInt(options.getOrDefault("vocabulary", String.valueOf(SyntheticCorpus.DEFAULT_VOCABULARY))),
+                    Double.parseDouble(options.getOrDefault("skew", String.valueOf(SyntheticCorpus.DEFAULT_SKEW))),
+                    Long.parseLong(options.getOrDefault("seed", String.valueOf(SyntheticCorpus.DEFAULT_SEED))));
+            Path repo = dir.resolve("lines" + lines.trim());
+            List<Path> files = corpus.generate(repo);
+            Map<String, Object> result = run(Integer.parseInt(lines.trim()), repo, files, options);
+            System.out.println(Json.write(result));
+            results.add(result);
+            if (!options.containsKey("dir")) {
+                delete(repo);
+            }
+        }
+        if (options.containsKey("out")) {
+            Files.write(Paths.get(options.get("out")), Json.write(results).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static Map<String, Object> run(int lines, Path repo, List<Path> files, Map<String, String> options) throws Exception {
+        List<String> args = new ArrayList<>(Arrays.asList(
+                "-repo=" + repo.toAbsolutePath(),
+                "-engine=" + options.getOrDefault("engine", "INT"),
+                "-n=" + options.getOrDefault("n", "4"),
+                "-ex_w_in_path="));
+        if (options.containsKey("tokenizer")) {
+            args.add("-tokenizer=" + options.get("tokenizer"));
+        }
+        for (Path target : files.subList(0, Math.min(TARGETS, files.size()))) {
+            args.add("-in=" + target.toAbsolutePath());
+        }
+
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        System.gc();
+        AtomicLong peak = new AtomicLong(memory.getHeapMemoryUsage().getUsed());
+        Thread sampler = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                peak.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max);
+                try {
+                    Thread.sleep(SAMPLING_MS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        });
+        sampler.setDaemon(true);
+        sampler.start();
+        long start = System.nanoTime();
+        long trained, end, tokens = 0;
+        List<?> ranked;
+        try (CliRequest<?, ?> request = CliRequest.parseArgs(args.toArray(new String[0]))) {
+            request.train();
+            trained = System.nanoTime();
+            ranked = (List<?>) request.rank();
+            end = System.nanoTime();
+            for (RunMetrics.Phase phase : request.getMetrics().getPhases()) {
+                if (phase.getName().equals("training")) {
+                    tokens += phase.getTokens();
+                }
+            }
+        } finally {
+            sampler.interrupt();
+            sampler.join();
+        }
+        Map<String, Object> res = new LinkedHashMap<>();
+        res.put("lines", lines);
+        res.put("files", files.size());
+        res.put("tokens", tokens);
+        res.put("ranked", ranked.size());
+        res.put("train_ms", TimeUnit.NANOSECONDS.toMillis(trained - start));
+        res.put("rank_ms", TimeUnit.NANOSECONDS.toMillis(end - trained));
+        res.put("train_tokens_per_sec", tokens * 1e9 / Math.max(1, trained - start));
+        res.put("peak_heap_mb", peak.get() / (1024d * 1024d));
+        return res;
+    }
+
+    private static void delete(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+}
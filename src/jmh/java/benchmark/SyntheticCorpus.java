@@ -0,0 +1,167 @@
+package benchmark;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Generates reproducible synthetic java repositories from the fixtures, to measure how the ranking scales.
+ * <p>
+ * Each file recombines code lines of the fixtures drawn at random, comments, imports and blank lines apart, and renames
+ * their identifiers after a vocabulary whose words are drawn with a Zipf distribution: the higher the skew, the more
+ * a few identifiers dominate, as in real code bases; a skew of 0 draws them uniformly. Identifiers are renamed
+ * consistently within a file. The same parameters and seed always generate the same repository.
+ * <p>
+ * {@code java -cp target/benchmarks.jar benchmark.SyntheticCorpus -out=dir -files=100 -lines=200 -vocabulary=5000 -skew=1.1 -seed=1}
+ */
+public final class SyntheticCorpus {
+
+    static final int DEFAULT_LINES_PER_FILE = 200;
+    static final int DEFAULT_VOCABULARY = 5000;
+    static final double DEFAULT_SKEW = 1.1;
+    static final long DEFAULT_SEED = 1L;
+    private static final int FILES_PER_PACKAGE = 100;
+    private static final Pattern IDENTIFIER = Pattern.compile("\\b[A-Za-z_][A-Za-z0-9_]*\\b");
+    private static final Set<String> KEYWORDS = new HashSet<>(Arrays.asList(
+            "abstract", "assert", "boolean", "break", "byte", "case", "catch", "char", "class", "const", "continue",
+            "default", "do", "double", "else", "enum", "extends", "final", "finally", "float", "for", "goto", "if",
+            "implements", "import", "instanceof", "int", "interface", "long", "native", "new", "package", "private",
+            "protected", "public", "return", "short", "static", "strictfp", "super", "switch", "synchronized", "this",
+            "throw", "throws", "transient", "try", "void", "volatile", "while", "true", "false", "null",
+            "String", "Object", "List", "Set", "Map"));
+
+    private final int files;
+    private final int linesPerFile;
+    private final int vocabulary;
+    private final double skew;
+    private final long seed;
+
+    /**
+     * @param vocabulary number of distinct identifiers the renamed ones are drawn from.
+     * @param skew       exponent of the Zipf distribution of the identifiers, 0 for a uniform one.
+     */
+    public SyntheticCorpus(int files, int linesPerFile, int vocabulary, double skew, long seed) {
+        if (files < 1 || linesPerFile < 1 || vocabulary < 1 || skew < 0) {
+            throw new IllegalArgumentException(String.format("invalid corpus: files=%d, lines=%d, vocabulary=%d, skew=%f", files, linesPerFile, vocabulary, skew));
+        }
+        this.files = files;
+        this.linesPerFile = linesPerFile;
+        this.vocabulary = vocabulary;
+        this.skew = skew;
+        this.seed = seed;
+    }
+
+    /**
+     * @return a corpus of about the given number of lines, in files of the default size.
+     */
+    public static SyntheticCorpus ofLines(int lines, int vocabulary, double skew, long seed) {
+        int files = Math.max(1, (lines + DEFAULT_LINES_PER_FILE - 1) / DEFAULT_LINES_PER_FILE);
+        return new SyntheticCorpus(files, Math.min(lines, DEFAULT_LINES_PER_FILE), vocabulary, skew, seed);
+    }
+
+    /**
+     * @param directory created if it does not exist, the files are written in packages of {@value #FILES_PER_PACKAGE}.
+     * @return the generated files.
+     */
+    public List<Path> generate(Path directory) throws IOException {
+        List<String> lines = codeLines();
+        double[] cumulative = zipf(vocabulary, skew);
+        Random random = new Random(seed);
+        List<Path> res = new ArrayList<>(files);
+        for (int f = 0; f < files; f++) {
+            String pkg = "p" + f / FILES_PER_PACKAGE;
+            String name = "Gen" + f;
+            Map<String, String> renamed = new HashMap<>();
+            List<String> content = new ArrayList<>(linesPerFile + 3);
+            content.add("package gen." + pkg + ";");
+            content.add("public class " + name + " {");
+            for (int l = 0; l < linesPerFile; l++) {
+                content.add(rename(lines.get(random.nextInt(lines.size())), renamed, cumulative, random));
+            }
+            content.add("}");
+            Path file = directory.resolve(pkg).resolve(name + ".java");
+            Files.createDirectories(file.getParent());
+            res.add(Files.write(file, content, StandardCharsets.UTF_8));
+        }
+        return res;
+    }
+
+    /**
+     * @return the code lines of the fixtures, without comments, package, imports nor blank lines.
+     */
+    static List<String> codeLines() throws IOException {
+        List<String> res = new ArrayList<>();
+        for (Path p : Fixtures.javaFiles()) {
+            for (String line : Files.readAllLines(p, StandardCharsets.UTF_8)) {
+                String trimmed = line.trim();
+                if (trimmed.isEmpty() || trimmed.startsWith("*") || trimmed.startsWith("//") || trimmed.contains("/*")
+                        || trimmed.contains("*/") || trimmed.startsWith("package ") || trimmed.startsWith("import ")) {
+                    continue;
+                }
+                res.add(line);
+            }
+        }
+        if (res.isEmpty()) {
+            throw new IllegalStateException("No code line in the fixtures of " + Fixtures.directory());
+        }
+        return res;
+    }
+
+    private static String rename(String line, Map<String, String> renamed, double[] cumulative, Random random) {
+        Matcher m = IDENTIFIER.matcher(line);
+        StringBuffer sb = new StringBuffer();
+        while (m.find()) {
+            String identifier = m.group();
+            if (KEYWORDS.contains(identifier)) {
+                continue;
+            }
+            String replacement = renamed.computeIfAbsent(identifier, id -> {
+                int rank = draw(cumulative, random);
+                return (Character.isUpperCase(id.charAt(0)) ? "T" : "v") + rank;
+            });
+            m.appendReplacement(sb, replacement);
+        }
+        m.appendTail(sb);
+        return sb.toString();
+    }
+
+    /**
+     * @return the cumulative probabilities of the ranks 1 to size, each one weighted by 1 / rank^skew.
+     */
+    static double[] zipf(int size, double skew) {
+        double[] cumulative = new double[size];
+        double sum = 0;
+        for (int r = 0; r < size; r++) {
+            sum += 1d / Math.pow(r + 1, skew);
+            cumulative[r] = sum;
+        }
+        for (int r = 0; r < size; r++) {
+            cumulative[r] /= sum;
+        }
+        return cumulative;
+    }
+
+    private static int draw(double[] cumulative, Random random) {
+        int i = Arrays.binarySearch(cumulative, random.nextDouble());
+        return i >= 0 ? i : Math.min(-i - 1, cumulative.length - 1);
+    }
+
+    public static void main(String... args) throws IOException {
+        Map<String, String> options = Options.parse(args, "out", "files", "lines", "vocabulary", "skew", "seed");
+        if (!options.containsKey("out") || !options.containsKey("files")) {
+            throw new IllegalArgumentException("usage: -out=dir -files=100 [-lines=200 -vocabulary=5000 -skew=1.1 -seed=1]");
+        }
+        SyntheticCorpus corpus = new SyntheticCorpus(
+                Integer.parseInt(options.get("files")),
+                Integer.parseInt(options.getOrDefault("lines", String.valueOf(DEFAULT_LINES_PER_FILE))),
+                Integer.parseInt(options.getOrDefault("vocabulary", String.valueOf(DEFAULT_VOCABULARY))),
+                Double.parseDouble(options.getOrDefault("skew", String.valueOf(DEFAULT_SKEW))),
+                Long.parseLong(options.getOrDefault("seed", String.valueOf(DEFAULT_SEED))));
+        System.out.println(corpus.generate(Paths.get(options.get("out"))).size() + " files generated.");
+    }
+}
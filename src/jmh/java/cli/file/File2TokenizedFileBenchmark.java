@@ -0,0 +1,42 @@
+package cli.file;
+
+import benchmark.Fixtures;
+import org.openjdk.jmh.annotations.*;
+import parser.File;
+import tokenizer.file.AbstractFileTokenizer;
+import tokenizer.file.UTFFileTokenizer;
+import tokenizer.file.java.xml.JavaLemmeTokenizer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * reading and tokenizing one fixture as a whole, per file tokenizer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class File2TokenizedFileBenchmark {
+
+    @Param({"F_JP", "F_UTF8"})
+    public String tokenizer;
+
+    @Param({"User.java", "Role.java", "UserRole.java", "ArgumentImpl.java", "WriteableCommandLine.java", "ControlledNumber.java"})
+    public String file;
+
+    private File2TokenizedFileTask task;
+
+    @Setup
+    public void setUp() {
+        AbstractFileTokenizer fileTokenizer = "F_JP".equals(tokenizer) ? new JavaLemmeTokenizer() : new UTFFileTokenizer();
+        String path = Fixtures.javaFile(file).toString();
+        task = new File2TokenizedFileTask(path, Fixtures.directory().toString(), fileTokenizer);
+    }
+
+    @Benchmark
+    public File tokenize() throws Exception {
+        return task.call();
+    }
+}
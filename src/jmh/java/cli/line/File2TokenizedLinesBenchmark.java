@@ -0,0 +1,43 @@
+package cli.line;
+
+import benchmark.Fixtures;
+import org.openjdk.jmh.annotations.*;
+import parser.Line;
+import tokenizer.line.AbstractLineTokenizer;
+import tokenizer.line.UTFLineTokenizer;
+import tokenizer.line.java.JavaLemmeLineTokenizer;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * reading and tokenizing one fixture into lines, per line tokenizer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class File2TokenizedLinesBenchmark {
+
+    @Param({"JP", "UTF8"})
+    public String tokenizer;
+
+    @Param({"User.java", "Role.java", "UserRole.java", "ArgumentImpl.java", "WriteableCommandLine.java", "ControlledNumber.java"})
+    public String file;
+
+    private File2TokenizedLinesTask task;
+
+    @Setup
+    public void setUp() {
+        AbstractLineTokenizer lineTokenizer = "JP".equals(tokenizer) ? new JavaLemmeLineTokenizer() : new UTFLineTokenizer();
+        String path = Fixtures.javaFile(file).toString();
+        task = new File2TokenizedLinesTask(path, Fixtures.directory().toString(), lineTokenizer);
+    }
+
+    @Benchmark
+    public List<Line> tokenize() throws Exception {
+        return task.call();
+    }
+}
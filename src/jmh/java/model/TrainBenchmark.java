@@ -0,0 +1,47 @@
+package model;
+
+import benchmark.Fixtures;
+import modelling.exception.TrainingFailedException;
+import modelling.infrastructure.kylm.ngram.smoother.KNSmoother;
+import modelling.main.kylm.SmootherFactory;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * training a model on the fixtures, scaled by a number of renamed copies, per engine and n-gram size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TrainBenchmark {
+
+    @Param({"KYLM", "INT"})
+    public String engine;
+
+    @Param({"2", "3", "4", "5", "6"})
+    public int n;
+
+    @Param({"1", "100"})
+    public int copies;
+
+    private List<Iterable<String>> sentences;
+
+    @Setup
+    public void setUp() throws Exception {
+        sentences = Fixtures.scaled(Fixtures.sentences(), copies);
+    }
+
+    @Benchmark
+    public LanguageModel train() throws TrainingFailedException {
+        ModelTrainer trainer = "KYLM".equals(engine)
+                ? KylmLanguageModel.trainer(n, SmootherFactory.create(KNSmoother.ABV), 1)
+                : KneserNeyModel.trainer(n, 1);
+        trainer.add(0, sentences);
+        return trainer.train();
+    }
+}
@@ -0,0 +1,64 @@
+package output;
+
+import org.openjdk.jmh.annotations.*;
+import parser.Line;
+import parser.LineResults;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * writing the csv of ranked lines, from {@link Line}s or from their columns.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CsvPrinterBenchmark {
+
+    @Param({"1000", "100000"})
+    public int size;
+
+    private Path output;
+    private List<Line> lines;
+    private LineResults results;
+
+    @Setup
+    public void setUp() throws IOException {
+        output = Files.createTempFile("ranking", ".csv");
+        lines = new ArrayList<>(size);
+        results = new LineResults(size);
+        List<String> tokens = Arrays.asList("int", "i", "=", "0", ";");
+        for (int i = 0; i < size; i++) {
+            Line line = new Line("/src/main/java/pkg/File" + (i % 100) + ".java", i + 1, tokens);
+            double entropy = (double) i / size;
+            line.calculateEntropy(t -> entropy);
+            lines.add(line);
+            results.setEntropy(results.add(line.getFilePath(), line.getLineNumber(), line.getTokensCount()), entropy);
+        }
+    }
+
+    @Benchmark
+    public Path print() throws IOException {
+        new CsvPrinter<>(output.toString(), lines).print();
+        return output;
+    }
+
+    @Benchmark
+    public Path printColumns() throws IOException {
+        CsvPrinter.print(output.toString(), results);
+        return output;
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(output);
+    }
+}
@@ -0,0 +1,60 @@
+package parser;
+
+import benchmark.Fixtures;
+import model.KneserNeyModel;
+import model.KylmLanguageModel;
+import model.LanguageModel;
+import modelling.infrastructure.kylm.ngram.smoother.KNSmoother;
+import modelling.main.kylm.SmootherFactory;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * scoring lines with a model trained on the scaled fixtures: the throughput is in lines per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LineEntropyBenchmark {
+
+    @Param({"KYLM", "INT"})
+    public String engine;
+
+    @Param({"4"})
+    public int n;
+
+    @Param({"1", "100"})
+    public int copies;
+
+    private List<Line> lines;
+    private LanguageModel model;
+    private int next;
+
+    @Setup
+    public void setUp() throws Exception {
+        List<Iterable<String>> sentences = Fixtures.scaled(Fixtures.sentences(), copies);
+        LanguageModel trained = "KYLM".equals(engine)
+                ? new KylmLanguageModel(n, SmootherFactory.create(KNSmoother.ABV), 1).train(sentences)
+                : new KneserNeyModel(n, 1).train(sentences);
+        model = trained.frozen();
+        lines = new ArrayList<>();
+        // the lines of the first copy, as targets of the same code base.
+        for (Iterable<String> sentence : Fixtures.sentences()) {
+            lines.add(new Line("Fixture.java", lines.size() + 1, sentence));
+        }
+    }
+
+    @Benchmark
+    public Double calculateEntropy() {
+        Line line = lines.get(next);
+        next = next + 1 == lines.size() ? 0 : next + 1;
+        line.calculateEntropy(model);
+        return line.getEntropy();
+    }
+}
@@ -1,7 +1,12 @@
+import cli.CliBatch;
 import cli.CliRequest;
+import cli.CliServer;
+import cli.CliWorker;
 import modelling.exception.TrainingFailedException;
+import utils.ThreadUtils;
 
 import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.concurrent.ExecutionException;
 
 public class Main {
@@ -17,8 +22,26 @@ public class Main {
      * @param args
      */
     public static void main(String... args) throws IOException, ExecutionException, InterruptedException, TrainingFailedException {
-        CliRequest cliRequest = CliRequest.parseArgs(args);
-        cliRequest.train().rank();
+        if (args.length > 0 && CliWorker.ARG.equals(args[0])) {
+            // answers JSON-line requests from stdin until it is closed, see CliWorker.
+            new CliWorker(System.in, System.out).run();
+            return;
+        }
+        if (args.length == 1 && args[0].startsWith(CliBatch.ARG)) {
+            // runs the jobs of a manifest, see CliBatch.
+            new CliBatch(Paths.get(args[0].substring(CliBatch.ARG.length())), System.out).run();
+            return;
+        }
+        if (args.length > 0 && args[0].startsWith(CliServer.ARG)) {
+            // serves ranking requests over HTTP until the process is stopped, see CliServer.
+            CliServer.parseArgs(args).start();
+            return;
+        }
+        try (CliRequest cliRequest = CliRequest.parseArgs(args)) {
+            // a single run owns the shared pool: batches, workers and servers share it between concurrent runs.
+            ThreadUtils.setParallelism(cliRequest.getThreads());
+            cliRequest.train().rank();
+        }
     }
 
 }
@@ -0,0 +1,434 @@
+package cache;
+
+import utils.LogFactory;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Persistent cache of tokenized files, shared by the runs and the processes using the same directory.
+ * <p>
+ * An entry is keyed by the SHA-256 of the tokenizer class name and of the file bytes, so that unchanged files are
+ * not tokenized again whatever their path, or by the tokenizer and an identifier of the content, such as the id of a
+ * git blob, so that unchanged blobs are not even read. It stores the tokenized sentences (lines, or the whole file) in a
+ * compact binary form: a table of the distinct tokens followed by varint indexes.
+ * Entries are written to a temporary file then atomically renamed, so concurrent processes never read partial
+ * entries. Reading an entry refreshes its modification time, and once the directory grows over its size bound the
+ * least recently used entries are evicted, by one process at a time.
+ * The cache is best effort: failing to read or write an entry only costs a tokenization.
+ * <p>
+ * Long-lived processes can also keep the most recently used entries decoded in memory, up to a number of tokens,
+ * with or without a directory.
+ */
+public final class TokenCache {
+
+    private static final Logger LOG = LogFactory.logger(TokenCache.class);
+    private static final int MAGIC = 0x544f4b43;
+    private static final int VERSION = 1;
+    private static final String ENTRY_SUFFIX = ".tok";
+    private static final String LOCK_FILE = ".lock";
+    // evicting down to a lower size than the bound avoids evicting again on every write.
+    private static final double EVICTION_TARGET = 0.9;
+
+    private final Path directory;
+    private final long maxBytes;
+    private long size = -1;
+    private final long memoryTokens;
+    private final LinkedHashMap<String, List<Iterable<String>>> memory = new LinkedHashMap<>(16, 0.75f, true);
+    private long tokensInMemory;
+
+    /**
+     * @param directory created on the first write if it does not exist.
+     * @param maxBytes  size bound of the entries of the directory.
+     */
+    public TokenCache(Path directory, long maxBytes) {
+        this(directory, maxBytes, 0);
+    }
+
+    /**
+     * @param directory    null to only cache in memory.
+     * @param maxBytes     size bound of the entries of the directory, ignored without directory.
+     * @param memoryTokens bound of the number of tokens kept in memory, 0 to keep none.
+     */
+    public TokenCache(Path directory, long maxBytes, long memoryTokens) {
+        if (directory != null && maxBytes < 1) {
+            throw new IllegalArgumentException("cache size should be > 0 : " + maxBytes);
+        }
+        if (memoryTokens < 0) {
+            throw new IllegalArgumentException("memory tokens should be >= 0 : " + memoryTokens);
+        }
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.memoryTokens = memoryTokens;
+    }
+
+    /**
+     * @return the cache directory, or null if entries are only kept in memory.
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * @param content   bytes of the tokenized file.
+     * @param tokenizer the tokenizer that produced, or will produce, the sentences.
+     * @return the cached sentences or null.
+     */
+    public List<Iterable<String>> get(byte[] content, Object tokenizer) {
+        return get(key(content, tokenizer));
+    }
+
+    /**
+     * as {@link #get(byte[], Object)}, for a content known by its identifier, e.g. the id of a git blob, so that
+     * the content is not read on hits.
+     *
+     * @param contentId identifier of the tokenized content, the same for the same content only.
+     */
+    public List<Iterable<String>> get(String contentId, Object tokenizer) {
+        return get(key(contentId, tokenizer));
+    }
+
+    private List<Iterable<String>> get(String key) {
+        List<Iterable<String>> sentences = fromMemory(key);
+        if (sentences == null && directory != null) {
+            sentences = fromDisk(key);
+            if (sentences != null) {
+                toMemory(key, sentences);
+            }
+        }
+        return sentences;
+    }
+
+    public void put(byte[] content, Object tokenizer, List<? extends Iterable<String>> sentences) {
+        put(key(content, tokenizer), sentences);
+    }
+
+    public void put(String contentId, Object tokenizer, List<? extends Iterable<String>> sentences) {
+        put(key(contentId, tokenizer), sentences);
+    }
+
+    private void put(String key, List<? extends Iterable<String>> sentences) {
+        toMemory(key, new ArrayList<>(sentences));
+        if (directory != null) {
+            toDisk(key, sentences);
+        }
+    }
+
+    private synchronized List<Iterable<String>> fromMemory(String key) {
+        return memory.get(key);
+    }
+
+    private synchronized void toMemory(String key, List<Iterable<String>> sentences) {
+        if (memoryTokens == 0) {
+            return;
+        }
+        long tokens = tokens(sentences);
+        if (tokens > memoryTokens) {
+            return;
+        }
+        List<Iterable<String>> old = memory.put(key, sentences);
+        tokensInMemory += tokens - (old == null ? 0 : tokens(old));
+        for (Iterator<List<Iterable<String>>> it = memory.values().iterator(); tokensInMemory > memoryTokens; ) {
+            tokensInMemory -= tokens(it.next());
+            it.remove();
+        }
+    }
+
+    private static long tokens(List<? extends Iterable<String>> sentences) {
+        long count = 0;
+        for (Iterable<String> sentence : sentences) {
+            if (sentence instanceof Collection) {
+                count += ((Collection<String>) sentence).size();
+            } else if (sentence != null) {
+                for (String ignored : sentence) {
+                    count++;
+                }
+            }
+        }
+        // empty files still cost an entry.
+        return Math.max(1, count);
+    }
+
+    private List<Iterable<String>> fromDisk(String key) {
+        Path entry = entry(key);
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(entry);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            LOG.warning("Token cache read failed: " + e.getMessage());
+            return null;
+        }
+        try {
+            List<Iterable<String>> sentences = decode(bytes);
+            touch(entry);
+            return sentences;
+        } catch (IOException e) {
+            LOG.warning("Corrupted token cache entry deleted: " + entry);
+            delete(entry);
+            return null;
+        }
+    }
+
+    private void toDisk(String key, List<? extends Iterable<String>> sentences) {
+        Path entry = entry(key);
+        try {
+            Files.createDirectories(entry.getParent());
+            byte[] bytes = encode(sentences);
+            Path tmp = Files.createTempFile(entry.getParent(), entry.getFileName().toString(), ".part");
+            try {
+                Files.write(tmp, bytes);
+                Files.move(tmp, entry, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+            added(bytes.length);
+        } catch (IOException e) {
+            LOG.warning("Token cache write failed: " + e.getMessage());
+        }
+    }
+
+    private static String key(byte[] content, Object tokenizer) {
+        return key(tokenizer, (byte) 0, content);
+    }
+
+    private static String key(String contentId, Object tokenizer) {
+        // another separator, so that ids never collide with contents.
+        return key(tokenizer, (byte) 1, contentId.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String key(Object tokenizer, byte separator, byte[] content) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        digest.update(tokenizer.getClass().getName().getBytes(StandardCharsets.UTF_8));
+        digest.update(separator);
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest(content)) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    private Path entry(String key) {
+        // two levels, so that no directory holds too many entries.
+        return directory.resolve(key.substring(0, 2)).resolve(key.substring(2) + ENTRY_SUFFIX);
+    }
+
+    private static void touch(Path entry) {
+        try {
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            // evicted meanwhile by another process.
+        }
+    }
+
+    private static void delete(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            // deleted meanwhile by another process, or still open on systems that do not allow it.
+        }
+    }
+
+    /**
+     * accounts for a new entry, and evicts entries if the size bound is exceeded.
+     * The size of the directory is scanned once, then only the entries written by this process are added to it:
+     * it is scanned again when evicting.
+     */
+    private synchronized void added(long bytes) throws IOException {
+        if (size < 0) {
+            size = entries().stream().mapToLong(Entry::size).sum();
+        } else {
+            size += bytes;
+        }
+        if (size > maxBytes) {
+            evict();
+        }
+    }
+
+    private void evict() throws IOException {
+        try (FileChannel channel = FileChannel.open(directory.resolve(LOCK_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+             FileLock lock = channel.tryLock()) {
+            if (lock == null) {
+                // another process is evicting.
+                return;
+            }
+            List<Entry> entries = entries();
+            entries.sort(Comparator.comparing(Entry::lastModified));
+            long total = entries.stream().mapToLong(Entry::size).sum();
+            long target = (long) (maxBytes * EVICTION_TARGET);
+            for (Iterator<Entry> it = entries.iterator(); it.hasNext() && total > target; ) {
+                Entry e = it.next();
+                delete(e.path);
+                total -= e.size;
+            }
+            LOG.fine(String.format("Token cache evicted down to %d bytes", total));
+            size = total;
+        } catch (OverlappingFileLockException e) {
+            // another cache of this process is evicting.
+        }
+    }
+
+    private List<Entry> entries() throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return new ArrayList<>();
+        }
+        try (Stream<Path> paths = Files.walk(directory, 2)) {
+            List<Entry> res = new ArrayList<>();
+            for (Path p : paths.filter(p -> p.getFileName().toString().endsWith(ENTRY_SUFFIX)).collect(Collectors.toList())) {
+                try {
+                    BasicFileAttributes attributes = Files.readAttributes(p, BasicFileAttributes.class);
+                    res.add(new Entry(p, attributes.size(), attributes.lastModifiedTime()));
+                } catch (NoSuchFileException e) {
+                    // evicted meanwhile by another process.
+                }
+            }
+            return res;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    static byte[] encode(List<? extends Iterable<String>> sentences) throws IOException {
+        Map<String, Integer> indexes = new HashMap<>();
+        List<String> tokens = new ArrayList<>();
+        for (Iterable<String> sentence : sentences) {
+            if (sentence != null) {
+                for (String token : sentence) {
+                    if (token != null && !indexes.containsKey(token)) {
+                        indexes.put(token, tokens.size());
+                        tokens.add(token);
+                    }
+                }
+            }
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        writeVarInt(out, tokens.size());
+        for (String token : tokens) {
+            byte[] utf8 = token.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(out, utf8.length);
+            out.write(utf8);
+        }
+        writeVarInt(out, sentences.size());
+        List<Integer> sentence = new ArrayList<>();
+        for (Iterable<String> s : sentences) {
+            // 0 stands for null sentences and tokens, other values are shifted by one.
+            if (s == null) {
+                writeVarInt(out, 0);
+                continue;
+            }
+            sentence.clear();
+            for (String token : s) {
+                sentence.add(token == null ? 0 : indexes.get(token) + 1);
+            }
+            writeVarInt(out, sentence.size() + 1);
+            for (int index : sentence) {
+                writeVarInt(out, index);
+            }
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    static List<Iterable<String>> decode(byte[] bytes) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+            throw new IOException("not a token cache entry.");
+        }
+        String[] tokens = new String[readVarInt(in) + 1];
+        for (int i = 1; i < tokens.length; i++) {
+            byte[] utf8 = new byte[readVarInt(in)];
+            in.readFully(utf8);
+            tokens[i] = new String(utf8, StandardCharsets.UTF_8);
+        }
+        int count = readVarInt(in);
+        List<Iterable<String>> sentences = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int length = readVarInt(in) - 1;
+            if (length < 0) {
+                sentences.add(null);
+                continue;
+            }
+            List<String> sentence = new ArrayList<>(length);
+            for (int j = 0; j < length; j++) {
+                int index = readVarInt(in);
+                if (index >= tokens.length) {
+                    throw new IOException("token index out of bounds: " + index);
+                }
+                sentence.add(tokens[index]);
+            }
+            sentences.add(sentence);
+        }
+        if (in.read() != -1) {
+            throw new IOException("trailing bytes.");
+        }
+        return sentences;
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7f) != 0) {
+            out.writeByte((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                if (value < 0) {
+                    throw new IOException("negative varint.");
+                }
+                return value;
+            }
+        }
+        throw new IOException("malformed varint.");
+    }
+
+    private static final class Entry {
+        private final Path path;
+        private final long size;
+        private final FileTime lastModified;
+
+        private Entry(Path path, long size, FileTime lastModified) {
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        private long size() {
+            return size;
+        }
+
+        private FileTime lastModified() {
+            return lastModified;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package cli;
+
+import utils.RepositoryFiles;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * how the files of the repository are found.
+ */
+public enum CliArgDiscovery {
+    // every file under the repository directory.
+    Walk("WALK"),
+    // the files tracked by git, or the files not ignored by the .gitignore files if the repository is not a git one.
+    Git("GIT");
+
+
+    private final String cliParam;
+
+    CliArgDiscovery(String param) {
+        this.cliParam = param;
+    }
+
+    static CliArgDiscovery parse(String param) {
+        for (CliArgDiscovery value : CliArgDiscovery.values()) {
+            if (value.cliParam.equals(param)) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Unknown discovery : " + param);
+    }
+
+    List<String> list(String repoPath, String extension, List<String> includeWords, List<String> excludeWords, boolean neighbours) throws IOException {
+        switch (this) {
+            case Walk:
+                return RepositoryFiles.list(repoPath, extension, includeWords, excludeWords, neighbours);
+            case Git:
+                return RepositoryFiles.listTracked(repoPath, extension, includeWords, excludeWords, neighbours);
+            default:
+                throw new IllegalArgumentException("Unknown discovery : " + this);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package cli;
+
+import model.KneserNeyModel;
+import model.KylmLanguageModel;
+import model.ModelTrainer;
+import modelling.infrastructure.kylm.ngram.smoother.NgramSmoother;
+
+public enum CliArgEngine {
+    Kylm("KYLM"),
+    IntIds("INT");
+
+
+    private final String cliParam;
+
+    CliArgEngine(String param) {
+        this.cliParam = param;
+    }
+
+    static CliArgEngine parse(String param) {
+        for (CliArgEngine value : CliArgEngine.values()) {
+            if (value.cliParam.equals(param)) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Unknown engine : " + param);
+    }
+
+    ModelTrainer newTrainer(int size, NgramSmoother smoother, int threshold) {
+        switch (this) {
+            case Kylm:
+                return KylmLanguageModel.trainer(size, smoother, threshold);
+            case IntIds:
+                // only the default Kneser-Ney smoothing is implemented by the int ids engine.
+                return KneserNeyModel.trainer(size, threshold);
+            default:
+                throw new IllegalArgumentException("Unknown engine : " + this);
+        }
+    }
+}
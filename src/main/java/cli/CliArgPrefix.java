@@ -3,14 +3,30 @@ package cli;
 // @see {}
 enum CliArgPrefix {
     TOKENIZER("-tokenizer="),
+    ENGINE("-engine="),
+    THREADS("-threads="),
     THRESHOLD("-threshold="),
     SIZE("-n="),
     FILE_INCLUDE_REQUEST("-in="),
     EXCLUDE_FILES_WITH_WORD_IN_PATH("-ex_w_in_path="),
     INCLUDE_FILES_WITH_WORD_IN_PATH("-inc_w_in_path="),
     INCLUDE_FILE_NEIGHBOURS_WITH_WORD_IN_PATH("-inc_neighbours_w_in_path"),
+    SUBTRACT_TARGETS("-subtract_targets"),
+    RANK_REPOSITORY("-rank_repo"),
+    QUERY_TRAINING("-query_training"),
     REPO("-repo="),
-    OUTPUT_FILE("-out=");
+    DISCOVERY("-discovery="),
+    COMMIT("-commit="),
+    UPDATE_FROM("-update_from="),
+    PATCH("-patch="),
+    DIFF("-diff="),
+    OUTPUT_FILE("-out="),
+    TOKEN_CACHE("-token_cache="),
+    TOKEN_CACHE_SIZE("-token_cache_mb="),
+    METRICS_FILE("-metrics="),
+    MODEL_INPUT_FILE("-model_in="),
+    MODEL_MAPPED_FILE("-model_mmap="),
+    MODEL_OUTPUT_FILE("-model_out=");
 
     final String argPrefix;
 
@@ -18,6 +34,22 @@ enum CliArgPrefix {
         this.argPrefix = argPrefix;
     }
 
+    /**
+     * @param name the prefix without its leading '-' nor trailing '=', e.g. "repo" for "-repo=".
+     */
+    static CliArgPrefix byName(String name) {
+        for (CliArgPrefix cap : CliArgPrefix.values()) {
+            if (cap.name().equals(name) || cap.argPrefix.equals("-" + name) || cap.argPrefix.equals("-" + name + "=")) {
+                return cap;
+            }
+        }
+        throw new IllegalArgumentException("Unknown argument : " + name);
+    }
+
+    boolean isFlag() {
+        return !argPrefix.endsWith("=");
+    }
+
     static CliArgPrefix startsWithPrefix(String arg) {
         for (CliArgPrefix cap : CliArgPrefix.values()) {
             if (arg.startsWith(cap.argPrefix)) {
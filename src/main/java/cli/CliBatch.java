@@ -0,0 +1,190 @@
+package cli;
+
+import utils.Json;
+import utils.LogFactory;
+import utils.ThreadUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Runs the jobs of a manifest in one process, one JSON object per line holding the arguments of {@link RankingService},
+ * the csv of each job being written to its "out" argument:
+ * {@code {"id": "job1", "repo": "path/to/repo", "in": ["A.java"], "engine": "INT", "out": "job1.csv"}}.
+ * <p>
+ * Jobs are grouped by the model they need: jobs with the same arguments but their targets and output share one model,
+ * trained on the whole repository and scored without the targets of each job, when the model can subtract them
+ * (see {@link CliRequest#shareRepositoryModel()}); other jobs only share a model with identical jobs.
+ * Groups are trained one after the other, each model being trained once with every core, then the jobs of the group
+ * are ranked concurrently. Tokenized files are kept in memory and shared by the jobs.
+ * <p>
+ * One JSON object per job is written to the output stream, in the manifest order:
+ * {@code {"id": "job1", "ranked": 120, "millis": 12}} or {@code {"id": "job1", "error": "message"}}.
+ */
+public final class CliBatch {
+
+    public static final String ARG = "-batch=";
+    private static final Logger LOG = LogFactory.logger(CliBatch.class);
+    private static final String ID = "id";
+
+    private final Path manifest;
+    private final PrintStream out;
+    private final RankingService service = new RankingService();
+    private int trainedModels;
+
+    public CliBatch(Path manifest, OutputStream out) {
+        this.manifest = manifest;
+        try {
+            this.out = new PrintStream(out, false, StandardCharsets.UTF_8.name());
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public void run() throws IOException, InterruptedException {
+        List<Job> jobs = new ArrayList<>();
+        Map<String, List<Job>> groups = new LinkedHashMap<>();
+        for (String line : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            Job job = new Job(jobs.size());
+            jobs.add(job);
+            try {
+                job.parse(line);
+                groups.computeIfAbsent(job.group, k -> new ArrayList<>()).add(job);
+            } catch (Exception | AssertionError e) {
+                job.fail(e);
+                job.close();
+            }
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(ThreadUtils.getParallelism());
+        try {
+            for (List<Job> group : groups.values()) {
+                run(group, executor);
+            }
+        } finally {
+            executor.shutdown();
+        }
+        for (Job job : jobs) {
+            out.println(Json.write(job.answer));
+        }
+        out.flush();
+        LOG.info(String.format("%d jobs ranked with %d trained models.", jobs.size(), trainedModels));
+    }
+
+    /**
+     * trains the model of the group once, then ranks its jobs concurrently.
+     */
+    private void run(List<Job> group, ExecutorService executor) throws InterruptedException {
+        CliRequest<?, ?> first = group.get(0).request;
+        try {
+            first.train();
+            trainedModels++;
+            // listed once for the whole group, before the jobs share it.
+            first.getRepositoryFiles();
+        } catch (Exception | AssertionError e) {
+            group.forEach(job -> {
+                job.fail(e);
+                job.close();
+            });
+            return;
+        }
+        List<Future<?>> futures = new ArrayList<>();
+        for (Job job : group) {
+            job.request.model = first.model;
+            futures.add(executor.submit(() -> job.rank(first)));
+        }
+        for (Future<?> f : futures) {
+            try {
+                f.get();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+    }
+
+    int getTrainedModels() {
+        return trainedModels;
+    }
+
+    private final class Job {
+        private final int index;
+        private final Map<String, Object> answer = new LinkedHashMap<>();
+        private CliRequest<?, ?> request;
+        // the arguments that the model depends on.
+        private String group;
+
+        private Job(int index) {
+            this.index = index;
+        }
+
+        private void parse(String line) {
+            answer.put(ID, index);
+            Object json = Json.parse(line);
+            if (!(json instanceof Map)) {
+                throw new IllegalArgumentException("a job should be a JSON object.");
+            }
+            Map<String, Object> arguments = new LinkedHashMap<>();
+            ((Map<?, ?>) json).forEach((k, v) -> arguments.put(String.valueOf(k), v));
+            if (arguments.containsKey(ID)) {
+                answer.put(ID, arguments.remove(ID));
+            }
+            if (arguments.containsKey(RankingService.SOURCES)) {
+                throw new IllegalArgumentException(RankingService.SOURCES + " are not supported by batches, give the paths of the targets.");
+            }
+            request = CliRequest.parseArgs(RankingService.toArgs(arguments));
+            request.tokenCache = service.sharedTokenCache(request.tokenCache);
+            boolean shared = request.shareRepositoryModel();
+            Map<String, Object> groupArguments = new TreeMap<>();
+            arguments.forEach((name, value) -> {
+                CliArgPrefix prefix = CliArgPrefix.byName(name);
+                if (prefix != CliArgPrefix.OUTPUT_FILE && !(shared && prefix == CliArgPrefix.FILE_INCLUDE_REQUEST)) {
+                    groupArguments.put(prefix.name(), value);
+                }
+            });
+            group = Json.write(groupArguments);
+        }
+
+        private void rank(CliRequest<?, ?> first) {
+            long start = System.nanoTime();
+            try {
+                request.shareRepositoryFiles(first);
+                Object ranked = request.rank();
+                answer.put("ranked", ((List<?>) ranked).size());
+                answer.put("millis", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            } catch (Exception | AssertionError e) {
+                fail(e);
+            } finally {
+                close();
+            }
+        }
+
+        /**
+         * stops the git readers of the request: the results are in the csv, the model and the tokens can be collected.
+         */
+        private void close() {
+            if (request != null) {
+                request.close();
+                request = null;
+            }
+        }
+
+        private void fail(Throwable e) {
+            LOG.warning("Job " + answer.get(ID) + " failed: " + e);
+            answer.put("error", e.getMessage() == null ? e.toString() : e.getMessage());
+        }
+    }
+}
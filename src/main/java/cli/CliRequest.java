@@ -1,30 +1,48 @@
 package cli;
 
+import cache.TokenCache;
 import cli.file.CliFileRequest;
 import cli.line.CliLineRequest;
-import gitutils.FilesOfInterest;
+import git.GitCommit;
+import git.UnifiedDiff;
+import model.KneserNeyModel;
+import model.LanguageModel;
+import model.MappedKneserNeyModel;
+import model.ModelTrainer;
+import model.ModelFile;
+import model.ModelRegistry;
+import model.QueryKneserNeyModel;
 import modelling.exception.TrainingFailedException;
-import modelling.infrastructure.NgramModelKylmImpl;
 import modelling.infrastructure.kylm.ngram.smoother.KNSmoother;
 import modelling.infrastructure.kylm.ngram.smoother.MKNSmoother;
 import modelling.infrastructure.kylm.ngram.smoother.NgramSmoother;
 import modelling.main.kylm.SmootherFactory;
+import parser.SourceStore;
 import tokenizer.AbstractTokenizer;
 import tokenizer.file.AbstractFileTokenizer;
 import tokenizer.line.AbstractLineTokenizer;
 import tokenizer.line.java.JavaLemmeLineTokenizer;
 import utils.Checker;
+import utils.RepositoryFiles;
+import utils.RunMetrics;
+import utils.ThreadUtils;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
 import java.util.concurrent.ExecutionException;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
 
 
-public abstract class CliRequest<T extends AbstractTokenizer, Res> {
+public abstract class CliRequest<T extends AbstractTokenizer, Res> implements Closeable {
     private final static Logger LOG = Logger.getLogger(CliRequest.class.getSimpleName());
     /**
      * @see {https://orbilu.uni.lu/bitstream/10993/36135/1/icsme3.pdf}
@@ -43,16 +61,37 @@ public abstract class CliRequest<T extends AbstractTokenizer, Res> {
     // protected static final NgramSmoother DEFAULT_SMOOTHER = SmootherFactory.create(MKNSmoother.ABV);
     // TODO: 29/10/2022 document this behaviour
     protected static final List<String> DEFAULT_EXCLUDE_FILES_CONTAINING_WORDS_IN_PATH = Arrays.asList("test", "example");
+    protected static final CliArgEngine DEFAULT_ENGINE = CliArgEngine.Kylm;
+    protected static final CliArgDiscovery DEFAULT_DISCOVERY = CliArgDiscovery.Walk;
+    protected static final int DEFAULT_THREADS = ThreadUtils.DEFAULT_PARALLELISM;
+    protected static final int DEFAULT_TOKEN_CACHE_MB = 1024;
 
     protected final String repoPath;
     protected final List<String> targetPaths;
     protected final String outputCsvPath;
     protected final T tokenizer;
     private boolean includeNeighbours;
+    private boolean subtractTargets;
+    private boolean rankRepository;
+    private boolean queryTraining;
     protected int size;
     protected int threshold;
+    protected int threads = DEFAULT_THREADS;
     protected NgramSmoother smoother;
-    protected NgramModelKylmImpl model;
+    protected LanguageModel model;
+    protected TokenCache tokenCache;
+    protected final RunMetrics metrics = new RunMetrics();
+    private String metricsPath;
+    private CliArgEngine engine = DEFAULT_ENGINE;
+    private CliArgDiscovery discovery = DEFAULT_DISCOVERY;
+    private GitCommit commit;
+    private GitCommit previousCommit;
+    // changed line numbers of every target, null to rank every line of the targets.
+    private Map<String, BitSet> changedLines;
+    private String modelInputPath;
+    private String mappedModelPath;
+    private String modelOutputPath;
+    private List<String> listedFiles;
     private List<String> excludeFilesContainingWordsInPath;
     private List<String> includeFilesContainingWordsInPath;
 
@@ -69,9 +108,26 @@ public abstract class CliRequest<T extends AbstractTokenizer, Res> {
         List<String> excludeFilesContainingWordsInPath = null;
         List<String> includeFilesContainingWordsInPath = null;
         boolean includeNeighbours = false;
+        boolean subtractTargets = false;
+        boolean rankRepository = false;
+        boolean queryTraining = false;
         int size = DEFAULT_SIZE;
         int threshold = DEFAULT_THRESHOLD;
+        int threads = DEFAULT_THREADS;
+        boolean threadsRequested = false;
         AbstractTokenizer tokenizer = null;
+        CliArgEngine engine = DEFAULT_ENGINE;
+        CliArgDiscovery discovery = DEFAULT_DISCOVERY;
+        String commit = null;
+        String updateFrom = null;
+        String patchPath = null;
+        String diffRevisions = null;
+        String modelInputPath = null;
+        String mappedModelPath = null;
+        String modelOutputPath = null;
+        String tokenCachePath = null;
+        int tokenCacheMb = DEFAULT_TOKEN_CACHE_MB;
+        String metricsPath = null;
 
         for (String arg : args) {
 
@@ -91,6 +147,10 @@ public abstract class CliRequest<T extends AbstractTokenizer, Res> {
                 case THRESHOLD:
                     threshold = Integer.parseInt(argBody);
                     break;
+                case THREADS:
+                    threads = Integer.parseInt(argBody);
+                    threadsRequested = true;
+                    break;
                 case REPO:
                     repoPath = argBody;
                     break;
@@ -109,16 +169,102 @@ public abstract class CliRequest<T extends AbstractTokenizer, Res> {
                 case INCLUDE_FILE_NEIGHBOURS_WITH_WORD_IN_PATH:
                     includeNeighbours = true;
                     break;
+                case SUBTRACT_TARGETS:
+                    subtractTargets = true;
+                    break;
+                case RANK_REPOSITORY:
+                    rankRepository = true;
+                    break;
+                case QUERY_TRAINING:
+                    queryTraining = true;
+                    break;
                 case TOKENIZER:
                     tokenizer = CliArgTokenizer.newTokenizer(argBody);
                     break;
+                case ENGINE:
+                    engine = CliArgEngine.parse(argBody);
+                    break;
+                case DISCOVERY:
+                    discovery = CliArgDiscovery.parse(argBody);
+                    break;
+                case COMMIT:
+                    commit = argBody;
+                    break;
+                case UPDATE_FROM:
+                    updateFrom = argBody;
+                    break;
+                case PATCH:
+                    patchPath = argBody;
+                    break;
+                case DIFF:
+                    diffRevisions = argBody;
+                    break;
+                case MODEL_INPUT_FILE:
+                    modelInputPath = argBody;
+                    break;
+                case MODEL_MAPPED_FILE:
+                    mappedModelPath = argBody;
+                    break;
+                case MODEL_OUTPUT_FILE:
+                    modelOutputPath = argBody;
+                    break;
+                case TOKEN_CACHE:
+                    tokenCachePath = argBody;
+                    break;
+                case TOKEN_CACHE_SIZE:
+                    tokenCacheMb = Integer.parseInt(argBody);
+                    break;
+                case METRICS_FILE:
+                    metricsPath = argBody;
+                    break;
                 default:
                     throw new IllegalArgumentException(cliArgPrefix + " choice not implemented.");
             }
 
         }
         assert !Checker.isTrimNlOrEmpty(repoPath);
-        assert !Checker.isTrimNlOrEmpty(files);
+        Map<String, BitSet> changedLines = null;
+        if (patchPath != null || diffRevisions != null) {
+            if (patchPath != null && diffRevisions != null || rankRepository || !files.isEmpty()) {
+                throw new IllegalArgumentException(CliArgPrefix.PATCH.argPrefix + " and " + CliArgPrefix.DIFF.argPrefix + " rank the lines changed by one diff: they cannot be combined together, with " + CliArgPrefix.FILE_INCLUDE_REQUEST.argPrefix + " or with " + CliArgPrefix.RANK_REPOSITORY.argPrefix);
+            }
+            try {
+                changedLines = changedLines(repoPath, patchPath, diffRevisions);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            files.addAll(changedLines.keySet());
+            if (commit == null && diffRevisions != null) {
+                commit = UnifiedDiff.newRevision(diffRevisions);
+            }
+        } else {
+            assert rankRepository || !Checker.isTrimNlOrEmpty(files);
+        }
+
+        if (subtractTargets && modelInputPath == null && mappedModelPath == null && engine != CliArgEngine.IntIds) {
+            throw new IllegalArgumentException(CliArgPrefix.SUBTRACT_TARGETS.argPrefix + " requires a model that can subtract sentences: the " + CliArgEngine.IntIds + " engine, " + CliArgPrefix.MODEL_INPUT_FILE.argPrefix + " or " + CliArgPrefix.MODEL_MAPPED_FILE.argPrefix);
+        }
+        if (rankRepository && modelInputPath == null && mappedModelPath == null && engine != CliArgEngine.IntIds) {
+            throw new IllegalArgumentException(CliArgPrefix.RANK_REPOSITORY.argPrefix + " requires a model that can subtract sentences: the " + CliArgEngine.IntIds + " engine, " + CliArgPrefix.MODEL_INPUT_FILE.argPrefix + " or " + CliArgPrefix.MODEL_MAPPED_FILE.argPrefix);
+        }
+        if (queryTraining && (engine != CliArgEngine.IntIds || modelInputPath != null || mappedModelPath != null || modelOutputPath != null || subtractTargets || rankRepository)) {
+            throw new IllegalArgumentException(CliArgPrefix.QUERY_TRAINING.argPrefix + " trains a model for the targets only: it requires the " + CliArgEngine.IntIds + " engine and cannot be combined with saved models, " + CliArgPrefix.SUBTRACT_TARGETS.argPrefix + " or " + CliArgPrefix.RANK_REPOSITORY.argPrefix);
+        }
+        if (threshold > 1 && (subtractTargets || rankRepository || updateFrom != null)) {
+            throw new IllegalArgumentException(CliArgPrefix.SUBTRACT_TARGETS.argPrefix + ", " + CliArgPrefix.RANK_REPOSITORY.argPrefix + " and " + CliArgPrefix.UPDATE_FROM.argPrefix + " require " + CliArgPrefix.THRESHOLD.argPrefix + "1: the vocabulary cutoff of higher thresholds depends on the whole training set.");
+        }
+        if (modelOutputPath != null && mappedModelPath != null) {
+            throw new IllegalArgumentException(CliArgPrefix.MODEL_MAPPED_FILE.argPrefix + " models are read-only and cannot be saved.");
+        }
+        if (updateFrom != null && (modelInputPath == null || commit == null)) {
+            throw new IllegalArgumentException(CliArgPrefix.UPDATE_FROM.argPrefix + " updates the model of the repository at a commit into its model at another one: it requires " + CliArgPrefix.MODEL_INPUT_FILE.argPrefix + " and " + CliArgPrefix.COMMIT.argPrefix);
+        }
+        if (threadsRequested && threads > 1 && engine == CliArgEngine.Kylm && modelInputPath == null && mappedModelPath == null) {
+            LOG.warning(CliArgPrefix.THREADS.argPrefix + threads + " only tokenizes in parallel with the " + CliArgEngine.Kylm + " engine, whose models score one line at a time: the " + CliArgEngine.IntIds + " engine scores in parallel.");
+        }
+        if (modelOutputPath != null && modelInputPath == null && engine != CliArgEngine.IntIds) {
+            throw new IllegalArgumentException(CliArgPrefix.MODEL_OUTPUT_FILE.argPrefix + " is only supported by the " + CliArgEngine.IntIds + " engine.");
+        }
 
         if (tokenizer == null) {
             tokenizer = new JavaLemmeLineTokenizer();
@@ -130,10 +276,18 @@ public abstract class CliRequest<T extends AbstractTokenizer, Res> {
             excludeFilesContainingWordsInPath = null;
         }
         CliRequest cliRequest;
+        if (rankRepository && !(tokenizer instanceof AbstractLineTokenizer)) {
+            throw new IllegalArgumentException(CliArgPrefix.RANK_REPOSITORY.argPrefix + " is only supported by line tokenizers.");
+        }
+        if (changedLines != null && !(tokenizer instanceof AbstractLineTokenizer)) {
+            throw new IllegalArgumentException(CliArgPrefix.PATCH.argPrefix + " and " + CliArgPrefix.DIFF.argPrefix + " are only supported by line tokenizers.");
+        }
+        // the targets of a commit may not be in the work tree, they are checked against the commit.
+        List<String> workTreeFiles = commit == null ? files : Collections.emptyList();
         if (tokenizer instanceof AbstractLineTokenizer) {
-            cliRequest = new CliLineRequest((AbstractLineTokenizer) tokenizer, repoPath, files, outputPath);
+            cliRequest = new CliLineRequest((AbstractLineTokenizer) tokenizer, repoPath, workTreeFiles, outputPath);
         } else if (tokenizer instanceof AbstractFileTokenizer) {
-            cliRequest = new CliFileRequest((AbstractFileTokenizer) tokenizer, repoPath, files, outputPath);
+            cliRequest = new CliFileRequest((AbstractFileTokenizer) tokenizer, repoPath, workTreeFiles, outputPath);
         } else {
             throw new IllegalArgumentException(tokenizer.getClass().getSimpleName() + " is not handled.");
         }
@@ -141,9 +295,37 @@ public abstract class CliRequest<T extends AbstractTokenizer, Res> {
 
         cliRequest.threshold = threshold;
         cliRequest.size = size;
+        cliRequest.threads = threads;
         cliRequest.excludeFilesContainingWordsInPath = excludeFilesContainingWordsInPath;
         cliRequest.includeFilesContainingWordsInPath = includeFilesContainingWordsInPath;
         cliRequest.includeNeighbours = includeNeighbours;
+        cliRequest.subtractTargets = subtractTargets;
+        cliRequest.rankRepository = rankRepository;
+        cliRequest.queryTraining = queryTraining;
+        cliRequest.engine = engine;
+        cliRequest.discovery = discovery;
+        cliRequest.modelInputPath = modelInputPath;
+        cliRequest.mappedModelPath = mappedModelPath;
+        cliRequest.modelOutputPath = modelOutputPath;
+        cliRequest.metricsPath = metricsPath;
+        cliRequest.changedLines = changedLines;
+        if (tokenCachePath != null) {
+            cliRequest.tokenCache = new TokenCache(Paths.get(tokenCachePath), tokenCacheMb * 1024L * 1024L);
+        }
+        if (commit != null) {
+            try {
+                cliRequest.readCommit(GitCommit.open(Paths.get(repoPath), commit), files);
+                if (updateFrom != null) {
+                    cliRequest.previousCommit = GitCommit.open(Paths.get(repoPath), updateFrom);
+                }
+            } catch (IOException e) {
+                cliRequest.close();
+                throw new UncheckedIOException(e);
+            } catch (RuntimeException e) {
+                cliRequest.close();
+                throw e;
+            }
+        }
         return cliRequest;
     }
 
@@ -174,28 +356,365 @@ public abstract class CliRequest<T extends AbstractTokenizer, Res> {
         this.includeNeighbours = includeNeighbours;
     }
 
+    /**
+     * @return the changed line numbers of the java files changed by the diff, by absolute path.
+     * Deleted files and files whose lines are only deleted are left out.
+     */
+    private static Map<String, BitSet> changedLines(String repoPath, String patchPath, String diffRevisions) throws IOException {
+        Map<String, BitSet> diff = patchPath != null ? UnifiedDiff.read(Paths.get(patchPath)) : UnifiedDiff.of(Paths.get(repoPath), diffRevisions);
+        Map<String, BitSet> res = new LinkedHashMap<>();
+        for (Map.Entry<String, BitSet> e : diff.entrySet()) {
+            if (e.getKey().endsWith(".java") && !e.getValue().isEmpty()) {
+                res.put(Paths.get(repoPath).resolve(e.getKey()).toAbsolutePath().toString(), e.getValue());
+            }
+        }
+        return res;
+    }
+
+    /**
+     * @return the line numbers of the target to rank, null to rank all its lines.
+     */
+    protected BitSet changedLines(String targetPath) {
+        return changedLines == null ? null : changedLines.get(targetPath);
+    }
+
+    /**
+     * @return true if only the lines changed by a diff are ranked.
+     */
+    protected boolean isRankingChangedLines() {
+        return changedLines != null;
+    }
+
+    /**
+     * reads the repository files and the targets from the commit instead of the work tree.
+     *
+     * @param targets paths of the target files at the commit, absolute, or relative to the working directory or to
+     *                the repository.
+     */
+    private void readCommit(GitCommit commit, List<String> targets) {
+        for (String strP : targets) {
+            String absolute = new File(strP).getAbsolutePath();
+            String strp = commit.contains(absolute) ? absolute : Paths.get(repoPath).resolve(strP).toAbsolutePath().toString();
+            if (!commit.contains(strp)) {
+                LOG.severe(String.format("File not found at commit %s: \n %s \n %s", commit.getId(), strP, strp));
+                throw new IllegalArgumentException("Wrong file path.");
+            }
+            this.targetPaths.add(strp);
+        }
+        this.commit = commit;
+    }
+
+    /**
+     * @return where the files of the repository are read from: the work tree, or the commit if one has been given.
+     */
+    protected SourceStore sources() {
+        return commit == null ? SourceStore.FILE_SYSTEM : commit;
+    }
+
     // @see experiments
     public List<String> getTrainingFiles() throws IOException {
-        Set<String> paths;
-        if (includeFilesContainingWordsInPath != null) {
-            paths = new HashSet<>();
-            for (String w : includeFilesContainingWordsInPath) {
-                paths.addAll(FilesOfInterest.list(repoPath, "java", w));
+        List<String> files = getRepositoryFiles();
+        if (excludeFilesContainingWordsInPath != null) {
+            files.removeAll(new HashSet<>(targetPaths));
+        }
+        return files;
+    }
+
+    /**
+     * @return the files of interest of the repository, targets included, listed once per request.
+     */
+    public List<String> getRepositoryFiles() throws IOException {
+        if (listedFiles == null) {
+            listedFiles = listRepositoryFiles();
+        }
+        return new ArrayList<>(listedFiles);
+    }
+
+    /**
+     * reuses the files listed by a request with the same repository and file filters.
+     */
+    void shareRepositoryFiles(CliRequest<?, ?> other) throws IOException {
+        listedFiles = other.getRepositoryFiles();
+    }
+
+    private List<String> listRepositoryFiles() throws IOException {
+        if (commit != null) {
+            return RepositoryFiles.listCommitted(commit, "java", includeFilesContainingWordsInPath, excludeFilesContainingWordsInPath, includeNeighbours);
+        }
+        return discovery.list(repoPath, "java", includeFilesContainingWordsInPath, excludeFilesContainingWordsInPath, includeNeighbours);
+    }
+
+    /**
+     * @return the files the model is trained on: the whole repository when the targets are subtracted afterwards.
+     */
+    protected List<String> getModelTrainingFiles() throws IOException {
+        return subtractTargets || rankRepository ? getRepositoryFiles() : getTrainingFiles();
+    }
+
+    /**
+     * makes the model independent of the targets when it gives the same ranking: the INT engine is then trained on the
+     * whole repository and the targets are subtracted while ranking, as with {@link CliArgPrefix#SUBTRACT_TARGETS}.
+     * Loaded and mapped models do not depend on the targets already.
+     *
+     * @return true if requests differing only by their targets and output can share the model.
+     */
+    boolean shareRepositoryModel() {
+        if (queryTraining || modelOutputPath != null) {
+            return false;
+        }
+        if (modelInputPath != null || mappedModelPath != null || subtractTargets || rankRepository) {
+            return true;
+        }
+        // the vocabulary cutoff of higher thresholds would depend on the targets subtracted.
+        if (engine != CliArgEngine.IntIds || threshold > 1) {
+            return false;
+        }
+        subtractTargets = true;
+        return true;
+    }
+
+    /**
+     * @return true if every file of the repository is ranked, each one by the model without its own sentences,
+     * instead of the target files.
+     */
+    protected boolean isRankingRepository() {
+        return rankRepository;
+    }
+
+    /**
+     * @param targetSentences tokenized sentences of every target file, in the same order as the target paths.
+     * @return the sentences of the targets that the training files leave out,
+     * to be subtracted from a model trained on the whole repository. Empty if the targets are not subtracted.
+     */
+    protected List<Iterable<String>> leftOutSentences(List<List<Iterable<String>>> targetSentences) throws IOException {
+        List<Iterable<String>> res = new ArrayList<>();
+        // same rule as getTrainingFiles(): targets are only left out along with the excluded files.
+        if (!subtractTargets || excludeFilesContainingWordsInPath == null) {
+            return res;
+        }
+        Set<String> repositoryFiles = new HashSet<>(getRepositoryFiles());
+        for (int i = 0; i < targetPaths.size(); i++) {
+            if (repositoryFiles.contains(targetPaths.get(i))) {
+                res.addAll(targetSentences.get(i));
+            }
+        }
+        return res;
+    }
+
+    /**
+     * @return a view of the model that does not know the sentences, to be queried by concurrent threads.
+     * The model itself is left unchanged, so that it can be saved or shared by requests with other targets.
+     */
+    protected LanguageModel scoringModel(List<Iterable<String>> sentences) {
+        return sentences.isEmpty() ? model.frozen() : model.without(sentences);
+    }
+
+    /**
+     * trains the model on the training set, or loads it from the model input file if one has been given,
+     * or maps it read-only from the mapped model file if one has been given.
+     * In query training mode, the targets are tokenized first and only what scoring them needs is counted.
+     * The model is then saved to the model output file, if one has been given.
+     */
+    public CliRequest<T, Res> train() throws IOException, ExecutionException, InterruptedException, TrainingFailedException {
+        if (modelInputPath != null) {
+            KneserNeyModel loaded;
+            try (RunMetrics.Phase ignored = metrics.phase("loading")) {
+                loaded = ModelFile.read(Paths.get(modelInputPath));
+                checkLoadedParameters(loaded.getSize(), loaded.getThreshold());
+                this.model = loaded;
+            }
+            if (previousCommit != null) {
+                try (RunMetrics.Phase ignored = metrics.phase("update")) {
+                    update(loaded);
+                }
+            }
+        } else if (mappedModelPath != null) {
+            try (RunMetrics.Phase ignored = metrics.phase("mapping")) {
+                MappedKneserNeyModel mapped = ModelFile.map(Paths.get(mappedModelPath));
+                checkLoadedParameters(mapped.getSize(), mapped.getThreshold());
+                this.model = mapped;
             }
         } else {
-            paths = new HashSet<>(FilesOfInterest.list(repoPath, "java"));
+            try (RunMetrics.Phase ignored = metrics.phase("discovery")) {
+                // lists the repository once, for the training and the ranking.
+                metrics.count(getModelTrainingFiles().size(), 0, 0);
+            }
+            List<Iterable<String>> queries = null;
+            if (queryTraining) {
+                try (RunMetrics.Phase ignored = metrics.phase("target_tokenization")) {
+                    queries = getTargetSet();
+                    metrics.count(targetPaths.size(), queries.size(), tokensCount(queries));
+                }
+            }
+            try (RunMetrics.Phase ignored = metrics.phase("training")) {
+                ModelTrainer trainer = queryTraining ? QueryKneserNeyModel.trainer(size, threshold, queries) : engine.newTrainer(size, smoother, threshold);
+                streamTrainingSet(trainer);
+                this.model = trainer.train();
+            }
         }
-        if (includeNeighbours) {
-            Set<String> neighbours = new HashSet<>();
-            for (String p : paths) {
-                neighbours.addAll(FilesOfInterest.list(Paths.get(p).getParent().toAbsolutePath().toString(), "java"));
+        if (modelOutputPath != null) {
+            try (RunMetrics.Phase ignored = metrics.phase("saving")) {
+                ModelFile.write((KneserNeyModel) model, Paths.get(modelOutputPath));
             }
-            paths.addAll(neighbours);
         }
-        if (excludeFilesContainingWordsInPath != null) {
-            return new ArrayList<>(paths).stream().filter(path -> !(excludeFilesContainingWordsInPath.stream().anyMatch(path::contains) || targetPaths.contains(path))).collect(Collectors.toList());
+        return this;
+    }
+
+    /**
+     * updates the model of the repository files at the previous commit into their model at the commit:
+     * the files that changed, or are only selected at one of the commits, are tokenized at both commits, then their
+     * old sentences are subtracted and their new ones added. The model is then the one trained on the repository
+     * files at the commit, at a cost depending on the changes only.
+     */
+    private void update(KneserNeyModel model) throws IOException, ExecutionException, InterruptedException {
+        List<String> before = previousRepositoryFiles();
+        List<String> after = getRepositoryFiles();
+        List<String> removed = changed(before, previousCommit, after, commit);
+        List<String> added = changed(after, commit, before, previousCommit);
+        LOG.info(String.format("Updating the model from %s to %s: %d files removed, %d files added.", previousCommit.getId(), commit.getId(), removed.size(), added.size()));
+        streamFiles(removed, previousCommit, model.remover());
+        streamFiles(added, commit, model.trainer());
+    }
+
+    /**
+     * @return the files of interest of the repository at the previous commit.
+     */
+    private List<String> previousRepositoryFiles() {
+        return RepositoryFiles.listCommitted(previousCommit, "java", includeFilesContainingWordsInPath, excludeFilesContainingWordsInPath, includeNeighbours);
+    }
+
+    /**
+     * @return the files of the commit that are not files of the other commit with the same content.
+     */
+    private static List<String> changed(List<String> files, GitCommit commit, List<String> otherFiles, GitCommit other) {
+        Set<String> others = new HashSet<>(otherFiles);
+        List<String> res = new ArrayList<>();
+        for (String f : files) {
+            if (!others.contains(f) || !commit.contentId(f).equals(other.contentId(f))) {
+                res.add(f);
+            }
+        }
+        return res;
+    }
+
+    /**
+     * trains the model, or takes it from the registry if the same model has already been trained:
+     * models are shared by the requests with the same parameters and the same training files, unchanged since.
+     * Models that depend on the targets, as query trained ones, or that must be saved are not shared.
+     *
+     * @param registry null to always train.
+     */
+    public CliRequest<T, Res> train(ModelRegistry registry) throws IOException, ExecutionException, InterruptedException, TrainingFailedException {
+        String key = registry == null ? null : modelKey();
+        if (key == null) {
+            return train();
+        }
+        this.model = registry.get(key, () -> train().model);
+        return this;
+    }
+
+    /**
+     * @return an identifier of the model that {@link #train()} would return, or null if it must not be shared.
+     */
+    protected String modelKey() throws IOException {
+        if (queryTraining || modelOutputPath != null) {
+            return null;
+        }
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        StringBuilder sb = new StringBuilder();
+        if (modelInputPath != null) {
+            sb.append("in|").append(stamp(modelInputPath));
+            if (previousCommit != null) {
+                // the updated model depends on the files at both commits.
+                sb.append("|update|").append(tokenizer.getClass().getName());
+                for (String f : previousRepositoryFiles()) {
+                    sb.append('|').append(f).append('\0').append(previousCommit.contentId(f));
+                }
+                sb.append("|to");
+                for (String f : getRepositoryFiles()) {
+                    sb.append('|').append(f).append('\0').append(commit.contentId(f));
+                }
+            }
+        } else if (mappedModelPath != null) {
+            sb.append("mmap|").append(stamp(mappedModelPath));
         } else {
-            return new ArrayList<>(paths);
+            sb.append(engine).append('|').append(size).append('|').append(threshold).append('|')
+                    .append(smoother == null ? null : smoother.getClass().getName()).append('|')
+                    .append(tokenizer.getClass().getName());
+            List<String> files = new ArrayList<>(getModelTrainingFiles());
+            Collections.sort(files);
+            for (String f : files) {
+                // blobs are identified by their content.
+                sb.append('|').append(commit == null ? stamp(f) : f + '\0' + commit.contentId(f));
+            }
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest(sb.toString().getBytes(StandardCharsets.UTF_8))) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    private static long tokensCount(List<Iterable<String>> sentences) {
+        long count = 0;
+        for (Iterable<String> sentence : sentences) {
+            for (String ignored : sentence) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * stops the readers of the commits, if any, whether the request has been ranked or has failed.
+     * The request can still be trained and ranked afterwards, the readers being started again.
+     */
+    @Override
+    public void close() {
+        if (commit != null) {
+            commit.close();
+        }
+        if (previousCommit != null) {
+            previousCommit.close();
+        }
+    }
+
+    /**
+     * writes the metrics of the run to the metrics file, if one has been given.
+     */
+    protected void writeMetrics() throws IOException {
+        if (metricsPath != null) {
+            metrics.write(Paths.get(metricsPath));
+        }
+    }
+
+    /**
+     * @return the number of threads the run tokenizes and scores with, at most the parallelism of the shared pool.
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    public RunMetrics getMetrics() {
+        return metrics;
+    }
+
+    private static String stamp(String path) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(Paths.get(path), BasicFileAttributes.class);
+        return path + '\0' + attributes.size() + '\0' + attributes.lastModifiedTime().toMillis();
+    }
+
+    private void checkLoadedParameters(int loadedSize, int loadedThreshold) {
+        if (loadedSize != size || loadedThreshold != threshold) {
+            LOG.warning(String.format("Loaded model parameters (n=%d, threshold=%d) override the requested ones (n=%d, threshold=%d).", loadedSize, loadedThreshold, size, threshold));
+        }
+        if (loadedThreshold > 1 && (subtractTargets || rankRepository || previousCommit != null)) {
+            throw new IllegalArgumentException(String.format("Loaded model threshold %d: sentences can only be subtracted from models with threshold 1.", loadedThreshold));
         }
     }
 
@@ -203,7 +722,22 @@ public abstract class CliRequest<T extends AbstractTokenizer, Res> {
 
     public abstract Res getTargetList() throws ExecutionException, InterruptedException;
 
-    public abstract CliRequest<T, Res> train() throws IOException, ExecutionException, InterruptedException, TrainingFailedException;
+    public abstract List<Iterable<String>> getTrainingSet() throws IOException, ExecutionException, InterruptedException;
+
+    /**
+     * @return the tokens of every line or file of the targets that {@link #rank()} scores.
+     */
+    public abstract List<Iterable<String>> getTargetSet() throws ExecutionException, InterruptedException;
+
+    /**
+     * tokenizes the training files and feeds each one to the trainer as soon as it is tokenized.
+     */
+    protected abstract void streamTrainingSet(ModelTrainer trainer) throws IOException, ExecutionException, InterruptedException;
+
+    /**
+     * tokenizes the files read from the sources and feeds each one to the trainer as soon as it is tokenized.
+     */
+    protected abstract void streamFiles(List<String> files, SourceStore sources, ModelTrainer trainer) throws ExecutionException, InterruptedException;
 
     public abstract Res rank() throws ExecutionException, InterruptedException, IOException;
 }
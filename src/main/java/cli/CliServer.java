@@ -0,0 +1,159 @@
+package cli;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import model.ModelRegistry;
+import utils.Json;
+import utils.LogFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Resident HTTP service ranking the lines or files of repositories, listening on the loopback interface only.
+ * <ul>
+ * <li>{@code POST /rank} with the JSON arguments of {@link RankingService} as body answers
+ * {@code {"results": [...], "millis": 12}}, or {@code {"error": "message"}} with status 400 for invalid requests
+ * and 500 for failed ones.</li>
+ * <li>{@code GET /models} answers {@code {"models": 2, "bytes": 123456}}, the number and estimated memory of
+ * the models kept.</li>
+ * </ul>
+ * Requests are answered concurrently: trained models are kept in a registry bounded in memory and shared by the
+ * requests, a model requested while it is trained being trained once.
+ */
+public final class CliServer {
+
+    public static final String ARG = "-server=";
+    public static final String MODELS_MB_ARG = "-server_models_mb=";
+    static final int MAX_MODELS = 64;
+    private static final Logger LOG = LogFactory.logger(CliServer.class);
+
+    private final HttpServer server;
+    private final ExecutorService handlers;
+    private final RankingService service;
+
+    /**
+     * @param port      0 for any free port.
+     * @param maxBytes  bound of the estimated memory of the models kept.
+     * @param threads   number of requests answered concurrently.
+     */
+    public CliServer(int port, long maxBytes, int threads) throws IOException {
+        this.service = new RankingService(new ModelRegistry(MAX_MODELS, maxBytes));
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.handlers = Executors.newFixedThreadPool(threads);
+        server.setExecutor(handlers);
+        server.createContext("/rank", this::rank);
+        server.createContext("/models", this::models);
+    }
+
+    /**
+     * @param args {@value #ARG}port and optionally {@value #MODELS_MB_ARG}mb, defaulting to half of the max heap.
+     */
+    public static CliServer parseArgs(String... args) throws IOException {
+        Integer port = null;
+        long maxBytes = Runtime.getRuntime().maxMemory() / 2;
+        for (String arg : args) {
+            if (arg.startsWith(ARG)) {
+                port = Integer.parseInt(arg.substring(ARG.length()));
+            } else if (arg.startsWith(MODELS_MB_ARG)) {
+                maxBytes = Long.parseLong(arg.substring(MODELS_MB_ARG.length())) * 1024L * 1024L;
+            } else {
+                throw new IllegalArgumentException(arg);
+            }
+        }
+        if (port == null) {
+            throw new IllegalArgumentException("missing " + ARG + "port");
+        }
+        return new CliServer(port, maxBytes, Runtime.getRuntime().availableProcessors());
+    }
+
+    public CliServer start() {
+        server.start();
+        LOG.info("Listening on " + server.getAddress());
+        return this;
+    }
+
+    public void stop() {
+        server.stop(0);
+        handlers.shutdown();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    ModelRegistry getModels() {
+        return service.getModels();
+    }
+
+    private void rank(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        Map<String, Object> res = new LinkedHashMap<>();
+        int status = 200;
+        try {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                respond(exchange, 405, error("POST the JSON arguments"));
+                return;
+            }
+            Object json = Json.parse(new String(readAll(exchange.getRequestBody()), StandardCharsets.UTF_8));
+            if (!(json instanceof Map)) {
+                throw new IllegalArgumentException("a request should be a JSON object.");
+            }
+            res.put("results", service.rank((Map<?, ?>) json));
+            res.put("millis", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (IllegalArgumentException | AssertionError e) {
+            LOG.warning("Invalid request: " + e);
+            status = 400;
+            res = error(e.getMessage() == null ? e.toString() : e.getMessage());
+        } catch (Exception e) {
+            LOG.warning("Request failed: " + e);
+            status = 500;
+            res = error(e.getMessage() == null ? e.toString() : e.getMessage());
+        }
+        respond(exchange, status, res);
+    }
+
+    private void models(HttpExchange exchange) throws IOException {
+        Map<String, Object> res = new LinkedHashMap<>();
+        ModelRegistry models = service.getModels();
+        res.put("models", models.size());
+        res.put("bytes", models.bytes());
+        respond(exchange, 200, res);
+    }
+
+    private static Map<String, Object> error(String message) {
+        Map<String, Object> res = new LinkedHashMap<>();
+        res.put("error", message);
+        return res;
+    }
+
+    private static void respond(HttpExchange exchange, int status, Map<String, Object> body) throws IOException {
+        byte[] bytes = Json.write(body).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+}
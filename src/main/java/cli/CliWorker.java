@@ -0,0 +1,83 @@
+package cli;
+
+import model.ModelRegistry;
+import utils.Json;
+import utils.LogFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Long-lived worker answering ranking requests read from an input stream, one JSON object per line,
+ * with one JSON object per line on the output stream, in the same order.
+ * <p>
+ * A request holds the arguments of {@link RankingService}:
+ * {@code {"id": 1, "repo": "path/to/repo", "in": ["A.java", "B.java"], "n": 4, "ex_w_in_path": ["test"]}},
+ * and the optional "id" is echoed in the answer:
+ * {@code {"id": 1, "results": [{"file": "/A.java", "line": 3, "entropy": 2.5, "tokens_count": 7}], "millis": 12}},
+ * or {@code {"id": 1, "error": "message", "millis": 0}}.
+ * <p>
+ * Trained models and tokenized files are kept in memory between requests, so requests on an unchanged repository
+ * only tokenize and score their targets.
+ */
+public final class CliWorker {
+
+    public static final String ARG = "-worker";
+    private static final Logger LOG = LogFactory.logger(CliWorker.class);
+    private static final String ID = "id";
+
+    private final BufferedReader in;
+    private final PrintStream out;
+    private final RankingService service = new RankingService();
+
+    public CliWorker(InputStream in, OutputStream out) {
+        this.in = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        try {
+            this.out = new PrintStream(out, false, StandardCharsets.UTF_8.name());
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * answers the requests until the end of the input stream.
+     */
+    public void run() throws IOException {
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            out.println(Json.write(answer(line)));
+            out.flush();
+        }
+    }
+
+    Map<String, Object> answer(String request) {
+        long start = System.nanoTime();
+        Map<String, Object> res = new LinkedHashMap<>();
+        res.put(ID, null);
+        try {
+            Object json = Json.parse(request);
+            if (!(json instanceof Map)) {
+                throw new IllegalArgumentException("a request should be a JSON object.");
+            }
+            Map<?, ?> arguments = new LinkedHashMap<>((Map<?, ?>) json);
+            res.put(ID, arguments.remove(ID));
+            res.put("results", service.rank(arguments));
+        } catch (Exception | AssertionError e) {
+            LOG.warning("Request failed: " + e);
+            res.put("error", e.getMessage() == null ? e.toString() : e.getMessage());
+        }
+        res.put("millis", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return res;
+    }
+
+    ModelRegistry getModels() {
+        return service.getModels();
+    }
+}
@@ -0,0 +1,190 @@
+package cli;
+
+import cache.TokenCache;
+import model.ModelRegistry;
+import parser.File;
+import parser.Line;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Answers ranking requests of the long-lived modes, {@link CliWorker} and {@link CliServer}, from their JSON arguments.
+ * Trained models and tokenized files are kept in memory between requests and shared by concurrent requests: the
+ * requests on one repository share its model whatever their targets, see {@link CliRequest#shareRepositoryModel()}.
+ * <p>
+ * The arguments are the command-line ones, named without their leading '-' nor trailing '=', with repeated arguments
+ * given as arrays and flags as booleans. Targets can also be given as raw source text, by name, with
+ * {@code "sources": {"A.java": "class A {}"}}: they are ranked as files outside of the repository.
+ */
+public final class RankingService {
+
+    static final String SOURCES = "sources";
+    static final int DEFAULT_MODELS = 8;
+    static final long DEFAULT_MEMORY_TOKENS = 10_000_000L;
+
+    private final ModelRegistry models;
+    // one cache per token cache directory requested, "" standing for the memory only cache.
+    private final Map<String, TokenCache> tokenCaches = new ConcurrentHashMap<>();
+
+    public RankingService() {
+        this(new ModelRegistry(DEFAULT_MODELS));
+    }
+
+    public RankingService(ModelRegistry models) {
+        this.models = models;
+    }
+
+    /**
+     * @param arguments request arguments, other keys than the arguments and {@value #SOURCES} should be removed.
+     * @return one JSON object per ranked line or file, by increasing entropy.
+     * @throws IllegalArgumentException if the arguments are invalid.
+     */
+    public List<Map<String, Object>> rank(Map<?, ?> arguments) throws Exception {
+        Map<String, Object> args = new LinkedHashMap<>();
+        arguments.forEach((k, v) -> args.put(String.valueOf(k), v));
+        Object sources = args.remove(SOURCES);
+        if (sources == null) {
+            return rankArgs(toArgs(args), null);
+        }
+        if (!(sources instanceof Map) || ((Map<?, ?>) sources).isEmpty()) {
+            throw new IllegalArgumentException(SOURCES + " should be a non-empty object of source texts by file name.");
+        }
+        Path dir = Files.createTempDirectory("sources");
+        try {
+            Map<String, String> names = new HashMap<>();
+            List<Object> in = new ArrayList<>(values(args.remove(argName(args, CliArgPrefix.FILE_INCLUDE_REQUEST))));
+            Object repo = args.get(argName(args, CliArgPrefix.REPO));
+            int i = 0;
+            for (Map.Entry<?, ?> e : ((Map<?, ?>) sources).entrySet()) {
+                if (!(e.getValue() instanceof String)) {
+                    throw new IllegalArgumentException(SOURCES + " should map file names to source texts.");
+                }
+                String name = String.valueOf(e.getKey());
+                // "" and "/" have no file name.
+                Path fileName = Paths.get(name).getFileName();
+                if (fileName == null || fileName.toString().isEmpty()) {
+                    throw new IllegalArgumentException(SOURCES + " should be named by file names: \"" + name + "\"");
+                }
+                // one directory per source, so that the names do not need to be valid paths.
+                Path file = Files.createDirectory(dir.resolve(String.valueOf(i++))).resolve(fileName.toString());
+                Files.write(file, ((String) e.getValue()).getBytes(StandardCharsets.UTF_8));
+                // results are named relatively to the repository, as CliRequest does.
+                names.put(repo == null ? file.toString() : file.toString().replace(String.valueOf(repo), ""), name);
+                in.add(file.toString());
+            }
+            args.put(CliArgPrefix.FILE_INCLUDE_REQUEST.name(), in);
+            return rankArgs(toArgs(args), names);
+        } finally {
+            try (Stream<Path> paths = Files.walk(dir)) {
+                paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+            }
+        }
+    }
+
+    /**
+     * @param names names of the results to rename, by their file path.
+     */
+    private List<Map<String, Object>> rankArgs(String[] args, Map<String, String> names) throws Exception {
+        Object ranked;
+        try (CliRequest<?, ?> cliRequest = CliRequest.parseArgs(args)) {
+            cliRequest.tokenCache = sharedTokenCache(cliRequest.tokenCache);
+            // requests differing by their targets only share the model of the repository, as batch jobs do.
+            cliRequest.shareRepositoryModel();
+            ranked = cliRequest.train(models).rank();
+        }
+        List<Map<String, Object>> results = new ArrayList<>();
+        for (Object o : (List<?>) ranked) {
+            Map<String, Object> result = toJson(o);
+            if (names != null) {
+                result.put("file", names.getOrDefault(String.valueOf(result.get("file")), String.valueOf(result.get("file"))));
+            }
+            results.add(result);
+        }
+        return results;
+    }
+
+    static String[] toArgs(Map<?, ?> arguments) {
+        List<String> args = new ArrayList<>();
+        for (Map.Entry<?, ?> e : arguments.entrySet()) {
+            String name = String.valueOf(e.getKey());
+            CliArgPrefix prefix = CliArgPrefix.byName(name);
+            if (prefix == CliArgPrefix.THREADS) {
+                throw new IllegalArgumentException(name + " cannot be requested: the thread pool is shared by the requests.");
+            }
+            for (Object value : values(e.getValue())) {
+                if (prefix.isFlag()) {
+                    if (!(value instanceof Boolean)) {
+                        throw new IllegalArgumentException(name + " should be a boolean.");
+                    }
+                    if ((Boolean) value) {
+                        args.add(prefix.argPrefix);
+                    }
+                } else if (value instanceof String || value instanceof Number) {
+                    args.add(prefix.argPrefix + value);
+                } else {
+                    throw new IllegalArgumentException(name + " should be a string or a number.");
+                }
+            }
+        }
+        return args.toArray(new String[0]);
+    }
+
+    /**
+     * @return the name under which the argument is requested, null if it is not.
+     */
+    private static String argName(Map<String, Object> args, CliArgPrefix prefix) {
+        for (String name : args.keySet()) {
+            if (CliArgPrefix.byName(name) == prefix) {
+                return name;
+            }
+        }
+        return null;
+    }
+
+    private static List<?> values(Object value) {
+        if (value == null) {
+            return Collections.emptyList();
+        }
+        return value instanceof List ? (List<?>) value : Collections.singletonList(value);
+    }
+
+    /**
+     * @return the cache of the service with the same directory, keeping tokenized files in memory as well.
+     */
+    TokenCache sharedTokenCache(TokenCache requested) {
+        String key = requested == null ? "" : requested.getDirectory().toString();
+        return tokenCaches.computeIfAbsent(key, k -> requested == null
+                ? new TokenCache(null, 0, DEFAULT_MEMORY_TOKENS)
+                : new TokenCache(requested.getDirectory(), requested.getMaxBytes(), DEFAULT_MEMORY_TOKENS));
+    }
+
+    private static Map<String, Object> toJson(Object result) {
+        Map<String, Object> res = new LinkedHashMap<>();
+        if (result instanceof Line) {
+            Line l = (Line) result;
+            res.put("file", l.getFilePath());
+            res.put("line", l.getLineNumber());
+            res.put("entropy", l.getEntropy());
+            res.put("tokens_count", l.getTokensCount());
+        } else if (result instanceof File) {
+            File f = (File) result;
+            res.put("file", f.getFilePath());
+            res.put("entropy", f.getEntropy());
+            res.put("tokens_count", f.getTokensCount());
+        } else {
+            throw new IllegalArgumentException("Unknown result : " + result);
+        }
+        return res;
+    }
+
+    public ModelRegistry getModels() {
+        return models;
+    }
+}
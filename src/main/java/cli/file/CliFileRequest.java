@@ -1,18 +1,23 @@
 package cli.file;
 
 import cli.CliRequest;
-import modelling.exception.TrainingFailedException;
-import modelling.infrastructure.NgramModelKylmImpl;
+import events.Events;
+import model.LanguageModel;
+import model.ModelTrainer;
 import output.CsvPrinter;
 import parser.File;
+import parser.SourceStore;
 import tokenizer.file.AbstractFileTokenizer;
 import utils.Checker;
+import utils.RunMetrics;
 import utils.ThreadUtils;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Objects;
 import java.util.concurrent.ExecutionException;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -27,38 +32,86 @@ public class CliFileRequest extends CliRequest<AbstractFileTokenizer, List<File>
     }
 
     public List<File> getTrainingList() throws IOException, ExecutionException, InterruptedException {
-        return ThreadUtils.runParallel(File2TokenizedFileTask.fromPaths(getTrainingFiles(), repoPath, tokenizer));
+        return ThreadUtils.runParallel(File2TokenizedFileTask.fromPaths(getTrainingFiles(), repoPath, tokenizer, tokenCache, sources()));
     }
 
     public List<File> getTargetList() throws ExecutionException, InterruptedException {
         assert targetPaths != null && !targetPaths.isEmpty();
-        return ThreadUtils.runParallel(File2TokenizedFileTask.fromPaths(targetPaths, repoPath, tokenizer));
+        return ThreadUtils.runParallel(File2TokenizedFileTask.fromPaths(targetPaths, repoPath, tokenizer, tokenCache, sources()));
+    }
+
+    private static void score(File file, LanguageModel scoring) {
+        Events.Scoring event = Events.scoring();
+        file.calculateEntropy(scoring);
+        if (event.shouldCommit()) {
+            event.commit(file.getFilePath(), 0, file.getTokensCount());
+        }
     }
 
     // todo refactor seems very similar to the implementation of line
     public List<Iterable<String>> getTrainingSet() throws IOException, ExecutionException, InterruptedException {
         List<Iterable<String>> res = new ArrayList<>();
         for (File l : getTrainingList()) {
-            if (l.getTokens() != null && l.getTokens().iterator().hasNext())
-                res.add(l.getTokens());
+            res.addAll(tokensOf(l));
         }
         return res;
     }
 
-    public CliFileRequest train() throws IOException, ExecutionException, InterruptedException, TrainingFailedException {
-        this.model = new NgramModelKylmImpl(size, smoother, threshold);
-        model.train(getTrainingSet());
-        return this;
+    @Override
+    public List<Iterable<String>> getTargetSet() throws ExecutionException, InterruptedException {
+        return getTargetList().stream().filter(Objects::nonNull).map(File::getTokens).filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
+    @Override
+    protected void streamTrainingSet(ModelTrainer trainer) throws IOException, ExecutionException, InterruptedException {
+        streamFiles(getModelTrainingFiles(), sources(), trainer);
+    }
+
+    @Override
+    protected void streamFiles(List<String> files, SourceStore sources, ModelTrainer trainer) throws ExecutionException, InterruptedException {
+        ThreadUtils.runStreaming(File2TokenizedFileTask.fromPaths(files, repoPath, tokenizer, tokenCache, sources), (i, file) -> {
+            trainer.add(i, File2TokenizedFileTask.corpusOf(file));
+            metrics.count(1, 0, file == null ? 0 : file.getTokensCount());
+        });
+    }
+
+    private static List<Iterable<String>> tokensOf(File file) {
+        if (file != null && file.getTokens() != null && file.getTokens().iterator().hasNext())
+            return Collections.singletonList(file.getTokens());
+        return Collections.emptyList();
+    }
+
+    private static long tokensCount(List<File> files) {
+        long count = 0;
+        for (File f : files) {
+            count += f.getTokensCount();
+        }
+        return count;
     }
 
     // todo refactor seems very similar to the implementation of line
     public List<File> rank() throws ExecutionException, InterruptedException, IOException {
-        List<File> targetFiles = getTargetList().stream().filter(f -> f != null && f.getTokens() != null).collect(Collectors.toList());
-        targetFiles.forEach(file -> file.calculateEntropy(model));
-        targetFiles.sort(Comparator.comparing(File::getEntropy));
+        List<File> tokenizedTargets;
+        List<File> targetFiles;
+        try (RunMetrics.Phase ignored = metrics.phase("target_tokenization")) {
+            tokenizedTargets = getTargetList();
+            targetFiles = tokenizedTargets.stream().filter(f -> f != null && f.getTokens() != null).collect(Collectors.toList());
+            metrics.count(targetFiles.size(), 0, tokensCount(targetFiles));
+        }
+        try (RunMetrics.Phase ignored = metrics.phase("scoring")) {
+            List<Iterable<String>> leftOut = leftOutSentences(tokenizedTargets.stream().map(CliFileRequest::tokensOf).collect(Collectors.toList()));
+            LanguageModel scoring = scoringModel(leftOut);
+            ThreadUtils.forEachParallel(targetFiles, file -> score(file, scoring), threads);
+            targetFiles.sort(Comparator.comparing(File::getEntropy));
+            metrics.count(targetFiles.size(), 0, tokensCount(targetFiles));
+        }
         if (!Checker.isTrimNlOrEmpty(outputCsvPath)) {
-            new CsvPrinter<>(outputCsvPath, targetFiles).print();
+            try (RunMetrics.Phase ignored = metrics.phase("output")) {
+                new CsvPrinter<>(outputCsvPath, targetFiles).print();
+                metrics.count(1, targetFiles.size(), 0);
+            }
         }
+        writeMetrics();
         return targetFiles;
     }
 
@@ -1,25 +1,25 @@
 package cli.file;
 
 
+import cache.TokenCache;
 import cli.CliRequest;
+import events.Events;
+import model.Corpus;
 import parser.File;
 import parser.Line;
+import parser.SourceFile;
+import parser.SourceStore;
 import tokenizer.file.AbstractFileTokenizer;
 import tokenizer.line.AbstractLineTokenizer;
 import tokenizer.line.java.JavaLemmeLineTokenizer;
 import utils.Checker;
 import utils.LogFactory;
 
-import java.io.FileReader;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.logging.Logger;
-import java.util.stream.Stream;
 
 
 class File2TokenizedFileTask implements Callable<File> {
@@ -29,37 +29,88 @@ class File2TokenizedFileTask implements Callable<File> {
     private final String path;
     private final AbstractFileTokenizer tokenizer;
     private final String repoPath;
+    private final TokenCache tokenCache;
+    private final SourceStore sources;
 
     File2TokenizedFileTask(String path, String repoPath, AbstractFileTokenizer tokenizer) {
+        this(path, repoPath, tokenizer, null, SourceStore.FILE_SYSTEM);
+    }
+
+    File2TokenizedFileTask(String path, String repoPath, AbstractFileTokenizer tokenizer, TokenCache tokenCache, SourceStore sources) {
         this.path = path;
         this.repoPath = repoPath;
         this.tokenizer = tokenizer;
+        this.tokenCache = tokenCache;
+        this.sources = sources;
     }
 
-    static List<File2TokenizedFileTask> fromPaths(List<String> strings, String repoPath, AbstractFileTokenizer tokenizer) {
+    /**
+     * @param tokenCache null if tokenized files are not cached.
+     * @param sources    where the files are read from.
+     */
+    static List<File2TokenizedFileTask> fromPaths(List<String> strings, String repoPath, AbstractFileTokenizer tokenizer, TokenCache tokenCache, SourceStore sources) {
         List<File2TokenizedFileTask> res = new ArrayList<>();
         for (String string : strings) {
-            res.add(new File2TokenizedFileTask(string, repoPath, tokenizer));
+            res.add(new File2TokenizedFileTask(string, repoPath, tokenizer, tokenCache, sources));
         }
         return res;
     }
 
     @Override
     public File call() throws Exception {
-        Path p = Paths.get(path);
-        long lineCount;
-        try (Stream<String> stream = Files.lines(p, StandardCharsets.UTF_8)) {
-            lineCount = stream.count();
-        }
-        if (lineCount < 1) {
-            LOG.warning("Empty file = " + path);
-            return null;
+        Events.Tokenize event = Events.tokenize();
+        // files known by the id of their content are not even read when their tokens are cached, nor their lines counted.
+        String contentId = tokenCache == null ? null : sources.contentId(path);
+        List<Iterable<String>> cached = contentId == null ? null : tokenCache.get(contentId, tokenizer);
+        Iterable<String> tokens;
+        long lineCount = 0;
+        boolean fromCache = cached != null && cached.size() == 1;
+        if (fromCache) {
+            tokens = cached.get(0);
+        } else {
+            SourceFile source = sources.read(path);
+            lineCount = source.lineCount();
+            if (lineCount < 1) {
+                LOG.warning("Empty file = " + path);
+                return null;
+            }
+            cached = tokenCache == null || contentId != null ? null : tokenCache.get(source.getBytes(), tokenizer);
+            fromCache = cached != null && cached.size() == 1;
+            if (fromCache) {
+                tokens = cached.get(0);
+            } else {
+                tokens = tokenizer.tokenize(source.reader());
+                if (contentId != null) {
+                    tokenCache.put(contentId, tokenizer, Collections.singletonList(tokens));
+                } else if (tokenCache != null) {
+                    tokenCache.put(source.getBytes(), tokenizer, Collections.singletonList(tokens));
+                }
+            }
         }
-        Iterable<String> tokens = tokenizer.tokenize(new FileReader(p.toFile()));
 
         assert !Checker.isTrimNlOrEmpty(tokens);
 
-        return new File(path.replace(repoPath, ""), tokens);
+        File res = new File(path.replace(repoPath, ""), Corpus.of(Collections.singletonList(tokens)).sentence(0));
+        if (event.shouldCommit()) {
+            event.commit(path, tokenizer.getClass().getSimpleName(), lineCount, res.getTokensCount(), fromCache);
+        }
+        return res;
+    }
+
+    /**
+     * @param file a file tokenized by a task, null if it is empty.
+     * @return the corpus of the tokens of the file as one sentence, empty if the file has no token.
+     */
+    static Corpus corpusOf(File file) {
+        if (file != null && file.getTokens() instanceof Corpus.Sentence && file.getTokensCount() > 0) {
+            return ((Corpus.Sentence) file.getTokens()).getCorpus();
+        }
+        return Corpus.EMPTY;
+    }
+
+    @Override
+    public String toString() {
+        return path;
     }
 
 }
@@ -1,16 +1,20 @@
 package cli.line;
 
 import cli.CliRequest;
-import modelling.exception.TrainingFailedException;
-import modelling.infrastructure.NgramModelKylmImpl;
+import events.Events;
+import model.LanguageModel;
+import model.ModelTrainer;
 import modelling.infrastructure.kylm.ngram.smoother.KNSmoother;
 import modelling.infrastructure.kylm.ngram.smoother.MKNSmoother;
 import modelling.infrastructure.kylm.ngram.smoother.NgramSmoother;
 import modelling.main.kylm.SmootherFactory;
 import output.CsvPrinter;
 import parser.Line;
+import parser.LineResults;
+import parser.SourceStore;
 import tokenizer.line.AbstractLineTokenizer;
 import utils.Checker;
+import utils.RunMetrics;
 import utils.ThreadUtils;
 
 import java.io.IOException;
@@ -22,43 +26,202 @@ import java.util.stream.Collectors;
 
 public class CliLineRequest extends CliRequest<AbstractLineTokenizer, List<Line>> {
     private final static Logger LOG = Logger.getLogger(CliLineRequest.class.getSimpleName());
+    // lines scored by one task, batches never span several files.
+    static final int SCORING_BATCH = 256;
+    // smaller in tests, to score the few lines of the test repository in many parallel batches.
+    int scoringBatch = SCORING_BATCH;
+    // repository files tokenized while training, kept to be ranked without tokenizing them again.
+    private List<List<Line>> repositoryFiles;
 
     public CliLineRequest(AbstractLineTokenizer tokenizer, String repoPath, List<String> cliFileRequests, String outputCsvPath) {
         super(tokenizer, repoPath, cliFileRequests, outputCsvPath, DEFAULT_SIZE, DEFAULT_THRESHOLD, DEFAULT_SMOOTHER, DEFAULT_EXCLUDE_FILES_CONTAINING_WORDS_IN_PATH, null, false);
     }
 
     public List<Line> getTrainingList() throws IOException, ExecutionException, InterruptedException {
-        return ThreadUtils.runMergeParallel(File2TokenizedLinesTask.fromPaths(getTrainingFiles(), repoPath, tokenizer));
+        return ThreadUtils.runMergeParallel(File2TokenizedLinesTask.fromPaths(getTrainingFiles(), repoPath, tokenizer, tokenCache, sources()));
     }
 
     public List<Line> getTargetList() throws ExecutionException, InterruptedException {
         assert targetPaths != null && !targetPaths.isEmpty();
-        return ThreadUtils.runMergeParallel(File2TokenizedLinesTask.fromPaths(targetPaths, repoPath, tokenizer));
+        return ThreadUtils.runMergeParallel(File2TokenizedLinesTask.fromPaths(targetPaths, repoPath, tokenizer, tokenCache, sources()));
     }
 
     public List<Iterable<String>> getTrainingSet() throws IOException, ExecutionException, InterruptedException {
+        return tokensOf(getTrainingList());
+    }
+
+    @Override
+    public List<Iterable<String>> getTargetSet() throws ExecutionException, InterruptedException {
+        return getTargetList().stream().map(Line::getTokens).filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
+    @Override
+    protected void streamTrainingSet(ModelTrainer trainer) throws IOException, ExecutionException, InterruptedException {
+        List<String> files = getModelTrainingFiles();
+        List<List<Line>> tokenized = isRankingRepository() ? new ArrayList<>(Collections.nCopies(files.size(), null)) : null;
+        ThreadUtils.runStreaming(File2TokenizedLinesTask.fromPaths(files, repoPath, tokenizer, tokenCache, sources()), (i, lines) -> {
+            trainer.add(i, File2TokenizedLinesTask.corpusOf(lines));
+            metrics.count(1, lines.size(), tokensCount(lines));
+            if (tokenized != null) {
+                tokenized.set(i, lines);
+            }
+        });
+        repositoryFiles = tokenized;
+    }
+
+    @Override
+    protected void streamFiles(List<String> files, SourceStore sources, ModelTrainer trainer) throws ExecutionException, InterruptedException {
+        ThreadUtils.runStreaming(File2TokenizedLinesTask.fromPaths(files, repoPath, tokenizer, tokenCache, sources), (i, lines) -> {
+            trainer.add(i, File2TokenizedLinesTask.corpusOf(lines));
+            metrics.count(1, lines.size(), tokensCount(lines));
+        });
+    }
+
+    private static List<Iterable<String>> tokensOf(List<Line> lines) {
         List<Iterable<String>> res = new ArrayList<>();
-        for (Line l : getTrainingList()) {
+        for (Line l : lines) {
             if (l.getTokens() != null && l.getTokens().iterator().hasNext())
                 res.add(l.getTokens());
         }
         return res;
     }
 
-    public CliLineRequest train() throws IOException, ExecutionException, InterruptedException, TrainingFailedException {
-        this.model = new NgramModelKylmImpl(size, smoother, threshold);
-        model.train(getTrainingSet());
-        return this;
+    private static long tokensCount(List<Line> lines) {
+        long count = 0;
+        for (Line l : lines) {
+            count += l.getTokensCount();
+        }
+        return count;
     }
 
-    public List<Line> rank() throws ExecutionException, InterruptedException, IOException {
-        List<Line> targetLines = getTargetList().stream().filter(l -> l.getTokens() != null).collect(Collectors.toList());
-        targetLines.forEach(line -> line.calculateEntropy(model));
-        targetLines.sort(Comparator.comparing(Line::getEntropy));
+    public LineResults rank() throws ExecutionException, InterruptedException, IOException {
+        if (isRankingRepository()) {
+            return rankRepository();
+        }
+        if (isRankingChangedLines() && targetPaths.isEmpty()) {
+            LOG.info("No java line changed, nothing to rank.");
+            LineResults results = new LineResults(0);
+            print(results);
+            return results;
+        }
+        assert targetPaths != null && !targetPaths.isEmpty();
+        List<List<Line>> targetFiles;
+        try (RunMetrics.Phase ignored = metrics.phase("target_tokenization")) {
+            targetFiles = ThreadUtils.runParallel(File2TokenizedLinesTask.fromPaths(targetPaths, repoPath, tokenizer, tokenCache, sources()));
+            metrics.count(targetFiles.size(), targetFiles.stream().mapToLong(List::size).sum(), targetFiles.stream().mapToLong(CliLineRequest::tokensCount).sum());
+        }
+        LineResults results;
+        try (RunMetrics.Phase ignored = metrics.phase("scoring")) {
+            List<Iterable<String>> leftOut = leftOutSentences(targetFiles.stream().map(CliLineRequest::tokensOf).collect(Collectors.toList()));
+            LanguageModel scoring = scoringModel(leftOut);
+            List<BitSet> changed = targetPaths.stream().map(this::changedLines).collect(Collectors.toList());
+            results = new LineResults(isRankingChangedLines() ? changed.stream().mapToInt(BitSet::cardinality).sum() : targetFiles.stream().mapToInt(List::size).sum());
+            List<Batch> batches = batches(targetFiles, changed, results, scoringBatch);
+            ThreadUtils.forEachParallel(batches, batch -> batch.score(scoring, results), threads);
+            results.sortByEntropy();
+            metrics.count(targetFiles.size(), results.size(), results.tokensCount());
+        }
+        print(results);
+        return results;
+    }
+
+    private void print(LineResults lines) throws IOException {
         if (!Checker.isTrimNlOrEmpty(outputCsvPath)) {
-            new CsvPrinter<>(outputCsvPath, targetLines).print();
+            try (RunMetrics.Phase ignored = metrics.phase("output")) {
+                // a change may leave no line to rank.
+                if (lines.isEmpty() && isRankingChangedLines()) {
+                    CsvPrinter.printHeaders(outputCsvPath);
+                } else {
+                    CsvPrinter.print(outputCsvPath, lines);
+                }
+                metrics.count(1, lines.size(), 0);
+            }
+        }
+        writeMetrics();
+    }
+
+    /**
+     * ranks the lines of every repository file, each file being scored by the model without its own sentences,
+     * so that one model trained on the whole repository replaces one model per file trained on the other files.
+     * Files are scored in parallel and the lines of all files are written to one csv.
+     */
+    private LineResults rankRepository() throws ExecutionException, InterruptedException, IOException {
+        List<List<Line>> files = repositoryFiles;
+        repositoryFiles = null;
+        if (files == null) {
+            try (RunMetrics.Phase ignored = metrics.phase("target_tokenization")) {
+                files = ThreadUtils.runParallel(File2TokenizedLinesTask.fromPaths(getRepositoryFiles(), repoPath, tokenizer, tokenCache, sources()));
+                metrics.count(files.size(), files.stream().mapToLong(List::size).sum(), files.stream().mapToLong(CliLineRequest::tokensCount).sum());
+            }
+        }
+        LineResults results;
+        try (RunMetrics.Phase ignored = metrics.phase("scoring")) {
+            results = new LineResults(files.stream().mapToInt(List::size).sum());
+            List<Batch> batches = batches(files, null, results, Integer.MAX_VALUE);
+            ThreadUtils.forEachParallel(batches, batch -> batch.score(model.without(tokensOf(batch.lines)), results), threads);
+            results.sortByEntropy();
+            metrics.count(files.size(), results.size(), results.tokensCount());
+        }
+        print(results);
+        return results;
+    }
+
+    /**
+     * adds the lines to score of the files to the results, in their order.
+     *
+     * @param lineNumbers the numbers of the lines to score of every file, null to score every line.
+     * @return the lines to score, in batches of at most {@code batchSize} consecutive lines of one file.
+     */
+    private static List<Batch> batches(List<List<Line>> files, List<BitSet> lineNumbers, LineResults results, int batchSize) {
+        List<Batch> res = new ArrayList<>();
+        for (int f = 0; f < files.size(); f++) {
+            List<Line> lines = files.get(f);
+            BitSet scored = lineNumbers == null ? null : lineNumbers.get(f);
+            int i = 0;
+            while (i < lines.size()) {
+                if (scored != null && !scored.get(lines.get(i).getLineNumber())) {
+                    i++;
+                    continue;
+                }
+                int end = i + 1;
+                while (end < lines.size() && end - i < batchSize && (scored == null || scored.get(lines.get(end).getLineNumber()))) {
+                    end++;
+                }
+                int first = results.size();
+                for (Line l : lines.subList(i, end)) {
+                    results.add(l.getFilePath(), l.getLineNumber(), l.getTokensCount());
+                }
+                res.add(new Batch(lines.subList(i, end), i, first));
+                i = end;
+            }
         }
-        return targetLines;
+        return res;
     }
 
+    /**
+     * consecutive lines of one file, from its sentence {@code sentence}, at consecutive indices of the results
+     * from {@code index}.
+     */
+    private static final class Batch {
+        private final List<Line> lines;
+        private final int sentence;
+        private final int index;
+
+        private Batch(List<Line> lines, int sentence, int index) {
+            this.lines = lines;
+            this.sentence = sentence;
+            this.index = index;
+        }
+
+        private void score(LanguageModel scoring, LineResults results) {
+            Events.Scoring event = Events.scoring();
+            double[] entropies = scoring.crossEntropies(File2TokenizedLinesTask.corpusOf(lines), sentence, sentence + lines.size());
+            for (int i = 0; i < entropies.length; i++) {
+                results.setEntropy(index + i, entropies[i]);
+            }
+            if (!lines.isEmpty() && event.shouldCommit()) {
+                event.commit(lines.get(0).getFilePath(), lines.size(), tokensCount(lines));
+            }
+        }
+    }
 }
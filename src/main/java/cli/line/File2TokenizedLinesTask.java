@@ -1,23 +1,22 @@
 package cli.line;
 
 
+import cache.TokenCache;
 import cli.CliRequest;
+import events.Events;
+import model.Corpus;
 import parser.Line;
+import parser.SourceFile;
+import parser.SourceStore;
 import tokenizer.line.AbstractLineTokenizer;
 import tokenizer.line.java.JavaLemmeLineTokenizer;
 import utils.Checker;
 import utils.LogFactory;
 
-import java.io.FileReader;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.logging.Logger;
-import java.util.stream.Stream;
 
 
 class File2TokenizedLinesTask implements Callable<List<Line>> {
@@ -27,54 +26,103 @@ class File2TokenizedLinesTask implements Callable<List<Line>> {
     private final String path;
     private final AbstractLineTokenizer tokenizer;
     private final String repoPath;
+    private final TokenCache tokenCache;
+    private final SourceStore sources;
 
     File2TokenizedLinesTask(String path, String repoPath, AbstractLineTokenizer tokenizer) {
+        this(path, repoPath, tokenizer, null, SourceStore.FILE_SYSTEM);
+    }
+
+    File2TokenizedLinesTask(String path, String repoPath, AbstractLineTokenizer tokenizer, TokenCache tokenCache, SourceStore sources) {
         this.path = path;
         this.repoPath = repoPath;
         this.tokenizer = tokenizer;
+        this.tokenCache = tokenCache;
+        this.sources = sources;
     }
 
-    static List<File2TokenizedLinesTask> fromPaths(List<String> strings, String repoPath, AbstractLineTokenizer tokenizer) {
+    /**
+     * @param tokenCache null if tokenized files are not cached.
+     * @param sources    where the files are read from.
+     */
+    static List<File2TokenizedLinesTask> fromPaths(List<String> strings, String repoPath, AbstractLineTokenizer tokenizer, TokenCache tokenCache, SourceStore sources) {
         List<File2TokenizedLinesTask> res = new ArrayList<>();
         for (String string : strings) {
-            res.add(new File2TokenizedLinesTask(string, repoPath, tokenizer));
+            res.add(new File2TokenizedLinesTask(string, repoPath, tokenizer, tokenCache, sources));
         }
         return res;
     }
 
     @Override
     public List<Line> call() throws Exception {
+        Events.Tokenize event = Events.tokenize();
         List<Line> res = new ArrayList<>();
-        Path p = Paths.get(path);
-        long lineCount;
-        try (Stream<String> stream = Files.lines(p, StandardCharsets.UTF_8)) {
-            lineCount = stream.count();
-        }
-        if (lineCount < 1) {
-            LOG.warning("Empty file = " + path);
-            return res;
-        }
-        List<Iterable<String>> strLines = (List<Iterable<String>>) tokenizer.tokenize(new FileReader(p.toFile()));
-        if (tokenizer instanceof JavaLemmeLineTokenizer) {
-            assert lineCount == strLines.size();
-        } else {
-            assert lineCount <= strLines.size() : "tokenizer ignored lines: received " + strLines.size() + " instead of " + lineCount;
-            if (strLines.size() > lineCount) { // some tokenizers consider the empty lines in the end.
-                for (int i = (int) lineCount - 1; i < strLines.size() - 1; i++) { //  some tokenizers shift sep. in the last line.
-                    assert !strLines.get(i).iterator().hasNext() || "\n".equals(strLines.get(i).iterator().next()) : "tokenizer returned extra line at " + i + " that is not a break : " + strLines.size() + " instead of " + lineCount;
+        // files known by the id of their content are not even read when their tokens are cached.
+        String contentId = tokenCache == null ? null : sources.contentId(path);
+        List<Iterable<String>> strLines = contentId == null ? null : tokenCache.get(contentId, tokenizer);
+        boolean cached = strLines != null;
+        if (strLines == null) {
+            SourceFile source = sources.read(path);
+            long lineCount = source.lineCount();
+            if (lineCount < 1) {
+                LOG.warning("Empty file = " + path);
+                return res;
+            }
+            strLines = tokenCache == null || contentId != null ? null : tokenCache.get(source.getBytes(), tokenizer);
+            cached = strLines != null;
+            if (strLines == null) {
+                strLines = (List<Iterable<String>>) tokenizer.tokenize(source.reader());
+                if (contentId != null) {
+                    tokenCache.put(contentId, tokenizer, strLines);
+                } else if (tokenCache != null) {
+                    tokenCache.put(source.getBytes(), tokenizer, strLines);
+                }
+            }
+            if (tokenizer instanceof JavaLemmeLineTokenizer) {
+                assert lineCount == strLines.size();
+            } else {
+                assert lineCount <= strLines.size() : "tokenizer ignored lines: received " + strLines.size() + " instead of " + lineCount;
+                if (strLines.size() > lineCount) { // some tokenizers consider the empty lines in the end.
+                    for (int i = (int) lineCount - 1; i < strLines.size() - 1; i++) { //  some tokenizers shift sep. in the last line.
+                        assert !strLines.get(i).iterator().hasNext() || "\n".equals(strLines.get(i).iterator().next()) : "tokenizer returned extra line at " + i + " that is not a break : " + strLines.size() + " instead of " + lineCount;
+                    }
                 }
             }
         }
         assert !Checker.isTrimNlOrEmpty(strLines);
 
+        Corpus.Builder corpus = new Corpus.Builder();
+        List<Integer> lineNumbers = new ArrayList<>();
         for (int i = 0; i < strLines.size(); i++) {
             Iterable<String> lineTokens = strLines.get(i);
             if (lineTokens != null && lineTokens.iterator().hasNext() && lineTokens.iterator().next() != null) {
-                res.add(new Line(path.replace(repoPath, ""), i + 1, lineTokens));
+                corpus.add(lineTokens);
+                lineNumbers.add(i + 1);
             }
         }
+        Corpus built = corpus.build();
+        String filePath = path.replace(repoPath, "");
+        for (int s = 0; s < built.size(); s++) {
+            res.add(new Line(filePath, lineNumbers.get(s), built.sentence(s)));
+        }
 
+        if (event.shouldCommit()) {
+            event.commit(path, tokenizer.getClass().getSimpleName(), res.size(), res.stream().mapToLong(Line::getTokensCount).sum(), cached);
+        }
         return res;
     }
 
+    /**
+     * @param lines the lines of one file tokenized by a task.
+     * @return the corpus whose sentences are the tokens of the lines, in their order.
+     */
+    static Corpus corpusOf(List<Line> lines) {
+        return lines.isEmpty() ? Corpus.EMPTY : ((Corpus.Sentence) lines.get(0).getTokens()).getCorpus();
+    }
+
+    @Override
+    public String toString() {
+        return path;
+    }
+
 }
@@ -0,0 +1,157 @@
+package events;
+
+/**
+ * Begins the flight recorder events of a run. Runtimes without the flight recorder, Java 8 before 8u262 or JVMs built
+ * without it, get events that record nothing: the event classes, which extend {@code jdk.jfr.Event}, are only loaded
+ * once the flight recorder is known to be there.
+ * <p>
+ * As with {@code jdk.jfr.Event}, fields are only worth computing when {@code shouldCommit()} is true.
+ */
+public final class Events {
+
+    private static final boolean AVAILABLE = flightRecorderAvailable();
+
+    private static final Task NO_TASK = new Task() {
+        @Override
+        public boolean shouldCommit() {
+            return false;
+        }
+
+        @Override
+        public void commit(String task) {
+        }
+    };
+    private static final Phase NO_PHASE = new Phase() {
+        @Override
+        public boolean shouldCommit() {
+            return false;
+        }
+
+        @Override
+        public void commit(String phase, long files, long lines, long tokens) {
+        }
+    };
+    private static final Tokenize NO_TOKENIZE = new Tokenize() {
+        @Override
+        public boolean shouldCommit() {
+            return false;
+        }
+
+        @Override
+        public void commit(String file, String tokenizer, long lines, long tokens, boolean cached) {
+        }
+    };
+    private static final Scoring NO_SCORING = new Scoring() {
+        @Override
+        public boolean shouldCommit() {
+            return false;
+        }
+
+        @Override
+        public void commit(String file, long lines, long tokens) {
+        }
+    };
+
+    private Events() {
+    }
+
+    /**
+     * @return true if the runtime has the flight recorder, i.e. events are recorded when a recording is running.
+     */
+    public static boolean isAvailable() {
+        return AVAILABLE;
+    }
+
+    /**
+     * @return a begun {@link TaskEvent}.
+     */
+    public static Task task() {
+        return AVAILABLE ? Recorded.task() : NO_TASK;
+    }
+
+    /**
+     * @return a begun {@link PhaseEvent}.
+     */
+    public static Phase phase() {
+        return AVAILABLE ? Recorded.phase() : NO_PHASE;
+    }
+
+    /**
+     * @return a begun {@link TokenizeEvent}.
+     */
+    public static Tokenize tokenize() {
+        return AVAILABLE ? Recorded.tokenize() : NO_TOKENIZE;
+    }
+
+    /**
+     * @return a begun {@link ScoringEvent}.
+     */
+    public static Scoring scoring() {
+        return AVAILABLE ? Recorded.scoring() : NO_SCORING;
+    }
+
+    private static boolean flightRecorderAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event", false, Events.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    public interface Task {
+        boolean shouldCommit();
+
+        void commit(String task);
+    }
+
+    public interface Phase {
+        boolean shouldCommit();
+
+        void commit(String phase, long files, long lines, long tokens);
+    }
+
+    public interface Tokenize {
+        boolean shouldCommit();
+
+        void commit(String file, String tokenizer, long lines, long tokens, boolean cached);
+    }
+
+    public interface Scoring {
+        boolean shouldCommit();
+
+        /**
+         * @param lines number of lines scored, 0 when the whole file is scored as one sentence.
+         */
+        void commit(String file, long lines, long tokens);
+    }
+
+    /**
+     * the only class referring to the event classes, loaded when the flight recorder is available only.
+     */
+    private static final class Recorded {
+        private static Task task() {
+            TaskEvent res = new TaskEvent();
+            res.begin();
+            return res;
+        }
+
+        private static Phase phase() {
+            PhaseEvent res = new PhaseEvent();
+            res.begin();
+            return res;
+        }
+
+        private static Tokenize tokenize() {
+            TokenizeEvent res = new TokenizeEvent();
+            res.begin();
+            return res;
+        }
+
+        private static Scoring scoring() {
+            ScoringEvent res = new ScoringEvent();
+            res.begin();
+            return res;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event of a phase of a run, see {@link utils.RunMetrics}.
+ */
+@Name(PhaseEvent.NAME)
+@Label("Phase")
+@Category({"N-gram ranking", "Pipeline"})
+@Description("A phase of a ranking run: discovery, training, tokenization, scoring or output.")
+public class PhaseEvent extends jdk.jfr.Event implements Events.Phase {
+
+    public static final String NAME = "ngram.Phase";
+
+    @Label("Phase")
+    public String phase;
+
+    @Label("Files")
+    public long files;
+
+    @Label("Lines")
+    public long lines;
+
+    @Label("Tokens")
+    public long tokens;
+
+    @Override
+    public void commit(String phase, long files, long lines, long tokens) {
+        if (shouldCommit()) {
+            this.phase = phase;
+            this.files = files;
+            this.lines = lines;
+            this.tokens = tokens;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event of the scoring of a batch of lines, or of a file, of one source file.
+ */
+@Name(ScoringEvent.NAME)
+@Label("Scoring")
+@Category({"N-gram ranking", "Scoring"})
+@Description("Scoring a batch of lines, or a whole file, of one source file with the model.")
+public class ScoringEvent extends jdk.jfr.Event implements Events.Scoring {
+
+    public static final String NAME = "ngram.Scoring";
+
+    @Label("File")
+    public String file;
+
+    @Label("Lines")
+    @Description("Number of lines scored, 0 when the whole file is scored as one sentence.")
+    public long lines;
+
+    @Label("Tokens")
+    public long tokens;
+
+    @Override
+    public void commit(String file, long lines, long tokens) {
+        if (shouldCommit()) {
+            this.file = file;
+            this.lines = lines;
+            this.tokens = tokens;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event of a task run by {@link utils.ThreadUtils}.
+ */
+@Name(TaskEvent.NAME)
+@Label("Task")
+@Category({"N-gram ranking", "Tasks"})
+@Description("A task run by the shared thread pool, e.g. the tokenization of a file.")
+public class TaskEvent extends jdk.jfr.Event implements Events.Task {
+
+    public static final String NAME = "ngram.Task";
+
+    @Label("Task")
+    public String task;
+
+    @Override
+    public void commit(String task) {
+        if (shouldCommit()) {
+            this.task = task;
+            commit();
+        }
+    }
+}
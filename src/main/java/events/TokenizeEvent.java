@@ -0,0 +1,46 @@
+package events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event of the reading and tokenization of one source file.
+ */
+@Name(TokenizeEvent.NAME)
+@Label("Tokenize File")
+@Category({"N-gram ranking", "Tokenization"})
+@Description("Reading and tokenizing one source file, or taking its tokens from the token cache.")
+public class TokenizeEvent extends jdk.jfr.Event implements Events.Tokenize {
+
+    public static final String NAME = "ngram.Tokenize";
+
+    @Label("File")
+    public String file;
+
+    @Label("Tokenizer")
+    public String tokenizer;
+
+    @Label("Lines")
+    public long lines;
+
+    @Label("Tokens")
+    public long tokens;
+
+    @Label("Cached")
+    @Description("True if the tokens were taken from the token cache.")
+    public boolean cached;
+
+    @Override
+    public void commit(String file, String tokenizer, long lines, long tokens, boolean cached) {
+        if (shouldCommit()) {
+            this.file = file;
+            this.tokenizer = tokenizer;
+            this.lines = lines;
+            this.tokens = tokens;
+            this.cached = cached;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package git;
+
+import parser.SourceFile;
+import parser.SourceStore;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * The files of a commit under a directory of a git repository, read from the object database without checking the
+ * commit out. Files keep the absolute path they would have in the work tree, and are known by the id of their blob.
+ * <p>
+ * Blobs are read by {@code git cat-file --batch} processes, one per concurrent reader: a reader is started when no
+ * idle one is left and is reused by the next reads, so that blobs are read in parallel without starting one process
+ * per blob.
+ */
+public final class GitCommit implements SourceStore, Closeable {
+
+    // mode of the symbolic links, whose blob is the target path.
+    private static final String LINK_MODE = "120000";
+
+    private final Path directory;
+    private final String id;
+    private final Map<String, String> blobs;
+    private final Queue<BlobReader> readers = new ConcurrentLinkedQueue<>();
+
+    private GitCommit(Path directory, String id, Map<String, String> blobs) {
+        this.directory = directory;
+        this.id = id;
+        this.blobs = blobs;
+    }
+
+    /**
+     * @param directory a directory of the work tree of the repository, only the files under it are read.
+     * @param revision  a commit, e.g. an id, a branch, a tag or "HEAD~2".
+     * @throws IllegalArgumentException if the directory is not in a git work tree or the revision not a commit.
+     */
+    public static GitCommit open(Path directory, String revision) throws IOException {
+        GitRepository repository = GitRepository.open(directory);
+        if (repository == null) {
+            throw new IllegalArgumentException(directory + " is not in a git work tree.");
+        }
+        if (revision.isEmpty() || revision.startsWith("-")) {
+            throw new IllegalArgumentException("Wrong commit : " + revision);
+        }
+        String id;
+        try {
+            id = new String(repository.run("rev-parse", "--verify", "--quiet", revision + "^{commit}"), StandardCharsets.UTF_8).trim();
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Unknown commit : " + revision, e);
+        }
+        Map<String, String> blobs = new HashMap<>();
+        // entries are "<mode> <type> <id>\t<path>", the paths being relative to the directory.
+        for (String entry : GitRepository.split(repository.run("ls-tree", "-r", "-z", id), (byte) 0)) {
+            int tab = entry.indexOf('\t');
+            String[] fields = entry.substring(0, tab).split(" ");
+            if ("blob".equals(fields[1]) && !LINK_MODE.equals(fields[0])) {
+                blobs.put(repository.getDirectory().resolve(entry.substring(tab + 1)).toString(), fields[2]);
+            }
+        }
+        return new GitCommit(repository.getDirectory(), id, blobs);
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @return the full id of the commit.
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * @param suffix end of the listed paths, e.g. ".java".
+     * @return the absolute paths of the files of the commit, sorted.
+     */
+    public List<String> files(String suffix) {
+        List<String> res = new ArrayList<>();
+        for (String path : blobs.keySet()) {
+            if (path.endsWith(suffix)) {
+                res.add(path);
+            }
+        }
+        Collections.sort(res);
+        return res;
+    }
+
+    public boolean contains(String path) {
+        return blobs.containsKey(path);
+    }
+
+    /**
+     * @return the id of the blob of the file, null if the commit has no such file.
+     */
+    @Override
+    public String contentId(String path) {
+        return blobs.get(path);
+    }
+
+    /**
+     * @throws NoSuchFileException if the commit has no such file.
+     */
+    @Override
+    public SourceFile read(String path) throws IOException {
+        return SourceFile.of(readBytes(path));
+    }
+
+    /**
+     * @return the content of the file at the commit, may be called by concurrent threads.
+     * @throws NoSuchFileException if the commit has no such file.
+     */
+    public byte[] readBytes(String path) throws IOException {
+        String blob = blobs.get(path);
+        if (blob == null) {
+            throw new NoSuchFileException(path, null, "not in commit " + id);
+        }
+        BlobReader reader = readers.poll();
+        if (reader == null) {
+            reader = new BlobReader();
+        }
+        byte[] res;
+        try {
+            res = reader.read(blob);
+        } catch (IOException e) {
+            reader.destroy();
+            throw e;
+        }
+        readers.add(reader);
+        return res;
+    }
+
+    /**
+     * stops the idle readers. Reading again starts new ones.
+     */
+    @Override
+    public void close() {
+        for (BlobReader reader = readers.poll(); reader != null; reader = readers.poll()) {
+            reader.destroy();
+        }
+    }
+
+    /**
+     * a {@code git cat-file --batch} process, used by one thread at a time.
+     */
+    private final class BlobReader {
+        private final Process process;
+        private final OutputStream requests;
+        private final InputStream responses;
+
+        private BlobReader() throws IOException {
+            process = new ProcessBuilder(GitRepository.GIT, "-C", directory.toString(), "cat-file", "--batch")
+                    .redirectError(ProcessBuilder.Redirect.INHERIT).start();
+            requests = new BufferedOutputStream(process.getOutputStream());
+            responses = new BufferedInputStream(process.getInputStream());
+        }
+
+        /**
+         * @throws IOException if the blob is missing or git fails, the reader must not be used again.
+         */
+        private byte[] read(String blob) throws IOException {
+            requests.write((blob + "\n").getBytes(StandardCharsets.US_ASCII));
+            requests.flush();
+            // "<id> blob <size>" followed by the content and a line feed, or "<id> missing".
+            String header = readLine();
+            String[] fields = header.split(" ");
+            if (fields.length != 3 || !"blob".equals(fields[1])) {
+                throw new IOException("git cat-file cannot read blob " + blob + " : " + header);
+            }
+            byte[] res = new byte[Integer.parseInt(fields[2])];
+            for (int read = 0; read < res.length; ) {
+                int n = responses.read(res, read, res.length - read);
+                if (n < 0) {
+                    throw new EOFException("git cat-file ended while reading blob " + blob);
+                }
+                read += n;
+            }
+            if (responses.read() != '\n') {
+                throw new IOException("git cat-file returned more than blob " + blob);
+            }
+            return res;
+        }
+
+        private String readLine() throws IOException {
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            for (int b = responses.read(); b != '\n'; b = responses.read()) {
+                if (b < 0) {
+                    throw new EOFException("git cat-file ended");
+                }
+                line.write(b);
+            }
+            return new String(line.toByteArray(), StandardCharsets.UTF_8);
+        }
+
+        private void destroy() {
+            try {
+                requests.close();
+            } catch (IOException ignored) {
+                // the process is destroyed anyway.
+            }
+            process.destroy();
+        }
+    }
+}
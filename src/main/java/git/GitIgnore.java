@@ -0,0 +1,164 @@
+package git;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * The rules of the {@code .gitignore} files of a directory and of its parents, to skip ignored files without git.
+ * <p>
+ * Supports the usual syntax: comments, negations with '!', patterns anchored by a '/', directory only patterns
+ * ending with '/', and the '*', '?', '[...]' and '**' wildcards. Later rules and rules of deeper directories win.
+ * Global excludes and {@code .git/info/exclude} are not read.
+ */
+public final class GitIgnore {
+
+    public static final String FILE_NAME = ".gitignore";
+    /**
+     * no rule, but the {@code .git} directory that is always ignored.
+     */
+    public static final GitIgnore NONE = new GitIgnore(null, null, new ArrayList<>());
+
+    private final GitIgnore parent;
+    private final Path directory;
+    private final List<Rule> rules;
+
+    private GitIgnore(GitIgnore parent, Path directory, List<Rule> rules) {
+        this.parent = parent;
+        this.directory = directory;
+        this.rules = rules;
+    }
+
+    /**
+     * @return the rules of the directory added to these ones, these ones if the directory has no {@value #FILE_NAME}.
+     */
+    public GitIgnore enter(Path directory) throws IOException {
+        Path file = directory.resolve(FILE_NAME);
+        if (!Files.isRegularFile(file)) {
+            return this;
+        }
+        List<Rule> rules = new ArrayList<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            Rule rule = Rule.parse(line);
+            if (rule != null) {
+                rules.add(rule);
+            }
+        }
+        return rules.isEmpty() ? this : new GitIgnore(this, directory, rules);
+    }
+
+    /**
+     * @param path a file or directory under the directories of the rules.
+     */
+    public boolean isIgnored(Path path, boolean isDirectory) {
+        if (isDirectory && ".git".equals(path.getFileName().toString())) {
+            return true;
+        }
+        Boolean ignored = match(path, isDirectory);
+        return ignored != null && ignored;
+    }
+
+    /**
+     * @return null if no rule matches, else if the last matching rule ignores the path.
+     */
+    private Boolean match(Path path, boolean isDirectory) {
+        Boolean res = parent == null ? null : parent.match(path, isDirectory);
+        if (directory == null) {
+            return res;
+        }
+        String relative = directory.relativize(path).toString().replace(java.io.File.separatorChar, '/');
+        String name = path.getFileName().toString();
+        for (Rule rule : rules) {
+            if (rule.matches(relative, name, isDirectory)) {
+                res = !rule.negated;
+            }
+        }
+        return res;
+    }
+
+    private static final class Rule {
+        private final Pattern pattern;
+        private final boolean negated;
+        private final boolean directoryOnly;
+        private final boolean anchored;
+
+        private Rule(Pattern pattern, boolean negated, boolean directoryOnly, boolean anchored) {
+            this.pattern = pattern;
+            this.negated = negated;
+            this.directoryOnly = directoryOnly;
+            this.anchored = anchored;
+        }
+
+        /**
+         * @return null for blank lines and comments.
+         */
+        static Rule parse(String line) {
+            String glob = line;
+            // trailing spaces are ignored unless escaped.
+            while (glob.endsWith(" ") && !glob.endsWith("\\ ")) {
+                glob = glob.substring(0, glob.length() - 1);
+            }
+            if (glob.isEmpty() || glob.startsWith("#")) {
+                return null;
+            }
+            boolean negated = glob.startsWith("!");
+            if (negated || glob.startsWith("\\!") || glob.startsWith("\\#")) {
+                glob = glob.substring(1);
+            }
+            boolean directoryOnly = glob.endsWith("/");
+            if (directoryOnly) {
+                glob = glob.substring(0, glob.length() - 1);
+            }
+            boolean anchored = glob.contains("/");
+            if (glob.startsWith("/")) {
+                glob = glob.substring(1);
+            }
+            if (glob.isEmpty()) {
+                return null;
+            }
+            return new Rule(Pattern.compile(toRegex(glob)), negated, directoryOnly, anchored);
+        }
+
+        boolean matches(String relative, String name, boolean isDirectory) {
+            if (directoryOnly && !isDirectory) {
+                return false;
+            }
+            return pattern.matcher(anchored ? relative : name).matches();
+        }
+
+        private static String toRegex(String glob) {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < glob.length(); i++) {
+                char c = glob.charAt(i);
+                if (c == '*' && glob.startsWith("**/", i) && (i == 0 || glob.charAt(i - 1) == '/')) {
+                    sb.append("(?:.*/)?");
+                    i += 2;
+                } else if (c == '*' && glob.startsWith("**", i) && i + 2 == glob.length() && (i == 0 || glob.charAt(i - 1) == '/')) {
+                    sb.append(".*");
+                    i += 1;
+                } else if (c == '*') {
+                    sb.append("[^/]*");
+                } else if (c == '?') {
+                    sb.append("[^/]");
+                } else if (c == '[' && glob.indexOf(']', i + 2) > 0) {
+                    int end = glob.indexOf(']', i + 2);
+                    String set = glob.substring(i + 1, end);
+                    if (set.startsWith("!")) {
+                        set = "^" + set.substring(1);
+                    }
+                    sb.append('[').append(set.replace("\\", "\\\\").replace("[", "\\[")).append(']');
+                    i = end;
+                } else if (c == '\\' && i + 1 < glob.length()) {
+                    sb.append(Pattern.quote(String.valueOf(glob.charAt(++i))));
+                } else {
+                    sb.append(Pattern.quote(String.valueOf(c)));
+                }
+            }
+            return sb.toString();
+        }
+    }
+}
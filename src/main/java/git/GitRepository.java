@@ -0,0 +1,124 @@
+package git;
+
+import utils.LogFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/**
+ * Reads a git repository by running the {@code git} command in one of its directories.
+ */
+public final class GitRepository {
+
+    private static final Logger LOG = LogFactory.logger(GitRepository.class);
+    static final String GIT = "git";
+
+    private final Path directory;
+
+    private GitRepository(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * @return the repository of the directory, or null if it is not in a git work tree or if git cannot be run.
+     */
+    public static GitRepository open(Path directory) {
+        Path absolute = directory.toAbsolutePath();
+        try {
+            Process process = new ProcessBuilder(GIT, "-C", absolute.toString(), "rev-parse", "--is-inside-work-tree")
+                    .redirectErrorStream(true).start();
+            String out = new String(readAll(process.getInputStream()), StandardCharsets.UTF_8).trim();
+            if (process.waitFor() == 0 && "true".equals(out)) {
+                return new GitRepository(absolute);
+            }
+            LOG.info(absolute + " is not in a git work tree: " + out);
+        } catch (IOException e) {
+            LOG.info("git cannot be run: " + e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @param suffix end of the listed paths, e.g. ".java".
+     * @return the absolute paths of the files of the index under the directory, that exist in the work tree.
+     */
+    public List<String> trackedFiles(String suffix) throws IOException {
+        // an unmerged path is listed once per stage of the conflict.
+        Set<String> res = new LinkedHashSet<>();
+        for (String path : split(run("ls-files", "-z", "--cached"), (byte) 0)) {
+            if (path.endsWith(suffix)) {
+                Path file = directory.resolve(path);
+                if (Files.isRegularFile(file)) {
+                    res.add(file.toString());
+                }
+            }
+        }
+        return new ArrayList<>(res);
+    }
+
+    /**
+     * @return the standard output of git run in the directory of the repository.
+     * @throws IOException if git fails.
+     */
+    byte[] run(String... args) throws IOException {
+        List<String> command = new ArrayList<>(Arrays.asList(GIT, "-C", directory.toString()));
+        command.addAll(Arrays.asList(args));
+        Process process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        byte[] out = readAll(process.getInputStream());
+        try {
+            int exit = process.waitFor();
+            if (exit != 0) {
+                throw new IOException("git " + String.join(" ", args) + " failed in " + directory + " with exit code " + exit);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while running git " + String.join(" ", args), e);
+        }
+        return out;
+    }
+
+    static List<String> split(byte[] bytes, byte separator) {
+        List<String> res = new ArrayList<>();
+        int from = 0;
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] == separator) {
+                if (i > from) {
+                    res.add(new String(bytes, from, i - from, StandardCharsets.UTF_8));
+                }
+                from = i + 1;
+            }
+        }
+        if (from < bytes.length) {
+            res.add(new String(bytes, from, bytes.length - from, StandardCharsets.UTF_8));
+        }
+        return res;
+    }
+
+    static byte[] readAll(InputStream in) throws IOException {
+        try (InputStream is = in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = is.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package git;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The lines added or changed by a unified diff, as written by {@code diff -u} or {@code git diff}, with any number of
+ * context lines. Lines are numbered in the new version of the files, from 1, and files deleted by the diff have no
+ * lines.
+ * <p>
+ * Paths are those of the new versions, relative to the directory the diff was made from: the "a/" and "b/" prefixes
+ * of git are removed.
+ */
+public final class UnifiedDiff {
+
+    private static final Pattern HUNK = Pattern.compile("^@@ -\\d+(?:,(\\d+))? \\+(\\d+)(?:,(\\d+))? @@.*");
+    private static final String NO_FILE = "/dev/null";
+
+    private UnifiedDiff() {
+    }
+
+    /**
+     * @return the changed line numbers of every file of the diff, by path.
+     */
+    public static Map<String, BitSet> read(Path patch) throws IOException {
+        return parse(new String(Files.readAllBytes(patch), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param repository a directory of a git work tree, only the files under it are compared.
+     * @param revisions  as given to {@code git diff}: "A..B" compares two commits, "A" compares a commit with the
+     *                   work tree.
+     * @return the changed line numbers of every file under the directory, by path relative to it.
+     * @throws IllegalArgumentException if the directory is not in a git work tree.
+     */
+    public static Map<String, BitSet> of(Path repository, String revisions) throws IOException {
+        GitRepository git = GitRepository.open(repository);
+        if (git == null) {
+            throw new IllegalArgumentException(repository + " is not in a git work tree.");
+        }
+        if (revisions.isEmpty() || revisions.startsWith("-")) {
+            throw new IllegalArgumentException("Wrong revisions : " + revisions);
+        }
+        // no context line, no colour and no quoting of non-ASCII paths.
+        byte[] diff = git.run("-c", "core.quotePath=false", "diff", "-U0", "--no-color", "--no-ext-diff", "--relative", revisions, "--");
+        return parse(new String(diff, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param revisions as given to {@link #of(Path, String)}.
+     * @return the commit of the new versions of the files, null for the work tree.
+     */
+    public static String newRevision(String revisions) {
+        int dots = revisions.indexOf("..");
+        if (dots < 0) {
+            return null;
+        }
+        String res = revisions.substring(revisions.startsWith("...", dots) ? dots + 3 : dots + 2);
+        return res.isEmpty() ? "HEAD" : res;
+    }
+
+    static Map<String, BitSet> parse(String diff) throws IOException {
+        Map<String, BitSet> res = new TreeMap<>();
+        BufferedReader reader = new BufferedReader(new StringReader(diff));
+        String oldPath = null;
+        BitSet lines = null;
+        // lines of the current hunk left to read, in the old and the new version.
+        int oldLeft = 0;
+        int newLeft = 0;
+        int lineNumber = 0;
+        for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+            if (oldLeft > 0 || newLeft > 0) {
+                if (line.startsWith("+")) {
+                    if (lines != null) {
+                        lines.set(lineNumber);
+                    }
+                    lineNumber++;
+                    newLeft--;
+                } else if (line.startsWith("-")) {
+                    oldLeft--;
+                } else if (line.startsWith(" ") || line.isEmpty()) {
+                    lineNumber++;
+                    oldLeft--;
+                    newLeft--;
+                }
+                // "\ No newline at end of file" counts in neither version.
+            } else if (line.startsWith("--- ")) {
+                oldPath = path(line);
+            } else if (line.startsWith("+++ ")) {
+                String newPath = path(line);
+                if (NO_FILE.equals(newPath)) {
+                    lines = null;
+                } else {
+                    if (oldPath != null && (oldPath.startsWith("a/") || NO_FILE.equals(oldPath)) && newPath.startsWith("b/")) {
+                        newPath = newPath.substring(2);
+                    }
+                    lines = res.computeIfAbsent(newPath, p -> new BitSet());
+                }
+            } else if (line.startsWith("@@ ")) {
+                Matcher hunk = HUNK.matcher(line);
+                if (!hunk.matches()) {
+                    throw new IOException("Wrong hunk header : " + line);
+                }
+                oldLeft = hunk.group(1) == null ? 1 : Integer.parseInt(hunk.group(1));
+                lineNumber = Integer.parseInt(hunk.group(2));
+                newLeft = hunk.group(3) == null ? 1 : Integer.parseInt(hunk.group(3));
+            }
+        }
+        return res;
+    }
+
+    /**
+     * @return the path of a "---" or "+++" line, without the timestamp that {@code diff -u} appends after a tab.
+     */
+    private static String path(String line) {
+        String res = line.substring(4);
+        int tab = res.indexOf('\t');
+        if (tab >= 0) {
+            res = res.substring(0, tab);
+        }
+        if (res.length() > 1 && res.startsWith("\"") && res.endsWith("\"")) {
+            res = res.substring(1, res.length() - 1);
+        }
+        return res;
+    }
+}
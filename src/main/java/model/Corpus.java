@@ -0,0 +1,221 @@
+package model;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.ToIntFunction;
+
+/**
+ * Tokenized sentences stored as one int array of token ids, with the offset of every sentence, and a dictionary of
+ * the distinct tokens: each distinct token is kept once, whatever its number of occurrences.
+ * <p>
+ * Ids are local to the corpus: models map the dictionary to their vocabulary once, with {@link #ids(ToIntFunction)},
+ * then read the ids of the sentences, so that training and scoring do not look every token up by its string.
+ * Corpora are immutable and can be read by concurrent threads.
+ */
+public final class Corpus {
+
+    public static final Corpus EMPTY = new Builder().build();
+    private static final int SENTENCE_OVERHEAD_BYTES = 4;
+    private static final int TOKEN_OVERHEAD_BYTES = 48;
+
+    private final String[] dictionary;
+    private final int[] tokens;
+    private final int[] offsets;
+
+    private Corpus(String[] dictionary, int[] tokens, int[] offsets) {
+        this.dictionary = dictionary;
+        this.tokens = tokens;
+        this.offsets = offsets;
+    }
+
+    public static Corpus of(List<? extends Iterable<String>> sentences) {
+        Builder builder = new Builder();
+        sentences.forEach(builder::add);
+        return builder.build();
+    }
+
+    /**
+     * @return the number of sentences.
+     */
+    public int size() {
+        return offsets.length - 1;
+    }
+
+    public int length(int sentence) {
+        return offsets[sentence + 1] - offsets[sentence];
+    }
+
+    public long tokensCount() {
+        return tokens.length;
+    }
+
+    /**
+     * @return the sentence as tokens of the dictionary, without copying them.
+     */
+    public Sentence sentence(int sentence) {
+        if (sentence < 0 || sentence >= size()) {
+            throw new IndexOutOfBoundsException("sentence " + sentence + ", size " + size());
+        }
+        return new Sentence(this, sentence);
+    }
+
+    /**
+     * @return every sentence as tokens of the dictionary.
+     */
+    public List<Iterable<String>> sentences() {
+        return new AbstractList<Iterable<String>>() {
+            @Override
+            public Iterable<String> get(int index) {
+                return sentence(index);
+            }
+
+            @Override
+            public int size() {
+                return Corpus.this.size();
+            }
+        };
+    }
+
+    /**
+     * @param vocabulary maps a token to the id of a model.
+     * @return the id of every token of the dictionary, indexed by its local id.
+     */
+    public int[] ids(ToIntFunction<String> vocabulary) {
+        int[] res = new int[dictionary.length];
+        for (int i = 0; i < dictionary.length; i++) {
+            res[i] = vocabulary.applyAsInt(dictionary[i]);
+        }
+        return res;
+    }
+
+    /**
+     * @param ids  model ids of the dictionary, see {@link #ids(ToIntFunction)}.
+     * @param dest array of at least {@link #length(int)} ids, returned if large enough or replaced by a larger one.
+     * @return the model ids of the tokens of the sentence, in the first {@link #length(int)} elements.
+     */
+    public int[] sentenceIds(int sentence, int[] ids, int[] dest) {
+        int from = offsets[sentence];
+        int length = offsets[sentence + 1] - from;
+        int[] res = dest.length < length ? new int[Math.max(length, dest.length << 1)] : dest;
+        for (int i = 0; i < length; i++) {
+            res[i] = ids[tokens[from + i]];
+        }
+        return res;
+    }
+
+    /**
+     * @return the bytes of the ids and offsets, and of the dictionary counting the string overheads.
+     */
+    public long estimatedBytes() {
+        long bytes = Integer.BYTES * (long) tokens.length + SENTENCE_OVERHEAD_BYTES * (long) offsets.length;
+        for (String token : dictionary) {
+            bytes += TOKEN_OVERHEAD_BYTES + (token == null ? 0 : 2L * token.length());
+        }
+        return bytes;
+    }
+
+    /**
+     * tokens of one sentence of a corpus.
+     */
+    public static final class Sentence implements Iterable<String> {
+        private final Corpus corpus;
+        private final int index;
+
+        private Sentence(Corpus corpus, int index) {
+            this.corpus = corpus;
+            this.index = index;
+        }
+
+        public Corpus getCorpus() {
+            return corpus;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        @Override
+        public Iterator<String> iterator() {
+            return new Iterator<String>() {
+                private int next = corpus.offsets[index];
+
+                @Override
+                public boolean hasNext() {
+                    return next < corpus.offsets[index + 1];
+                }
+
+                @Override
+                public String next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return corpus.dictionary[corpus.tokens[next++]];
+                }
+            };
+        }
+
+        @Override
+        public String toString() {
+            List<String> tokens = new ArrayList<>(corpus.length(index));
+            forEach(tokens::add);
+            return tokens.toString();
+        }
+    }
+
+    /**
+     * adds sentences one at a time, then builds the corpus. Null tokens are kept as null.
+     */
+    public static final class Builder {
+        private final Map<String, Integer> localIds = new HashMap<>();
+        private final List<String> dictionary = new ArrayList<>();
+        private int nullId = -1;
+        private int[] tokens = new int[64];
+        private int[] offsets = new int[16];
+        private int size;
+        private int length;
+
+        /**
+         * @return the index of the sentence in the corpus.
+         */
+        public int add(Iterable<String> sentence) {
+            for (String token : sentence) {
+                if (length == tokens.length) {
+                    tokens = Arrays.copyOf(tokens, length << 1);
+                }
+                tokens[length++] = localId(token);
+            }
+            if (size + 2 > offsets.length) {
+                offsets = Arrays.copyOf(offsets, offsets.length << 1);
+            }
+            offsets[++size] = length;
+            return size - 1;
+        }
+
+        private int localId(String token) {
+            if (token == null) {
+                if (nullId < 0) {
+                    nullId = dictionary.size();
+                    dictionary.add(null);
+                }
+                return nullId;
+            }
+            Integer id = localIds.get(token);
+            if (id == null) {
+                id = dictionary.size();
+                localIds.put(token, id);
+                dictionary.add(token);
+            }
+            return id;
+        }
+
+        public Corpus build() {
+            return new Corpus(dictionary.toArray(new String[0]), Arrays.copyOf(tokens, length), Arrays.copyOf(offsets, size + 1));
+        }
+    }
+}
@@ -0,0 +1,371 @@
+package model;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.function.ToIntFunction;
+
+/**
+ * Interpolated Kneser-Ney n-gram {@link LanguageModel} over int token ids,
+ * with one discount per order computed from the count-of-counts.
+ * Tokens seen less than {@code threshold} times in the training set are counted as the unknown token, so that unknown
+ * tokens are scored with the mass of the rare ones. Entropies are not checked against those of {@link KylmLanguageModel}.
+ *
+ * @see NgramCounts
+ */
+public class KneserNeyModel implements LanguageModel {
+
+    private static final double LOG_2 = Math.log(2);
+
+    private final int threshold;
+    private final Vocabulary vocabulary;
+    private final NgramCounts counts;
+
+    public KneserNeyModel(int size, int threshold) {
+        this.threshold = threshold;
+        this.vocabulary = new Vocabulary();
+        this.counts = new NgramCounts(size);
+    }
+
+    KneserNeyModel(int threshold, Vocabulary vocabulary, NgramCounts counts) {
+        this.threshold = threshold;
+        this.vocabulary = vocabulary;
+        this.counts = counts;
+    }
+
+    /**
+     * @return a trainer that counts every document as soon as it is added, without keeping its tokens.
+     * With a threshold above 1, the documents are kept until the vocabulary cutoff is known.
+     */
+    public static ModelTrainer trainer(int size, int threshold) {
+        KneserNeyModel model = new KneserNeyModel(size, threshold);
+        if (threshold <= 1) {
+            return model.trainer();
+        }
+        SortedMap<Integer, Corpus> documents = new TreeMap<>();
+        return new ModelTrainer() {
+            @Override
+            public void add(int document, List<Iterable<String>> sentences) {
+                add(document, Corpus.of(sentences));
+            }
+
+            @Override
+            public synchronized void add(int document, Corpus corpus) {
+                documents.put(document, corpus);
+            }
+
+            @Override
+            public synchronized LanguageModel train() {
+                model.count(documents.values());
+                documents.clear();
+                return model;
+            }
+        };
+    }
+
+    /**
+     * @return a trainer that counts every document in this model as soon as it is added, without vocabulary cutoff.
+     */
+    public ModelTrainer trainer() {
+        return new ModelTrainer() {
+            @Override
+            public void add(int document, List<Iterable<String>> sentences) {
+                sentences.forEach(KneserNeyModel.this::add);
+            }
+
+            @Override
+            public void add(int document, Corpus corpus) {
+                KneserNeyModel.this.add(corpus);
+            }
+
+            @Override
+            public LanguageModel train() {
+                return KneserNeyModel.this;
+            }
+        };
+    }
+
+    /**
+     * @return a trainer that subtracts every document added to it from this model, the documents having been counted.
+     */
+    public ModelTrainer remover() {
+        return new ModelTrainer() {
+            @Override
+            public void add(int document, List<Iterable<String>> sentences) {
+                sentences.forEach(KneserNeyModel.this::remove);
+            }
+
+            @Override
+            public void add(int document, Corpus corpus) {
+                KneserNeyModel.this.remove(corpus);
+            }
+
+            @Override
+            public LanguageModel train() {
+                return KneserNeyModel.this;
+            }
+        };
+    }
+
+    /**
+     * counts the training set, the tokens seen less than {@code threshold} times in it as the unknown token.
+     */
+    public KneserNeyModel train(List<Iterable<String>> trainingSet) {
+        if (threshold <= 1) {
+            for (Iterable<String> sentence : trainingSet) {
+                add(sentence);
+            }
+        } else {
+            count(Collections.singletonList(Corpus.of(trainingSet)));
+        }
+        return this;
+    }
+
+    private void count(Collection<Corpus> corpora) {
+        Map<String, Integer> frequencies = frequencies(corpora);
+        ToIntFunction<String> cutoff = token -> frequencies.getOrDefault(token, 0) < threshold ? Vocabulary.UNK : vocabulary.add(token);
+        for (Corpus corpus : corpora) {
+            add(corpus, cutoff);
+        }
+    }
+
+    /**
+     * @return the number of occurrences of every token of the corpora.
+     */
+    static Map<String, Integer> frequencies(Collection<Corpus> corpora) {
+        Map<String, Integer> res = new HashMap<>();
+        for (Corpus corpus : corpora) {
+            for (int s = 0; s < corpus.size(); s++) {
+                for (String token : corpus.sentence(s)) {
+                    res.merge(token, 1, Integer::sum);
+                }
+            }
+        }
+        return res;
+    }
+
+    public void add(Iterable<String> sentence) {
+        int[] ids = new int[16];
+        int length = 0;
+        for (String token : sentence) {
+            if (length == ids.length) {
+                ids = Arrays.copyOf(ids, length << 1);
+            }
+            ids[length++] = vocabulary.add(token);
+        }
+        counts.add(ids, length, 1);
+    }
+
+    /**
+     * adds every sentence of the corpus, mapping its dictionary to the vocabulary once.
+     */
+    public void add(Corpus corpus) {
+        add(corpus, vocabulary::add);
+    }
+
+    private void add(Corpus corpus, ToIntFunction<String> vocabulary) {
+        int[] vocabularyIds = corpus.ids(vocabulary);
+        int[] ids = new int[16];
+        for (int s = 0; s < corpus.size(); s++) {
+            ids = corpus.sentenceIds(s, vocabularyIds, ids);
+            counts.add(ids, corpus.length(s), 1);
+        }
+    }
+
+    /**
+     * subtracts a sentence previously added, as if it had never been part of the training set.
+     * With a threshold above 1, tokens out of the vocabulary are subtracted as the unknown token they were counted as,
+     * but the vocabulary cutoff is not computed again.
+     */
+    public void remove(Iterable<String> sentence) {
+        int[] ids = new int[16];
+        int length = 0;
+        for (String token : sentence) {
+            if (length == ids.length) {
+                ids = Arrays.copyOf(ids, length << 1);
+            }
+            ids[length++] = countedId(vocabulary::id, threshold, token);
+        }
+        counts.add(ids, length, -1);
+    }
+
+    /**
+     * subtracts every sentence of the corpus, previously added, mapping its dictionary to the vocabulary once.
+     */
+    public void remove(Corpus corpus) {
+        int[] vocabularyIds = corpus.ids(token -> countedId(vocabulary::id, threshold, token));
+        int[] ids = new int[16];
+        for (int s = 0; s < corpus.size(); s++) {
+            ids = corpus.sentenceIds(s, vocabularyIds, ids);
+            counts.add(ids, corpus.length(s), -1);
+        }
+    }
+
+    @Override
+    public double crossEntropy(Iterable<String> tokens) {
+        return crossEntropy(counts, vocabulary::id, threshold, tokens);
+    }
+
+    @Override
+    public double[] crossEntropies(Corpus corpus, int from, int to) {
+        return crossEntropies(counts, vocabulary::id, threshold, corpus, from, to);
+    }
+
+    /**
+     * the vocabulary and the counts are only read by the returned view: it cannot be used while the model is trained.
+     */
+    @Override
+    public LanguageModel without(List<Iterable<String>> sentences) {
+        return without(counts, vocabulary::id, threshold, sentences);
+    }
+
+    @Override
+    public long estimatedBytes() {
+        return vocabulary.estimatedBytes() + counts.estimatedBytes();
+    }
+
+    public int getSize() {
+        return counts.order();
+    }
+
+    public int getThreshold() {
+        return threshold;
+    }
+
+    Vocabulary getVocabulary() {
+        return vocabulary;
+    }
+
+    NgramCounts getCounts() {
+        return counts;
+    }
+
+    static LanguageModel without(NgramStatistics statistics, ToIntFunction<String> vocabulary, int threshold, List<Iterable<String>> sentences) {
+        SubtractedStatistics subtracted = new SubtractedStatistics(statistics);
+        int[] ids = new int[16];
+        for (Iterable<String> sentence : sentences) {
+            int length = 0;
+            for (String token : sentence) {
+                if (length == ids.length) {
+                    ids = Arrays.copyOf(ids, length << 1);
+                }
+                ids[length++] = countedId(vocabulary, threshold, token);
+            }
+            subtracted.subtract(ids, length);
+        }
+        return new LanguageModel() {
+            @Override
+            public double crossEntropy(Iterable<String> tokens) {
+                return KneserNeyModel.crossEntropy(subtracted, vocabulary, threshold, tokens);
+            }
+
+            @Override
+            public double[] crossEntropies(Corpus corpus, int from, int to) {
+                return KneserNeyModel.crossEntropies(subtracted, vocabulary, threshold, corpus, from, to);
+            }
+        };
+    }
+
+    /**
+     * @return the id the token of a counted sentence has been counted with.
+     * @throws IllegalStateException if the token is unknown and the model has no vocabulary cutoff.
+     */
+    private static int countedId(ToIntFunction<String> vocabulary, int threshold, String token) {
+        int id = vocabulary.applyAsInt(token);
+        if (id == Vocabulary.UNK && threshold <= 1) {
+            throw new IllegalStateException("subtracted sentence was not counted: unknown token " + token);
+        }
+        return id;
+    }
+
+    /**
+     * maps the dictionary of the corpus to known ids once, then scores the sentences from their ids.
+     */
+    static double[] crossEntropies(NgramStatistics statistics, ToIntFunction<String> vocabulary, int threshold, Corpus corpus, int from, int to) {
+        int[] known = corpus.ids(vocabulary);
+        for (int i = 0; i < known.length; i++) {
+            known[i] = known(statistics, known[i], threshold);
+        }
+        double[] res = new double[to - from];
+        int[] ids = new int[16];
+        for (int s = from; s < to; s++) {
+            ids = corpus.sentenceIds(s, known, ids);
+            res[s - from] = crossEntropy(statistics, ids, corpus.length(s));
+        }
+        return res;
+    }
+
+    static double crossEntropy(NgramStatistics statistics, ToIntFunction<String> vocabulary, int threshold, Iterable<String> tokens) {
+        int[] ids = new int[16];
+        int length = 0;
+        for (String token : tokens) {
+            if (length == ids.length) {
+                ids = Arrays.copyOf(ids, length << 1);
+            }
+            ids[length++] = known(statistics, vocabulary.applyAsInt(token), threshold);
+        }
+        return crossEntropy(statistics, ids, length);
+    }
+
+    /**
+     * @return the id, or {@link Vocabulary#UNK} if it has been seen less than {@code threshold} times.
+     */
+    static int known(NgramStatistics statistics, int id, int threshold) {
+        if (id == Vocabulary.UNK) {
+            return id;
+        }
+        int unigram = statistics.child(1, NgramStatistics.ROOT, id);
+        return unigram == NgramStatistics.NONE || statistics.raw(1, unigram) < threshold ? Vocabulary.UNK : id;
+    }
+
+    /**
+     * @param ids    known word ids of the sentence, without delimiters.
+     * @param length number of words to read from the array.
+     * @return the cross-entropy of the sentence, including its end delimiter.
+     */
+    static double crossEntropy(NgramStatistics statistics, int[] ids, int length) {
+        int n = statistics.order();
+        int[] prev = new int[n + 1];
+        int[] cur = new int[n + 1];
+        Arrays.fill(prev, NgramStatistics.NONE);
+        prev[1] = statistics.bosNode();
+        // one more word for the unknown token, unless the vocabulary cutoff has counted it already.
+        double uniform = 1d / (statistics.seenWords() + (statistics.seenUnknown() ? 0 : 1));
+        double bits = 0d;
+        for (int i = 0; i <= length; i++) {
+            int w = i < length ? ids[i] : Vocabulary.EOS;
+            Arrays.fill(cur, NgramStatistics.NONE);
+            double p = uniform;
+            for (int k = 1; k <= n; k++) {
+                int context = k == 1 ? NgramStatistics.ROOT : prev[k - 1];
+                if (context == NgramStatistics.NONE) {
+                    break;
+                }
+                // the unknown token has counts when the vocabulary cutoff has mapped rare tokens to it.
+                int gram = statistics.child(k, context, w);
+                cur[k] = gram;
+                long denominator = statistics.denominator(k - 1, context);
+                if (denominator == 0) {
+                    continue;
+                }
+                double d = statistics.discount(k);
+                int c = gram == NgramStatistics.NONE ? 0 : statistics.effective(k, gram);
+                if (c == 0 && d == 0) {
+                    // no n-gram of the order seen once or twice leaves no mass to unseen ones: keeps the lower order.
+                    continue;
+                }
+                p = (Math.max(c - d, 0d) + d * statistics.types(k - 1, context) * p) / denominator;
+            }
+            bits -= Math.log(p) / LOG_2;
+            int[] tmp = prev;
+            prev = cur;
+            cur = tmp;
+        }
+        return bits / (length + 1);
+    }
+}
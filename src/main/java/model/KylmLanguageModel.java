@@ -0,0 +1,102 @@
+package model;
+
+import modelling.exception.TrainingFailedException;
+import modelling.infrastructure.NgramModelKylmImpl;
+import modelling.infrastructure.kylm.ngram.smoother.NgramSmoother;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * {@link LanguageModel} backed by tuna's kylm implementation.
+ */
+public class KylmLanguageModel implements LanguageModel {
+
+    // rough bytes of one n-gram entry of kylm's boxed hash maps.
+    private static final int NGRAM_BYTES = 64;
+
+    private final NgramModelKylmImpl model;
+    private final int size;
+    private long trainedTokens;
+
+    public KylmLanguageModel(int size, NgramSmoother smoother, int threshold) {
+        this.model = new NgramModelKylmImpl(size, smoother, threshold);
+        this.size = size;
+    }
+
+    public static ModelTrainer trainer(int size, NgramSmoother smoother, int threshold) {
+        return new Trainer(new KylmLanguageModel(size, smoother, threshold));
+    }
+
+    public KylmLanguageModel train(List<Iterable<String>> trainingSet) throws TrainingFailedException {
+        model.train(trainingSet);
+        for (Iterable<String> sentence : trainingSet) {
+            for (String ignored : sentence) {
+                trainedTokens++;
+            }
+        }
+        return this;
+    }
+
+    @Override
+    public double crossEntropy(Iterable<String> tokens) {
+        return model.crossEntropy(tokens);
+    }
+
+    /**
+     * kylm does not expose its memory: estimated as at most one entry per order for each trained token.
+     */
+    @Override
+    public long estimatedBytes() {
+        return trainedTokens * size * NGRAM_BYTES;
+    }
+
+    /**
+     * kylm does not document its models as thread-safe: queries of the returned view are serialized,
+     * so that only {@link KneserNeyModel}s score in parallel.
+     */
+    @Override
+    public LanguageModel frozen() {
+        return tokens -> {
+            synchronized (model) {
+                return model.crossEntropy(tokens);
+            }
+        };
+    }
+
+    /**
+     * kylm trains from the whole corpus at once: documents are kept until {@link #train()},
+     * and passed in their index order so that the model does not depend on the tokenization order.
+     */
+    private static final class Trainer implements ModelTrainer {
+        private final KylmLanguageModel model;
+        private final SortedMap<Integer, List<Iterable<String>>> documents = new TreeMap<>();
+
+        private Trainer(KylmLanguageModel model) {
+            this.model = model;
+        }
+
+        @Override
+        public void add(int document, List<Iterable<String>> sentences) {
+            documents.put(document, sentences);
+        }
+
+        /**
+         * keeps the corpus, not a copy of its tokens, until the training.
+         */
+        @Override
+        public void add(int document, Corpus corpus) {
+            documents.put(document, corpus.sentences());
+        }
+
+        @Override
+        public LanguageModel train() throws TrainingFailedException {
+            List<Iterable<String>> trainingSet = new ArrayList<>();
+            documents.values().forEach(trainingSet::addAll);
+            documents.clear();
+            return model.train(trainingSet);
+        }
+    }
+}
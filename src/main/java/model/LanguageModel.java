@@ -0,0 +1,57 @@
+package model;
+
+import java.util.List;
+
+/**
+ * Trained n-gram language model used to score tokenized lines and files.
+ *
+ * @see KylmLanguageModel
+ * @see KneserNeyModel
+ */
+public interface LanguageModel {
+
+    /**
+     * @param tokens sequence of tokens, scored as one sentence.
+     * @return the cross-entropy of the tokens, in bits per token.
+     */
+    double crossEntropy(Iterable<String> tokens);
+
+    /**
+     * @param from first sentence of the corpus to score.
+     * @param to   sentence after the last one to score.
+     * @return the cross-entropy of each sentence, as {@link #crossEntropy(Iterable)}.
+     */
+    default double[] crossEntropies(Corpus corpus, int from, int to) {
+        double[] res = new double[to - from];
+        for (int s = from; s < to; s++) {
+            res[s - from] = crossEntropy(corpus.sentence(s));
+        }
+        return res;
+    }
+
+    /**
+     * @return a view of this model that can be queried by concurrent threads.
+     * The model must not be trained further while the view is in use.
+     */
+    default LanguageModel frozen() {
+        return this;
+    }
+
+    /**
+     * @param sentences sentences this model has been trained on.
+     * @return a view of this model scoring as if it had never been trained on the sentences,
+     * this model being left unchanged. Views can be queried by concurrent threads, as long as this model is not trained further.
+     * @throws UnsupportedOperationException if the model cannot subtract sentences.
+     */
+    default LanguageModel without(List<Iterable<String>> sentences) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " cannot subtract sentences.");
+    }
+
+    /**
+     * @return an estimation of the heap memory held by this model, used by long-lived processes to bound the memory
+     * of the models they keep. 0 if unknown or if the model is held off-heap.
+     */
+    default long estimatedBytes() {
+        return 0L;
+    }
+}
@@ -0,0 +1,161 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing (linear probing) hash map from primitive long keys to primitive int values.
+ * Keys must be non-negative, entries are never removed.
+ */
+public final class LongIntHashMap {
+
+    static final long EMPTY = -1L;
+    public static final int NO_VALUE = -1;
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private long[] keys;
+    private int[] values;
+    private int size;
+    private int resizeAt;
+
+    public LongIntHashMap() {
+        this(16);
+    }
+
+    public LongIntHashMap(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    LongIntHashMap(long[] keys, int[] values, int size) {
+        this.keys = keys;
+        this.values = values;
+        this.size = size;
+        this.resizeAt = (int) (keys.length * LOAD_FACTOR);
+    }
+
+    long estimatedBytes() {
+        return keys.length * (long) (Long.BYTES + Integer.BYTES);
+    }
+
+    static int capacityFor(int expectedSize) {
+        int capacity = 16;
+        while (capacity * LOAD_FACTOR <= expectedSize) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    static int slot(long key, int mask) {
+        // murmur3 finalizer: spreads the packed (context, word) bits over the table.
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key & mask;
+    }
+
+    /**
+     * @return the value mapped to the key or {@link #NO_VALUE}.
+     */
+    public int get(long key) {
+        int mask = keys.length - 1;
+        for (int i = slot(key, mask); ; i = (i + 1) & mask) {
+            long k = keys[i];
+            if (k == key) {
+                return values[i];
+            }
+            if (k == EMPTY) {
+                return NO_VALUE;
+            }
+        }
+    }
+
+    /**
+     * @return the value already mapped to the key, or {@link #NO_VALUE} if the given value has been inserted.
+     */
+    public int putIfAbsent(long key, int value) {
+        assert key >= 0 : "negative key " + key;
+        int mask = keys.length - 1;
+        int i = slot(key, mask);
+        for (; ; i = (i + 1) & mask) {
+            long k = keys[i];
+            if (k == key) {
+                return values[i];
+            }
+            if (k == EMPTY) {
+                break;
+            }
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size > resizeAt) {
+            rehash(keys.length << 1);
+        }
+        return NO_VALUE;
+    }
+
+    /**
+     * adds the delta to the value mapped to the key, or maps the key to the delta if it is absent.
+     *
+     * @return the previous value, or {@link #NO_VALUE} if the key was absent.
+     */
+    public int addTo(long key, int delta) {
+        assert key >= 0 : "negative key " + key;
+        int mask = keys.length - 1;
+        int i = slot(key, mask);
+        for (; ; i = (i + 1) & mask) {
+            long k = keys[i];
+            if (k == key) {
+                int old = values[i];
+                values[i] = old + delta;
+                return old;
+            }
+            if (k == EMPTY) {
+                break;
+            }
+        }
+        keys[i] = key;
+        values[i] = delta;
+        if (++size > resizeAt) {
+            rehash(keys.length << 1);
+        }
+        return NO_VALUE;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    long[] keys() {
+        return keys;
+    }
+
+    int[] values() {
+        return values;
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+        values = new int[capacity];
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        int mask = capacity - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            long k = oldKeys[j];
+            if (k != EMPTY) {
+                int i = slot(k, mask);
+                while (keys[i] != EMPTY) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = k;
+                values[i] = oldValues[j];
+            }
+        }
+    }
+}
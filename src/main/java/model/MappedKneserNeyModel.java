@@ -0,0 +1,206 @@
+package model;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Read-only model that scores as the {@link KneserNeyModel} saved in a {@link ModelFile}, queried directly from the
+ * memory-mapped sections of the file.
+ * Nothing but the per-order discounts is copied in heap: the operating system page cache shares one physical copy
+ * of the model between all the processes mapping the same file.
+ * Queries only use absolute reads, so an instance can be shared by concurrent threads.
+ */
+public final class MappedKneserNeyModel implements LanguageModel, NgramStatistics {
+
+    private final int n;
+    private final int threshold;
+    private final int seenWords;
+    private final int rootTypes;
+    private final long rootDenominator;
+    private final IntBuffer tokenOffsets;
+    private final ByteBuffer tokenPool;
+    private final IntBuffer tokenTable;
+    private final Level[] levels;
+    private final double[] discounts;
+    private final int bosNode;
+
+    MappedKneserNeyModel(int n, int threshold, int seenWords, int rootTypes, long rootDenominator,
+                         IntBuffer tokenOffsets, ByteBuffer tokenPool, IntBuffer tokenTable, Level[] levels) {
+        this.n = n;
+        this.threshold = threshold;
+        this.seenWords = seenWords;
+        this.rootTypes = rootTypes;
+        this.rootDenominator = rootDenominator;
+        this.tokenOffsets = tokenOffsets;
+        this.tokenPool = tokenPool;
+        this.tokenTable = tokenTable;
+        this.levels = levels;
+        this.discounts = new double[n + 1];
+        for (int k = 1; k <= n; k++) {
+            Level l = levels[k];
+            discounts[k] = l.n1 + 2 * l.n2 == 0 ? 0d : (double) l.n1 / (l.n1 + 2 * l.n2);
+        }
+        this.bosNode = child(1, ROOT, Vocabulary.BOS);
+    }
+
+    @Override
+    public double crossEntropy(Iterable<String> tokens) {
+        return KneserNeyModel.crossEntropy(this, this::id, threshold, tokens);
+    }
+
+    @Override
+    public double[] crossEntropies(Corpus corpus, int from, int to) {
+        return KneserNeyModel.crossEntropies(this, this::id, threshold, corpus, from, to);
+    }
+
+    @Override
+    public LanguageModel without(List<Iterable<String>> sentences) {
+        return KneserNeyModel.without(this, this::id, threshold, sentences);
+    }
+
+    /**
+     * @return the vocabulary id of the token or {@link Vocabulary#UNK}.
+     */
+    int id(String token) {
+        if (token == null) {
+            return Vocabulary.UNK;
+        }
+        byte[] bytes = token.getBytes(StandardCharsets.UTF_8);
+        int mask = tokenTable.limit() - 1;
+        for (int s = ModelFile.slot(token, mask); ; s = (s + 1) & mask) {
+            int id = tokenTable.get(s);
+            if (id == ModelFile.NO_ID) {
+                return Vocabulary.UNK;
+            }
+            if (sameBytes(id, bytes)) {
+                return id;
+            }
+        }
+    }
+
+    private boolean sameBytes(int id, byte[] bytes) {
+        int from = tokenOffsets.get(id);
+        if (tokenOffsets.get(id + 1) - from != bytes.length) {
+            return false;
+        }
+        for (int i = 0; i < bytes.length; i++) {
+            if (tokenPool.get(from + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int getSize() {
+        return n;
+    }
+
+    public int getThreshold() {
+        return threshold;
+    }
+
+    @Override
+    public int order() {
+        return n;
+    }
+
+    @Override
+    public int bosNode() {
+        return bosNode;
+    }
+
+    @Override
+    public int child(int k, int context, int word) {
+        if (context == NONE) {
+            return NONE;
+        }
+        long key = NgramCounts.key(k == 1 ? ROOT : context, word);
+        LongBuffer keys = levels[k].keys;
+        int mask = keys.limit() - 1;
+        for (int i = LongIntHashMap.slot(key, mask); ; i = (i + 1) & mask) {
+            long candidate = keys.get(i);
+            if (candidate == key) {
+                return levels[k].values.get(i);
+            }
+            if (candidate == LongIntHashMap.EMPTY) {
+                return NONE;
+            }
+        }
+    }
+
+    @Override
+    public int raw(int k, int x) {
+        return levels[k].raw.get(x);
+    }
+
+    @Override
+    public int effective(int k, int x) {
+        Level l = levels[k];
+        return k == n || (k > 1 && l.bosStart(x)) ? l.raw.get(x) : l.cont.get(x);
+    }
+
+    @Override
+    public long denominator(int k, int context) {
+        return k == 0 ? rootDenominator : levels[k].denominator.get(context);
+    }
+
+    @Override
+    public int types(int k, int context) {
+        return k == 0 ? rootTypes : levels[k].types.get(context);
+    }
+
+    @Override
+    public double discount(int k) {
+        return discounts[k];
+    }
+
+    @Override
+    public long n1(int k) {
+        return levels[k].n1;
+    }
+
+    @Override
+    public long n2(int k) {
+        return levels[k].n2;
+    }
+
+    @Override
+    public int seenWords() {
+        return seenWords;
+    }
+
+    /**
+     * mapped sections of one order.
+     */
+    static final class Level {
+        private final long n1;
+        private final long n2;
+        private final LongBuffer keys;
+        private final IntBuffer values;
+        private final IntBuffer raw;
+        private final IntBuffer cont;
+        private final IntBuffer denominator;
+        private final IntBuffer types;
+        private final LongBuffer bosStart;
+
+        Level(long n1, long n2, LongBuffer keys, IntBuffer values, IntBuffer raw, IntBuffer cont, IntBuffer denominator, IntBuffer types, LongBuffer bosStart) {
+            this.n1 = n1;
+            this.n2 = n2;
+            this.keys = keys;
+            this.values = values;
+            this.raw = raw;
+            this.cont = cont;
+            this.denominator = denominator;
+            this.types = types;
+            this.bosStart = bosStart;
+        }
+
+        private boolean bosStart(int x) {
+            int word = x >>> 6;
+            return word < bosStart.limit() && (bosStart.get(word) & (1L << x)) != 0;
+        }
+    }
+}
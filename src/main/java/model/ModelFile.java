@@ -0,0 +1,427 @@
+package model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Binary serialization of a {@link KneserNeyModel}: the vocabulary, the n-gram tables and all their statistics,
+ * written as raw primitive arrays so that loading is a bulk copy instead of a retraining.
+ * <p>
+ * Layout (big-endian, every section 8-bytes aligned):
+ * <pre>
+ * header     : magic, version, n, threshold, seenWords, rootTypes, rootDenominator
+ * vocabulary : size, poolLength, offsets[size + 1], utf-8 pool, tableCapacity, idTable[tableCapacity]
+ * order k    : size, capacity, n1, n2, keys[capacity], values[capacity], parent[size], suffix[size], raw[size],
+ *              (k &lt; n) cont[size], denominator[size], types[size], bosStartLength, bosStart[bosStartLength]
+ * </pre>
+ */
+public final class ModelFile {
+
+    static final int MAGIC = 0x4e474c4d; // NGLM
+    static final int VERSION = 1;
+    static final int NO_ID = -1;
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private ModelFile() throws IllegalAccessException {
+        throw new IllegalAccessException("Utility class : static access only.");
+    }
+
+    /**
+     * slot of a token in the vocabulary id table, the same function is used to query mapped files.
+     */
+    static int slot(String token, int mask) {
+        int h = token.hashCode() * 0x9e3779b9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    public static void write(KneserNeyModel model, Path path) throws IOException {
+        if (path.toAbsolutePath().getParent() != null) {
+            Files.createDirectories(path.toAbsolutePath().getParent());
+        }
+        NgramCounts counts = model.getCounts();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            Out out = new Out(channel);
+            out.putInt(MAGIC);
+            out.putInt(VERSION);
+            out.putInt(counts.order());
+            out.putInt(model.getThreshold());
+            out.putInt(counts.seenWords());
+            out.putInt(counts.rootTypes());
+            out.putLong(counts.rootDenominator());
+            writeVocabulary(model.getVocabulary(), out);
+            for (int k = 1; k <= counts.order(); k++) {
+                writeOrder(counts.orderAt(k), out);
+            }
+            out.flush();
+        }
+    }
+
+    private static void writeVocabulary(Vocabulary vocabulary, Out out) throws IOException {
+        int size = vocabulary.size();
+        byte[][] bytes = new byte[size][];
+        int[] offsets = new int[size + 1];
+        for (int i = 0; i < size; i++) {
+            bytes[i] = vocabulary.token(i).getBytes(StandardCharsets.UTF_8);
+            offsets[i + 1] = offsets[i] + bytes[i].length;
+        }
+        int capacity = LongIntHashMap.capacityFor(size);
+        int[] table = new int[capacity];
+        Arrays.fill(table, NO_ID);
+        for (int i = 3; i < size; i++) {
+            int s = slot(vocabulary.token(i), capacity - 1);
+            while (table[s] != NO_ID) {
+                s = (s + 1) & (capacity - 1);
+            }
+            table[s] = i;
+        }
+        out.putInt(size);
+        out.putInt(offsets[size]);
+        out.putInts(offsets, size + 1);
+        for (byte[] b : bytes) {
+            out.putBytes(b);
+        }
+        out.align();
+        out.putInt(capacity);
+        out.putInts(table, capacity);
+        out.align();
+    }
+
+    private static void writeOrder(NgramCounts.Order o, Out out) throws IOException {
+        long[] keys = o.index.keys();
+        out.putInt(o.size);
+        out.putInt(keys.length);
+        out.putLong(o.n1);
+        out.putLong(o.n2);
+        out.putLongs(keys, keys.length);
+        out.putInts(o.index.values(), keys.length);
+        out.align();
+        out.putInts(o.parent, o.size);
+        out.putInts(o.suffix, o.size);
+        out.putInts(o.raw, o.size);
+        if (o.hasChildren) {
+            out.putInts(o.cont, o.size);
+            out.putInts(o.denominator, o.size);
+            out.putInts(o.types, o.size);
+        }
+        out.align();
+        long[] bos = o.bosStart.toLongArray();
+        out.putInt(bos.length);
+        out.align();
+        out.putLongs(bos, bos.length);
+    }
+
+    /**
+     * loads the whole model in heap: the loaded model can be used and updated as a trained one.
+     * The file is read sequentially through a buffer, so it is not limited to 2GB.
+     */
+    public static KneserNeyModel read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = readHeader(channel, path);
+            int n = header.getInt(8);
+            In in = new In(channel, header.limit());
+            Vocabulary vocabulary = readVocabulary(in);
+            NgramCounts.Order[] orders = new NgramCounts.Order[n + 1];
+            for (int k = 1; k <= n; k++) {
+                orders[k] = readOrder(in, k < n);
+            }
+            return new KneserNeyModel(header.getInt(12), vocabulary, new NgramCounts(orders, header.getLong(24), header.getInt(20), header.getInt(16)));
+        }
+    }
+
+    private static ByteBuffer readHeader(FileChannel channel, Path path) throws IOException {
+        if (channel.size() < 32) {
+            throw new IOException("Not a model file: " + path);
+        }
+        ByteBuffer header = readAt(channel, 0, 32);
+        if (header.getInt(0) != MAGIC) {
+            throw new IOException("Not a model file: " + path);
+        }
+        if (header.getInt(4) != VERSION) {
+            throw new IOException("Unsupported model file version " + header.getInt(4) + ": " + path);
+        }
+        return header;
+    }
+
+    /**
+     * maps the model file read-only, without loading it in heap.
+     * Every array is mapped on its own, so the file itself is not limited to 2GB.
+     */
+    public static MappedKneserNeyModel map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = readHeader(channel, path);
+            int n = header.getInt(8);
+            long pos = 32;
+            ByteBuffer sizes = readAt(channel, pos, 8);
+            int vocabularySize = sizes.getInt(0);
+            int poolLength = sizes.getInt(4);
+            pos += 8;
+            IntBuffer offsets = mapAt(channel, pos, (vocabularySize + 1) * 4L).asIntBuffer();
+            pos += (vocabularySize + 1) * 4L;
+            ByteBuffer pool = mapAt(channel, pos, poolLength);
+            pos = align(pos + poolLength);
+            int tableCapacity = readAt(channel, pos, 4).getInt(0);
+            pos += 4;
+            IntBuffer table = mapAt(channel, pos, tableCapacity * 4L).asIntBuffer();
+            pos = align(pos + tableCapacity * 4L);
+            MappedKneserNeyModel.Level[] levels = new MappedKneserNeyModel.Level[n + 1];
+            for (int k = 1; k <= n; k++) {
+                ByteBuffer orderHeader = readAt(channel, pos, 24);
+                int size = orderHeader.getInt(0);
+                int capacity = orderHeader.getInt(4);
+                pos += 24;
+                LongBuffer keys = mapAt(channel, pos, capacity * 8L).asLongBuffer();
+                pos += capacity * 8L;
+                IntBuffer values = mapAt(channel, pos, capacity * 4L).asIntBuffer();
+                pos = align(pos + capacity * 4L);
+                pos += 2 * size * 4L; // parent and suffix are only needed to update counts.
+                IntBuffer raw = mapAt(channel, pos, size * 4L).asIntBuffer();
+                pos += size * 4L;
+                IntBuffer cont = null, denominator = null, types = null;
+                if (k < n) {
+                    cont = mapAt(channel, pos, size * 4L).asIntBuffer();
+                    pos += size * 4L;
+                    denominator = mapAt(channel, pos, size * 4L).asIntBuffer();
+                    pos += size * 4L;
+                    types = mapAt(channel, pos, size * 4L).asIntBuffer();
+                    pos += size * 4L;
+                }
+                pos = align(pos);
+                int bosLength = readAt(channel, pos, 4).getInt(0);
+                pos = align(pos + 4);
+                LongBuffer bosStart = mapAt(channel, pos, bosLength * 8L).asLongBuffer();
+                pos += bosLength * 8L;
+                levels[k] = new MappedKneserNeyModel.Level(orderHeader.getLong(8), orderHeader.getLong(16), keys, values, raw, cont, denominator, types, bosStart);
+            }
+            return new MappedKneserNeyModel(n, header.getInt(12), header.getInt(16), header.getInt(20), header.getLong(24), offsets, pool, table, levels);
+        }
+    }
+
+    private static ByteBuffer readAt(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer res = ByteBuffer.allocate(length);
+        while (res.hasRemaining()) {
+            if (channel.read(res, position + res.position()) < 0) {
+                throw new IOException("Truncated model file.");
+            }
+        }
+        res.flip();
+        return res;
+    }
+
+    private static ByteBuffer mapAt(FileChannel channel, long position, long length) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+    }
+
+    private static long align(long position) {
+        return (position + 7) & ~7L;
+    }
+
+    private static Vocabulary readVocabulary(In in) throws IOException {
+        int size = in.getInt();
+        int poolLength = in.getInt();
+        int[] offsets = in.getInts(size + 1);
+        List<String> tokens = new ArrayList<>(size);
+        byte[] bytes = new byte[poolLength];
+        in.getBytes(bytes);
+        for (int i = 0; i < size; i++) {
+            tokens.add(new String(bytes, offsets[i], offsets[i + 1] - offsets[i], StandardCharsets.UTF_8));
+        }
+        in.align();
+        int capacity = in.getInt();
+        in.skip(capacity * 4L);
+        in.align();
+        return new Vocabulary(tokens);
+    }
+
+    private static NgramCounts.Order readOrder(In in, boolean hasChildren) throws IOException {
+        int size = in.getInt();
+        int capacity = in.getInt();
+        long n1 = in.getLong();
+        long n2 = in.getLong();
+        long[] keys = in.getLongs(capacity);
+        int[] values = in.getInts(capacity);
+        in.align();
+        int[] parent = in.getInts(size);
+        int[] suffix = in.getInts(size);
+        int[] raw = in.getInts(size);
+        int[] cont = null, denominator = null, types = null;
+        if (hasChildren) {
+            cont = in.getInts(size);
+            denominator = in.getInts(size);
+            types = in.getInts(size);
+        }
+        in.align();
+        int bosLength = in.getInt();
+        in.align();
+        BitSet bosStart = BitSet.valueOf(in.getLongs(bosLength));
+        return new NgramCounts.Order(new LongIntHashMap(keys, values, size), bosStart, size, parent, suffix, raw, cont, denominator, types, n1, n2);
+    }
+
+    /**
+     * buffered sequential reader, the counterpart of {@link Out}, that keeps track of the file offset for alignment.
+     */
+    private static final class In {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private long position;
+
+        private In(FileChannel channel, long position) throws IOException {
+            this.channel = channel;
+            this.position = position;
+            channel.position(position);
+            buffer.limit(0);
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                buffer.compact();
+                while (buffer.position() < bytes) {
+                    if (channel.read(buffer) < 0) {
+                        throw new IOException("Truncated model file.");
+                    }
+                }
+                buffer.flip();
+            }
+        }
+
+        private int getInt() throws IOException {
+            ensure(4);
+            position += 4;
+            return buffer.getInt();
+        }
+
+        private long getLong() throws IOException {
+            ensure(8);
+            position += 8;
+            return buffer.getLong();
+        }
+
+        private int[] getInts(int length) throws IOException {
+            int[] res = new int[length];
+            for (int offset = 0; offset < length; ) {
+                ensure(4);
+                int count = Math.min(buffer.remaining() / 4, length - offset);
+                buffer.asIntBuffer().get(res, offset, count);
+                buffer.position(buffer.position() + count * 4);
+                offset += count;
+                position += count * 4L;
+            }
+            return res;
+        }
+
+        private long[] getLongs(int length) throws IOException {
+            long[] res = new long[length];
+            for (int offset = 0; offset < length; ) {
+                ensure(8);
+                int count = Math.min(buffer.remaining() / 8, length - offset);
+                buffer.asLongBuffer().get(res, offset, count);
+                buffer.position(buffer.position() + count * 8);
+                offset += count;
+                position += count * 8L;
+            }
+            return res;
+        }
+
+        private void getBytes(byte[] bytes) throws IOException {
+            for (int offset = 0; offset < bytes.length; ) {
+                ensure(1);
+                int length = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.get(bytes, offset, length);
+                offset += length;
+                position += length;
+            }
+        }
+
+        private void skip(long bytes) throws IOException {
+            int buffered = (int) Math.min(bytes, buffer.remaining());
+            buffer.position(buffer.position() + buffered);
+            if (bytes > buffered) {
+                channel.position(channel.position() + bytes - buffered);
+            }
+            position += bytes;
+        }
+
+        private void align() throws IOException {
+            skip((8 - (position & 7)) & 7);
+        }
+    }
+
+    /**
+     * buffered sequential writer that keeps track of the file offset for alignment.
+     */
+    private static final class Out {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private long position;
+
+        private Out(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        private void putInt(int v) throws IOException {
+            ensure(4);
+            buffer.putInt(v);
+            position += 4;
+        }
+
+        private void putLong(long v) throws IOException {
+            ensure(8);
+            buffer.putLong(v);
+            position += 8;
+        }
+
+        private void putInts(int[] values, int length) throws IOException {
+            for (int i = 0; i < length; i++) {
+                putInt(values[i]);
+            }
+        }
+
+        private void putLongs(long[] values, int length) throws IOException {
+            for (int i = 0; i < length; i++) {
+                putLong(values[i]);
+            }
+        }
+
+        private void putBytes(byte[] bytes) throws IOException {
+            for (int offset = 0; offset < bytes.length; ) {
+                ensure(1);
+                int length = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, length);
+                offset += length;
+                position += length;
+            }
+        }
+
+        private void align() throws IOException {
+            while ((position & 7) != 0) {
+                ensure(1);
+                buffer.put((byte) 0);
+                position++;
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package model;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Trained models kept in memory by long-lived processes, keyed by what they have been trained on.
+ * Concurrent requests of the same model share one training, and the least recently used models are evicted
+ * beyond a maximum number of models or beyond a maximum of {@link LanguageModel#estimatedBytes()}.
+ * The most recently used model is never evicted, even if it exceeds the bound alone.
+ */
+public final class ModelRegistry {
+
+    private final int maxModels;
+    private final long maxBytes;
+    private final LinkedHashMap<String, Entry> models = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+
+    public ModelRegistry(int maxModels) {
+        this(maxModels, Long.MAX_VALUE);
+    }
+
+    public ModelRegistry(int maxModels, long maxBytes) {
+        if (maxModels < 1) {
+            throw new IllegalArgumentException("maxModels should be > 0 : " + maxModels);
+        }
+        if (maxBytes < 1) {
+            throw new IllegalArgumentException("maxBytes should be > 0 : " + maxBytes);
+        }
+        this.maxModels = maxModels;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @param key      identifies the model.
+     * @param training trains the model if it is not registered yet, run by the calling thread.
+     * @throws ExecutionException if the training failed, the failed model is then not kept.
+     */
+    public LanguageModel get(String key, Callable<LanguageModel> training) throws ExecutionException, InterruptedException {
+        Entry entry;
+        boolean train = false;
+        synchronized (this) {
+            entry = models.get(key);
+            if (entry == null) {
+                entry = new Entry(new FutureTask<>(training));
+                train = true;
+                models.put(key, entry);
+                evict();
+            }
+        }
+        if (train) {
+            entry.model.run();
+        }
+        LanguageModel model;
+        try {
+            model = entry.model.get();
+        } catch (ExecutionException e) {
+            synchronized (this) {
+                models.remove(key, entry);
+            }
+            throw e;
+        }
+        if (train) {
+            synchronized (this) {
+                // the entry may have been evicted while it was trained.
+                if (models.get(key) == entry) {
+                    entry.bytes = model.estimatedBytes();
+                    bytes += entry.bytes;
+                    evict();
+                }
+            }
+        }
+        return model;
+    }
+
+    public synchronized int size() {
+        return models.size();
+    }
+
+    /**
+     * @return the sum of the estimated bytes of the registered models.
+     */
+    public synchronized long bytes() {
+        return bytes;
+    }
+
+    private void evict() {
+        Iterator<Entry> it = models.values().iterator();
+        while (models.size() > maxModels || (bytes > maxBytes && models.size() > 1)) {
+            bytes -= it.next().bytes;
+            it.remove();
+        }
+    }
+
+    private static final class Entry {
+        private final FutureTask<LanguageModel> model;
+        // 0 until the model is trained.
+        private long bytes;
+
+        private Entry(FutureTask<LanguageModel> model) {
+            this.model = model;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package model;
+
+import modelling.exception.TrainingFailedException;
+
+import java.util.List;
+
+/**
+ * Trains a {@link LanguageModel} from tokenized documents, fed one at a time as soon as they are tokenized.
+ */
+public interface ModelTrainer {
+
+    /**
+     * @param document  index of the document in the training files: documents may be added in any order.
+     * @param sentences the tokenized sentences of the document.
+     */
+    void add(int document, List<Iterable<String>> sentences);
+
+    /**
+     * @param document index of the document in the training files: documents may be added in any order.
+     * @param corpus   the tokenized sentences of the document.
+     */
+    default void add(int document, Corpus corpus) {
+        add(document, corpus.sentences());
+    }
+
+    LanguageModel train() throws TrainingFailedException;
+}
@@ -0,0 +1,291 @@
+package model;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * n-gram counts over vocabulary ids, stored as one trie level per order.
+ * <p>
+ * Every n-gram of order k is a node identified by a dense int id. It is indexed in a {@link LongIntHashMap} by
+ * its context node (order k - 1) and its last word packed into one long key, and its statistics live in primitive
+ * arrays indexed by that id.
+ * <p>
+ * The interpolated Kneser-Ney statistics (continuation counts, context totals, distinct followers and
+ * count-of-counts per order) are maintained on every update, so sentences can be added and subtracted at any time
+ * without a finalization pass.
+ * Sentences are padded with one {@link Vocabulary#BOS} and one {@link Vocabulary#EOS}.
+ * The highest order uses raw counts, lower orders use continuation counts,
+ * except n-grams starting with {@link Vocabulary#BOS} that cannot have a left extension and keep their raw counts.
+ */
+public class NgramCounts implements NgramStatistics {
+
+    private final int n;
+    private final Order[] orders;
+    private final int bosNode;
+    private long rootDenominator;
+    private int rootTypes;
+    private int seenWords;
+
+    public NgramCounts(int n) {
+        if (n < 1) {
+            throw new IllegalArgumentException("n-gram size should be > 0 : " + n);
+        }
+        this.n = n;
+        this.orders = new Order[n + 1];
+        for (int k = 1; k <= n; k++) {
+            orders[k] = new Order(k < n);
+        }
+        this.bosNode = node(1, ROOT, Vocabulary.BOS, NONE);
+    }
+
+    NgramCounts(Order[] orders, long rootDenominator, int rootTypes, int seenWords) {
+        this.n = orders.length - 1;
+        this.orders = orders;
+        this.rootDenominator = rootDenominator;
+        this.rootTypes = rootTypes;
+        this.seenWords = seenWords;
+        this.bosNode = child(1, ROOT, Vocabulary.BOS);
+    }
+
+    static long key(int context, int word) {
+        return ((long) context << 32) | word;
+    }
+
+    /**
+     * adds (delta > 0) or subtracts (delta < 0) the n-grams of a sentence.
+     *
+     * @param words  sentence word ids, without delimiters.
+     * @param length number of words to read from the array.
+     */
+    public void add(int[] words, int length, int delta) {
+        int[] prev = new int[n + 1];
+        int[] cur = new int[n + 1];
+        prev[1] = bosNode;
+        int prevOrders = 1;
+        for (int i = 0; i <= length; i++) {
+            int w = i < length ? words[i] : Vocabulary.EOS;
+            int max = Math.min(n, prevOrders + 1);
+            for (int k = 1; k <= max; k++) {
+                int node = k == 1 ? node(1, ROOT, w, NONE) : node(k, prev[k - 1], w, cur[k - 1]);
+                cur[k] = node;
+                addRaw(k, node, delta);
+            }
+            int[] tmp = prev;
+            prev = cur;
+            cur = tmp;
+            prevOrders = max;
+        }
+    }
+
+    private int node(int k, int context, int word, int suffix) {
+        Order o = orders[k];
+        int id = o.index.putIfAbsent(key(context, word), o.size);
+        if (id != LongIntHashMap.NO_VALUE) {
+            return id;
+        }
+        id = o.size++;
+        o.ensureCapacity(o.size);
+        o.parent[id] = context;
+        o.suffix[id] = suffix;
+        if (k == 1 ? word == Vocabulary.BOS : orders[k - 1].bosStart.get(context)) {
+            o.bosStart.set(id);
+        }
+        return id;
+    }
+
+    private void addRaw(int k, int x, int delta) {
+        Order o = orders[k];
+        int old = o.raw[x];
+        int now = old + delta;
+        if (now < 0) {
+            throw new IllegalStateException("negative n-gram count: subtracted sentences were not counted.");
+        }
+        o.raw[x] = now;
+        boolean existenceChanged = (old > 0) != (now > 0);
+        if (k == 1 && existenceChanged) {
+            seenWords += now > 0 ? 1 : -1;
+        }
+        if (k == n || (k > 1 && o.bosStart.get(x))) {
+            updateEffective(k, x, old, now);
+        }
+        if (k > 1 && existenceChanged) {
+            Order so = orders[k - 1];
+            int s = o.suffix[x];
+            int oldCont = so.cont[s];
+            int newCont = oldCont + (now > 0 ? 1 : -1);
+            so.cont[s] = newCont;
+            updateEffective(k - 1, s, oldCont, newCont);
+        }
+    }
+
+    private void updateEffective(int k, int x, int old, int now) {
+        if (old == now) {
+            return;
+        }
+        Order o = orders[k];
+        if (old == 1) {
+            o.n1--;
+        } else if (old == 2) {
+            o.n2--;
+        }
+        if (now == 1) {
+            o.n1++;
+        } else if (now == 2) {
+            o.n2++;
+        }
+        int typesDelta = (old > 0) == (now > 0) ? 0 : now > 0 ? 1 : -1;
+        if (k == 1) {
+            rootDenominator += now - old;
+            rootTypes += typesDelta;
+        } else {
+            Order p = orders[k - 1];
+            int c = o.parent[x];
+            p.denominator[c] += now - old;
+            p.types[c] += typesDelta;
+        }
+    }
+
+    @Override
+    public int order() {
+        return n;
+    }
+
+    @Override
+    public int bosNode() {
+        return bosNode;
+    }
+
+    @Override
+    public int child(int k, int context, int word) {
+        if (context == NONE) {
+            return NONE;
+        }
+        return orders[k].index.get(key(k == 1 ? ROOT : context, word));
+    }
+
+    @Override
+    public int raw(int k, int x) {
+        return orders[k].raw[x];
+    }
+
+    @Override
+    public int effective(int k, int x) {
+        Order o = orders[k];
+        return k == n || (k > 1 && o.bosStart.get(x)) ? o.raw[x] : o.cont[x];
+    }
+
+    @Override
+    public long denominator(int k, int context) {
+        return k == 0 ? rootDenominator : orders[k].denominator[context];
+    }
+
+    @Override
+    public int types(int k, int context) {
+        return k == 0 ? rootTypes : orders[k].types[context];
+    }
+
+    @Override
+    public double discount(int k) {
+        Order o = orders[k];
+        return o.n1 + 2 * o.n2 == 0 ? 0d : (double) o.n1 / (o.n1 + 2 * o.n2);
+    }
+
+    @Override
+    public long n1(int k) {
+        return orders[k].n1;
+    }
+
+    @Override
+    public long n2(int k) {
+        return orders[k].n2;
+    }
+
+    @Override
+    public int seenWords() {
+        return seenWords;
+    }
+
+    /**
+     * @return the bytes of the index and node arrays of every order.
+     */
+    long estimatedBytes() {
+        long bytes = 0;
+        for (int k = 1; k <= n; k++) {
+            Order order = orders[k];
+            bytes += order.index.estimatedBytes() + order.bosStart.size() / Byte.SIZE;
+            bytes += Integer.BYTES * (long) (order.parent.length + order.suffix.length + order.raw.length);
+            if (order.hasChildren) {
+                bytes += Integer.BYTES * (long) (order.cont.length + order.denominator.length + order.types.length);
+            }
+        }
+        return bytes;
+    }
+
+    Order orderAt(int k) {
+        return orders[k];
+    }
+
+    long rootDenominator() {
+        return rootDenominator;
+    }
+
+    int rootTypes() {
+        return rootTypes;
+    }
+
+    static final class Order {
+        final LongIntHashMap index;
+        final boolean hasChildren;
+        final BitSet bosStart;
+        int size;
+        int[] parent = new int[0];
+        int[] suffix = new int[0];
+        int[] raw = new int[0];
+        int[] cont;
+        int[] denominator;
+        int[] types;
+        long n1;
+        long n2;
+
+        Order(boolean hasChildren) {
+            this.hasChildren = hasChildren;
+            this.index = new LongIntHashMap();
+            this.bosStart = new BitSet();
+            if (hasChildren) {
+                cont = new int[0];
+                denominator = new int[0];
+                types = new int[0];
+            }
+        }
+
+        Order(LongIntHashMap index, BitSet bosStart, int size, int[] parent, int[] suffix, int[] raw, int[] cont, int[] denominator, int[] types, long n1, long n2) {
+            this.index = index;
+            this.hasChildren = cont != null;
+            this.bosStart = bosStart;
+            this.size = size;
+            this.parent = parent;
+            this.suffix = suffix;
+            this.raw = raw;
+            this.cont = cont;
+            this.denominator = denominator;
+            this.types = types;
+            this.n1 = n1;
+            this.n2 = n2;
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity <= raw.length) {
+                return;
+            }
+            int newLength = Math.max(16, Math.max(capacity, raw.length + (raw.length >> 1)));
+            parent = Arrays.copyOf(parent, newLength);
+            suffix = Arrays.copyOf(suffix, newLength);
+            raw = Arrays.copyOf(raw, newLength);
+            if (hasChildren) {
+                cont = Arrays.copyOf(cont, newLength);
+                denominator = Arrays.copyOf(denominator, newLength);
+                types = Arrays.copyOf(types, newLength);
+            }
+        }
+    }
+}
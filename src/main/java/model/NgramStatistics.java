@@ -0,0 +1,79 @@
+package model;
+
+/**
+ * Read access to the n-gram statistics needed to score with interpolated Kneser-Ney.
+ * Nodes are n-grams identified by their order k and an int id, the empty context being {@link #ROOT} of order 0.
+ *
+ * @see NgramCounts
+ * @see MappedKneserNeyModel
+ * @see SubtractedStatistics
+ */
+public interface NgramStatistics {
+
+    int ROOT = 0;
+    int NONE = -1;
+
+    /**
+     * @return n, the highest order.
+     */
+    int order();
+
+    /**
+     * @return the unigram node of the sentence start delimiter.
+     */
+    int bosNode();
+
+    /**
+     * @param context node of order k - 1, ignored for unigrams.
+     * @return the node of order k extending the context with the word, or {@link #NONE}.
+     */
+    int child(int k, int context, int word);
+
+    int raw(int k, int x);
+
+    /**
+     * @return the count of the n-gram used by the Kneser-Ney estimate of its order.
+     */
+    int effective(int k, int x);
+
+    /**
+     * @param k       order of the context, 0 for the empty context.
+     * @param context node of order k.
+     * @return the sum of the effective counts of the context's children.
+     */
+    long denominator(int k, int context);
+
+    /**
+     * @return the number of distinct words following the context.
+     */
+    int types(int k, int context);
+
+    /**
+     * @return the Kneser-Ney discount of order k : n1 / (n1 + 2 * n2).
+     */
+    double discount(int k);
+
+    /**
+     * @return the number of n-grams of order k whose effective count is 1.
+     */
+    long n1(int k);
+
+    /**
+     * @return the number of n-grams of order k whose effective count is 2.
+     */
+    long n2(int k);
+
+    /**
+     * @return the number of distinct words predicted at least once.
+     */
+    int seenWords();
+
+    /**
+     * @return true if the unknown token has been predicted, as the rare tokens counted as unknown by a vocabulary
+     * cutoff: it is then one of the {@link #seenWords()}.
+     */
+    default boolean seenUnknown() {
+        int unigram = child(1, ROOT, Vocabulary.UNK);
+        return unigram != NONE && raw(1, unigram) > 0;
+    }
+}
@@ -0,0 +1,286 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * n-gram statistics restricted to the n-grams of a fixed set of query sentences, the only ones needed to score them.
+ * <p>
+ * The query sentences are indexed first, as the nodes of a trie like the one of {@link NgramCounts}.
+ * Training sentences are then streamed without keeping them, nor their vocabulary: only the raw counts of the query
+ * n-grams and the context totals and distinct followers of the query contexts are kept.
+ * The effective counts and the count-of-counts behind the discounts depend on every distinct n-gram of the training
+ * set, so each order also keeps the effective count of every distinct n-gram, keyed by a 63 bits fingerprint instead
+ * of a node. Statistics are updated as in {@link NgramCounts}, so the query sentences score exactly as with the full
+ * counts, unless two distinct n-grams of one order share a fingerprint.
+ */
+public class QueryCounts implements NgramStatistics {
+
+    private static final long ROOT_FINGERPRINT = 0L;
+    private static final long UNK_FINGERPRINT = 0L;
+    private static final long BOS_FINGERPRINT = 1L;
+    private static final long EOS_FINGERPRINT = 2L;
+
+    private final int n;
+    private final Query[] queries;
+    private final LongIntHashMap[] effective;
+    private final long[] n1;
+    private final long[] n2;
+    private final int bosNode;
+    private final long bosFingerprint;
+    private long rootDenominator;
+    private int rootTypes;
+
+    public QueryCounts(int n) {
+        if (n < 1) {
+            throw new IllegalArgumentException("n-gram size should be > 0 : " + n);
+        }
+        this.n = n;
+        this.queries = new Query[n + 1];
+        this.effective = new LongIntHashMap[n + 1];
+        for (int k = 1; k <= n; k++) {
+            queries[k] = new Query();
+            effective[k] = new LongIntHashMap();
+        }
+        this.n1 = new long[n + 1];
+        this.n2 = new long[n + 1];
+        this.bosFingerprint = fingerprint(ROOT_FINGERPRINT, BOS_FINGERPRINT);
+        this.bosNode = node(1, ROOT, Vocabulary.BOS, bosFingerprint);
+    }
+
+    /**
+     * @return the fingerprint of a token, as expected by {@link #add(long[], int)}.
+     */
+    public static long fingerprint(String token) {
+        if (token == null) {
+            return UNK_FINGERPRINT;
+        }
+        // FNV-1a over the chars: unlike String.hashCode, 64 bits keep collisions between tokens unlikely.
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < token.length(); i++) {
+            h ^= token.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    private static long fingerprint(long context, long word) {
+        long h = context * 0x9e3779b97f4a7c15L + word;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h & Long.MAX_VALUE;
+    }
+
+    /**
+     * indexes the n-grams of a sentence to be scored.
+     *
+     * @param ids          sentence word ids, without delimiters.
+     * @param fingerprints fingerprints of the same words.
+     * @param length       number of words to read from the arrays.
+     */
+    public void addQuery(int[] ids, long[] fingerprints, int length) {
+        int[] prev = new int[n + 1];
+        int[] cur = new int[n + 1];
+        long[] prevFingerprints = new long[n + 1];
+        long[] curFingerprints = new long[n + 1];
+        prev[1] = bosNode;
+        prevFingerprints[1] = bosFingerprint;
+        int prevOrders = 1;
+        for (int i = 0; i <= length; i++) {
+            int w = i < length ? ids[i] : Vocabulary.EOS;
+            long wf = i < length ? fingerprints[i] : EOS_FINGERPRINT;
+            int max = Math.min(n, prevOrders + 1);
+            for (int k = 1; k <= max; k++) {
+                long f = fingerprint(k == 1 ? ROOT_FINGERPRINT : prevFingerprints[k - 1], wf);
+                cur[k] = node(k, k == 1 ? ROOT : prev[k - 1], w, f);
+                curFingerprints[k] = f;
+            }
+            int[] tmp = prev;
+            prev = cur;
+            cur = tmp;
+            long[] tmpFingerprints = prevFingerprints;
+            prevFingerprints = curFingerprints;
+            curFingerprints = tmpFingerprints;
+            prevOrders = max;
+        }
+    }
+
+    private int node(int k, int context, int word, long fingerprint) {
+        Query q = queries[k];
+        int id = q.index.putIfAbsent(NgramCounts.key(context, word), q.size);
+        if (id != LongIntHashMap.NO_VALUE) {
+            return id;
+        }
+        id = q.size++;
+        q.ensureCapacity(q.size);
+        q.fingerprint[id] = fingerprint;
+        q.byFingerprint.putIfAbsent(fingerprint, id);
+        return id;
+    }
+
+    /**
+     * counts the n-grams of a training sentence.
+     *
+     * @param words  fingerprints of the sentence words, without delimiters.
+     * @param length number of words to read from the array.
+     */
+    public void add(long[] words, int length) {
+        long[] prev = new long[n + 1];
+        long[] cur = new long[n + 1];
+        prev[1] = bosFingerprint;
+        int prevOrders = 1;
+        for (int i = 0; i <= length; i++) {
+            long w = i < length ? words[i] : EOS_FINGERPRINT;
+            int max = Math.min(n, prevOrders + 1);
+            for (int k = 1; k <= max; k++) {
+                long context = k == 1 ? ROOT_FINGERPRINT : prev[k - 1];
+                long gram = fingerprint(context, w);
+                cur[k] = gram;
+                // the n-gram ending at word i starts with the delimiter, at position -1, when it is i + 2 words long.
+                boolean rawEffective = k == n || k == i + 2;
+                int old = effective[k].addTo(gram, rawEffective ? 1 : 0);
+                boolean added = old == LongIntHashMap.NO_VALUE;
+                Query q = queries[k];
+                int x = q.byFingerprint.get(gram);
+                if (x != LongIntHashMap.NO_VALUE) {
+                    q.raw[x]++;
+                }
+                if (rawEffective) {
+                    old = added ? 0 : old;
+                    updateEffective(k, context, old, old + 1);
+                }
+                if (added && k > 1) {
+                    // first occurrence of the n-gram: its suffix gains one left extension.
+                    long suffix = cur[k - 1];
+                    int cont = effective[k - 1].addTo(suffix, 1);
+                    updateEffective(k - 1, k == 2 ? ROOT_FINGERPRINT : prev[k - 2], cont, cont + 1);
+                }
+            }
+            long[] tmp = prev;
+            prev = cur;
+            cur = tmp;
+            prevOrders = max;
+        }
+    }
+
+    private void updateEffective(int k, long context, int old, int now) {
+        if (old == 1) {
+            n1[k]--;
+        } else if (old == 2) {
+            n2[k]--;
+        }
+        if (now == 1) {
+            n1[k]++;
+        } else if (now == 2) {
+            n2[k]++;
+        }
+        int typesDelta = old == 0 ? 1 : 0;
+        if (k == 1) {
+            rootDenominator += now - old;
+            rootTypes += typesDelta;
+            return;
+        }
+        Query p = queries[k - 1];
+        int c = p.byFingerprint.get(context);
+        if (c != LongIntHashMap.NO_VALUE) {
+            p.denominator[c] += now - old;
+            p.types[c] += typesDelta;
+        }
+    }
+
+    @Override
+    public int order() {
+        return n;
+    }
+
+    @Override
+    public int bosNode() {
+        return bosNode;
+    }
+
+    /**
+     * @return the node of order k extending the context with the word, or {@link #NONE} if it is not a query n-gram.
+     */
+    @Override
+    public int child(int k, int context, int word) {
+        if (context == NONE) {
+            return NONE;
+        }
+        return queries[k].index.get(NgramCounts.key(k == 1 ? ROOT : context, word));
+    }
+
+    @Override
+    public int raw(int k, int x) {
+        return queries[k].raw[x];
+    }
+
+    @Override
+    public int effective(int k, int x) {
+        int c = effective[k].get(queries[k].fingerprint[x]);
+        return c == LongIntHashMap.NO_VALUE ? 0 : c;
+    }
+
+    @Override
+    public long denominator(int k, int context) {
+        return k == 0 ? rootDenominator : queries[k].denominator[context];
+    }
+
+    @Override
+    public int types(int k, int context) {
+        return k == 0 ? rootTypes : queries[k].types[context];
+    }
+
+    @Override
+    public double discount(int k) {
+        return n1[k] + 2 * n2[k] == 0 ? 0d : (double) n1[k] / (n1[k] + 2 * n2[k]);
+    }
+
+    @Override
+    public long n1(int k) {
+        return n1[k];
+    }
+
+    @Override
+    public long n2(int k) {
+        return n2[k];
+    }
+
+    @Override
+    public int seenWords() {
+        return effective[1].size();
+    }
+
+    /**
+     * the unknown token may be counted without being a query unigram.
+     */
+    @Override
+    public boolean seenUnknown() {
+        return effective[1].get(fingerprint(ROOT_FINGERPRINT, UNK_FINGERPRINT)) != LongIntHashMap.NO_VALUE;
+    }
+
+    /**
+     * query n-grams of one order.
+     */
+    private static final class Query {
+        private final LongIntHashMap index = new LongIntHashMap();
+        private final LongIntHashMap byFingerprint = new LongIntHashMap();
+        private int size;
+        private long[] fingerprint = new long[0];
+        private int[] raw = new int[0];
+        private int[] denominator = new int[0];
+        private int[] types = new int[0];
+
+        private void ensureCapacity(int capacity) {
+            if (capacity <= raw.length) {
+                return;
+            }
+            int newLength = Math.max(16, Math.max(capacity, raw.length + (raw.length >> 1)));
+            fingerprint = Arrays.copyOf(fingerprint, newLength);
+            raw = Arrays.copyOf(raw, newLength);
+            denominator = Arrays.copyOf(denominator, newLength);
+            types = Arrays.copyOf(types, newLength);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package model;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+
+/**
+ * {@link KneserNeyModel} trained for a fixed set of query sentences: training only keeps what scoring them needs,
+ * see {@link QueryCounts}. The query sentences score as with the full model, other sentences must not be scored.
+ * With a threshold above 1, the queries are only indexed once the vocabulary cutoff of the training set is known.
+ */
+public class QueryKneserNeyModel implements LanguageModel {
+
+    private final int threshold;
+    private final Vocabulary vocabulary;
+    private final QueryCounts counts;
+    private List<Iterable<String>> queries;
+
+    /**
+     * @param queries the sentences that the model will score.
+     */
+    public QueryKneserNeyModel(int size, int threshold, List<Iterable<String>> queries) {
+        this.threshold = threshold;
+        this.vocabulary = new Vocabulary();
+        this.counts = new QueryCounts(size);
+        this.queries = queries;
+        if (threshold <= 1) {
+            index(token -> true);
+        }
+    }
+
+    /**
+     * indexes the queries, the tokens that are not known as the unknown token.
+     */
+    private void index(Predicate<String> known) {
+        int[] ids = new int[16];
+        long[] fingerprints = new long[16];
+        for (Iterable<String> sentence : queries) {
+            int length = 0;
+            for (String token : sentence) {
+                if (length == ids.length) {
+                    ids = Arrays.copyOf(ids, length << 1);
+                    fingerprints = Arrays.copyOf(fingerprints, length << 1);
+                }
+                String counted = known.test(token) ? token : null;
+                ids[length] = vocabulary.add(counted);
+                fingerprints[length++] = QueryCounts.fingerprint(counted);
+            }
+            counts.addQuery(ids, fingerprints, length);
+        }
+        queries = null;
+    }
+
+    /**
+     * @return a trainer that counts every document as soon as it is added, without keeping its tokens.
+     * With a threshold above 1, the documents are kept until the vocabulary cutoff is known.
+     */
+    public static ModelTrainer trainer(int size, int threshold, List<Iterable<String>> queries) {
+        QueryKneserNeyModel model = new QueryKneserNeyModel(size, threshold, queries);
+        if (threshold > 1) {
+            SortedMap<Integer, Corpus> documents = new TreeMap<>();
+            return new ModelTrainer() {
+                @Override
+                public void add(int document, List<Iterable<String>> sentences) {
+                    add(document, Corpus.of(sentences));
+                }
+
+                @Override
+                public synchronized void add(int document, Corpus corpus) {
+                    documents.put(document, corpus);
+                }
+
+                @Override
+                public synchronized LanguageModel train() {
+                    model.count(documents.values());
+                    documents.clear();
+                    return model;
+                }
+            };
+        }
+        return new ModelTrainer() {
+            @Override
+            public void add(int document, List<Iterable<String>> sentences) {
+                sentences.forEach(model::add);
+            }
+
+            @Override
+            public LanguageModel train() {
+                return model;
+            }
+        };
+    }
+
+    /**
+     * counts the training set, the tokens seen less than {@code threshold} times in it as the unknown token.
+     */
+    public QueryKneserNeyModel train(List<Iterable<String>> trainingSet) {
+        if (threshold <= 1) {
+            for (Iterable<String> sentence : trainingSet) {
+                add(sentence);
+            }
+        } else {
+            count(Collections.singletonList(Corpus.of(trainingSet)));
+        }
+        return this;
+    }
+
+    private void count(Collection<Corpus> corpora) {
+        if (queries == null) {
+            throw new IllegalStateException("the vocabulary cutoff must be known before any sentence is counted");
+        }
+        Map<String, Integer> frequencies = KneserNeyModel.frequencies(corpora);
+        Predicate<String> known = token -> frequencies.getOrDefault(token, 0) >= threshold;
+        index(known);
+        for (Corpus corpus : corpora) {
+            for (int s = 0; s < corpus.size(); s++) {
+                add(corpus.sentence(s), known);
+            }
+        }
+    }
+
+    /**
+     * counts a sentence without vocabulary cutoff.
+     */
+    public void add(Iterable<String> sentence) {
+        if (queries != null) {
+            index(token -> true);
+        }
+        add(sentence, token -> true);
+    }
+
+    private void add(Iterable<String> sentence, Predicate<String> known) {
+        long[] fingerprints = new long[16];
+        int length = 0;
+        for (String token : sentence) {
+            if (length == fingerprints.length) {
+                fingerprints = Arrays.copyOf(fingerprints, length << 1);
+            }
+            fingerprints[length++] = QueryCounts.fingerprint(known.test(token) ? token : null);
+        }
+        counts.add(fingerprints, length);
+    }
+
+    /**
+     * @param tokens one of the query sentences.
+     */
+    @Override
+    public double crossEntropy(Iterable<String> tokens) {
+        return KneserNeyModel.crossEntropy(counts, vocabulary::id, threshold, tokens);
+    }
+
+    /**
+     * @param corpus the sentences scored should be query sentences.
+     */
+    @Override
+    public double[] crossEntropies(Corpus corpus, int from, int to) {
+        return KneserNeyModel.crossEntropies(counts, vocabulary::id, threshold, corpus, from, to);
+    }
+}
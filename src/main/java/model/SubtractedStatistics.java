@@ -0,0 +1,207 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * {@link NgramStatistics} of a base model from which sentences are subtracted, without updating the base.
+ * <p>
+ * Subtracting follows the updates of {@link NgramCounts#add(int[], int, int)}, so that the result scores exactly as
+ * the base trained without the sentences, but the statistics it changes are kept aside as deltas indexed by node:
+ * every other statistic is read from the base. Building an instance costs as much as counting the sentences,
+ * and one base can be shared by the instances of concurrent threads, as long as it is not updated.
+ */
+final class SubtractedStatistics implements NgramStatistics {
+
+    private final NgramStatistics base;
+    private final int n;
+    private final Deltas[] deltas;
+    private final long[] n1;
+    private final long[] n2;
+    private long rootDenominator;
+    private int rootTypes;
+    private int seenWords;
+
+    SubtractedStatistics(NgramStatistics base) {
+        this.base = base;
+        this.n = base.order();
+        this.deltas = new Deltas[n + 1];
+        for (int k = 1; k <= n; k++) {
+            deltas[k] = new Deltas();
+        }
+        this.n1 = new long[n + 1];
+        this.n2 = new long[n + 1];
+    }
+
+    /**
+     * subtracts the n-grams of a sentence counted by the base.
+     *
+     * @param words  sentence word ids, without delimiters.
+     * @param length number of words to read from the array.
+     */
+    void subtract(int[] words, int length) {
+        int[] prev = new int[n + 1];
+        int[] cur = new int[n + 1];
+        prev[1] = base.bosNode();
+        int prevOrders = 1;
+        for (int i = 0; i <= length; i++) {
+            int w = i < length ? words[i] : Vocabulary.EOS;
+            int max = Math.min(n, prevOrders + 1);
+            for (int k = 1; k <= max; k++) {
+                int context = k == 1 ? ROOT : prev[k - 1];
+                int node = base.child(k, context, w);
+                if (node == NONE) {
+                    throw new IllegalStateException("subtracted sentence was not counted.");
+                }
+                cur[k] = node;
+                // the n-gram ending at word i starts with the delimiter, at position -1, when it is i + 2 words long.
+                subtractRaw(k, node, context, k == i + 2);
+                if (k > 1 && raw(k, node) == 0) {
+                    // the n-gram has no occurrence left: its suffix loses one left extension.
+                    int suffix = cur[k - 1];
+                    int cont = effective(k - 1, suffix);
+                    updateEffective(k - 1, suffix, k == 2 ? ROOT : prev[k - 2], cont, cont - 1);
+                }
+            }
+            int[] tmp = prev;
+            prev = cur;
+            cur = tmp;
+            prevOrders = max;
+        }
+    }
+
+    private void subtractRaw(int k, int x, int context, boolean bosStart) {
+        int old = raw(k, x);
+        if (old == 0) {
+            throw new IllegalStateException("negative n-gram count: subtracted sentences were not counted.");
+        }
+        deltas[k].add(x, 0, -1, 0, 0);
+        if (k == 1 && old == 1) {
+            seenWords--;
+        }
+        if (k == n || (k > 1 && bosStart)) {
+            updateEffective(k, x, context, old, old - 1);
+        }
+    }
+
+    private void updateEffective(int k, int x, int context, int old, int now) {
+        if (old == 1) {
+            n1[k]--;
+        } else if (old == 2) {
+            n2[k]--;
+        }
+        if (now == 1) {
+            n1[k]++;
+        } else if (now == 2) {
+            n2[k]++;
+        }
+        deltas[k].add(x, now - old, 0, 0, 0);
+        int typesDelta = now == 0 ? -1 : 0;
+        if (k == 1) {
+            rootDenominator += now - old;
+            rootTypes += typesDelta;
+        } else {
+            deltas[k - 1].add(context, 0, 0, now - old, typesDelta);
+        }
+    }
+
+    @Override
+    public int order() {
+        return n;
+    }
+
+    @Override
+    public int bosNode() {
+        return base.bosNode();
+    }
+
+    @Override
+    public int child(int k, int context, int word) {
+        return base.child(k, context, word);
+    }
+
+    @Override
+    public int raw(int k, int x) {
+        Deltas d = deltas[k];
+        int slot = d.index.get(x);
+        return base.raw(k, x) + (slot == LongIntHashMap.NO_VALUE ? 0 : d.raw[slot]);
+    }
+
+    @Override
+    public int effective(int k, int x) {
+        Deltas d = deltas[k];
+        int slot = d.index.get(x);
+        return base.effective(k, x) + (slot == LongIntHashMap.NO_VALUE ? 0 : d.effective[slot]);
+    }
+
+    @Override
+    public long denominator(int k, int context) {
+        if (k == 0) {
+            return base.denominator(0, context) + rootDenominator;
+        }
+        Deltas d = deltas[k];
+        int slot = d.index.get(context);
+        return base.denominator(k, context) + (slot == LongIntHashMap.NO_VALUE ? 0 : d.denominator[slot]);
+    }
+
+    @Override
+    public int types(int k, int context) {
+        if (k == 0) {
+            return base.types(0, context) + rootTypes;
+        }
+        Deltas d = deltas[k];
+        int slot = d.index.get(context);
+        return base.types(k, context) + (slot == LongIntHashMap.NO_VALUE ? 0 : d.types[slot]);
+    }
+
+    @Override
+    public double discount(int k) {
+        long n1 = n1(k);
+        long n2 = n2(k);
+        return n1 + 2 * n2 == 0 ? 0d : (double) n1 / (n1 + 2 * n2);
+    }
+
+    @Override
+    public long n1(int k) {
+        return base.n1(k) + n1[k];
+    }
+
+    @Override
+    public long n2(int k) {
+        return base.n2(k) + n2[k];
+    }
+
+    @Override
+    public int seenWords() {
+        return base.seenWords() + seenWords;
+    }
+
+    /**
+     * changes of the statistics of the nodes of one order, indexed by node id.
+     */
+    private static final class Deltas {
+        private final LongIntHashMap index = new LongIntHashMap();
+        private int size;
+        private int[] effective = new int[0];
+        private int[] raw = new int[0];
+        private int[] denominator = new int[0];
+        private int[] types = new int[0];
+
+        private void add(int x, int effectiveDelta, int rawDelta, int denominatorDelta, int typesDelta) {
+            int slot = index.putIfAbsent(x, size);
+            if (slot == LongIntHashMap.NO_VALUE) {
+                slot = size++;
+                if (slot == raw.length) {
+                    int newLength = Math.max(16, slot + (slot >> 1));
+                    effective = Arrays.copyOf(effective, newLength);
+                    raw = Arrays.copyOf(raw, newLength);
+                    denominator = Arrays.copyOf(denominator, newLength);
+                    types = Arrays.copyOf(types, newLength);
+                }
+            }
+            effective[slot] += effectiveDelta;
+            raw[slot] += rawDelta;
+            denominator[slot] += denominatorDelta;
+            types[slot] += typesDelta;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maps tokens to dense int ids.
+ * The first ids are reserved for the unknown token and the sentence delimiters.
+ */
+public class Vocabulary {
+
+    public static final int UNK = 0;
+    public static final int BOS = 1;
+    public static final int EOS = 2;
+    static final String UNK_TOKEN = "<unk>";
+    static final String BOS_TOKEN = "<s>";
+    static final String EOS_TOKEN = "</s>";
+    private static final int TOKEN_OVERHEAD_BYTES = 112;
+
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final List<String> tokens = new ArrayList<>();
+
+    public Vocabulary() {
+        // reserved ids are not indexed, so that source tokens never collide with them.
+        tokens.add(UNK_TOKEN);
+        tokens.add(BOS_TOKEN);
+        tokens.add(EOS_TOKEN);
+    }
+
+    Vocabulary(List<String> tokens) {
+        assert tokens.size() >= 3;
+        this.tokens.addAll(tokens);
+        for (int i = 3; i < tokens.size(); i++) {
+            ids.put(tokens.get(i), i);
+        }
+    }
+
+    /**
+     * @return the id of the token, newly assigned if the token is not known yet.
+     */
+    public int add(String token) {
+        if (token == null) {
+            return UNK;
+        }
+        Integer id = ids.get(token);
+        if (id == null) {
+            id = tokens.size();
+            ids.put(token, id);
+            tokens.add(token);
+        }
+        return id;
+    }
+
+    /**
+     * @return the id of the token or {@link #UNK} if it is not known.
+     */
+    public int id(String token) {
+        if (token == null) {
+            return UNK;
+        }
+        Integer id = ids.get(token);
+        return id == null ? UNK : id;
+    }
+
+    public String token(int id) {
+        return tokens.get(id);
+    }
+
+    public int size() {
+        return tokens.size();
+    }
+
+    /**
+     * @return the bytes of the tokens, counting the string, map entry and boxed id overheads of each one.
+     */
+    long estimatedBytes() {
+        long bytes = 0;
+        for (String token : tokens) {
+            bytes += TOKEN_OVERHEAD_BYTES + 2L * token.length();
+        }
+        return bytes;
+    }
+}
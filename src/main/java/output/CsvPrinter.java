@@ -1,13 +1,18 @@
 package output;
 
 
+import parser.Line;
+import parser.LineResults;
 import utils.Checker;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -39,6 +44,43 @@ public class CsvPrinter<T extends CsvPrinter.CsvLine> {
         Files.write(outputFilePath, outLines);
     }
 
+    /**
+     * writes the headers of {@link Line}s only, for a run that has no line to rank.
+     */
+    public static void printHeaders(String filePath) throws IOException {
+        Path outputFilePath = Paths.get(filePath);
+        if (!outputFilePath.getParent().toFile().exists()) {
+            Files.createDirectories(outputFilePath.getParent());
+        }
+        Files.write(outputFilePath, Collections.singletonList(Line.HEADERS), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * writes the lines from their columns, as {@link #print()} would write them as {@link Line}s.
+     */
+    public static void print(String filePath, LineResults lines) throws IOException {
+        if (lines.isEmpty()) {
+            LOG.severe("Csv printing FAILED: print() called with empty lines!");
+            return;
+        }
+        Path outputFilePath = Paths.get(filePath);
+        if (!outputFilePath.getParent().toFile().exists()) {
+            Files.createDirectories(outputFilePath.getParent());
+        }
+        try (BufferedWriter writer = Files.newBufferedWriter(outputFilePath, StandardCharsets.UTF_8)) {
+            writer.write(Line.HEADERS);
+            writer.newLine();
+            StringBuilder row = new StringBuilder();
+            for (int i = 0; i < lines.size(); i++) {
+                row.setLength(0);
+                row.append(lines.getFilePath(i)).append(',').append(lines.getLineNumber(i)).append(',')
+                        .append(lines.getEntropy(i)).append(',').append(lines.getTokensCount(i));
+                writer.append(row);
+                writer.newLine();
+            }
+        }
+    }
+
     public interface CsvLine{
         String getHeader();
         String toCsv();
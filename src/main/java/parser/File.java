@@ -1,6 +1,7 @@
 package parser;
 
-import modelling.infrastructure.NgramModelKylmImpl;
+import model.Corpus;
+import model.LanguageModel;
 import output.CsvPrinter;
 
 import java.io.Serializable;
@@ -37,8 +38,11 @@ public class File implements Serializable, CsvPrinter.CsvLine {
         return tokens;
     }
 
-    public void calculateEntropy(NgramModelKylmImpl model) {
-        if (tokens != null)
+    public void calculateEntropy(LanguageModel model) {
+        if (tokens instanceof Corpus.Sentence) {
+            Corpus.Sentence sentence = (Corpus.Sentence) tokens;
+            this.entropy = model.crossEntropies(sentence.getCorpus(), sentence.getIndex(), sentence.getIndex() + 1)[0];
+        } else if (tokens != null)
             this.entropy = model.crossEntropy(tokens);
     }
 
@@ -46,6 +50,14 @@ public class File implements Serializable, CsvPrinter.CsvLine {
         return entropy;
     }
 
+    public String getFilePath() {
+        return filePath;
+    }
+
+    public long getTokensCount() {
+        return tokensCount;
+    }
+
     @Override
     public String getHeader() {
         return HEADERS;
@@ -1,6 +1,7 @@
 package parser;
 
-import modelling.infrastructure.NgramModelKylmImpl;
+import model.Corpus;
+import model.LanguageModel;
 import output.CsvPrinter;
 
 import java.io.Serializable;
@@ -8,7 +9,7 @@ import java.util.Objects;
 import java.util.stream.StreamSupport;
 
 public class Line implements Serializable, CsvPrinter.CsvLine {
-    private static final String HEADERS = "file,line,entropy,tokens_count";
+    public static final String HEADERS = "file,line,entropy,tokens_count";
     private final String filePath;
     private final int lineNumber;
     private final transient Iterable<String> tokens;
@@ -22,6 +23,27 @@ public class Line implements Serializable, CsvPrinter.CsvLine {
         this.tokensCount = StreamSupport.stream(tokens.spliterator(), false).count();
     }
 
+    /**
+     * @param tokens a sentence of the corpus of the file.
+     */
+    public Line(String filePath, int lineNumber, Corpus.Sentence tokens) {
+        this.filePath = filePath;
+        this.lineNumber = lineNumber;
+        this.tokens = tokens;
+        this.tokensCount = tokens.getCorpus().length(tokens.getIndex());
+    }
+
+    /**
+     * a scored line, without its tokens.
+     */
+    public Line(String filePath, int lineNumber, long tokensCount, double entropy) {
+        this.filePath = filePath;
+        this.lineNumber = lineNumber;
+        this.tokens = null;
+        this.tokensCount = tokensCount;
+        this.entropy = entropy;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -39,7 +61,7 @@ public class Line implements Serializable, CsvPrinter.CsvLine {
         return tokens;
     }
 
-    public void calculateEntropy(NgramModelKylmImpl model) {
+    public void calculateEntropy(LanguageModel model) {
         if (tokens != null)
             this.entropy = model.crossEntropy(tokens);
     }
@@ -61,4 +83,12 @@ public class Line implements Serializable, CsvPrinter.CsvLine {
     public int getLineNumber() {
         return lineNumber;
     }
+
+    public String getFilePath() {
+        return filePath;
+    }
+
+    public long getTokensCount() {
+        return tokensCount;
+    }
 }
@@ -0,0 +1,159 @@
+package parser;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * Ranked lines stored by columns: file id, line number, entropy and token count in primitive arrays, file paths in
+ * a dictionary, about 20 bytes per line instead of one {@link Line}, its boxed entropy and its tokens.
+ * <p>
+ * Lines are added first, then their entropies are set, possibly concurrently for distinct lines, then they are sorted.
+ * As a list it is read-only, {@link #get(int)} creating a {@link Line} without tokens.
+ */
+public final class LineResults extends AbstractList<Line> implements RandomAccess {
+
+    private final List<String> paths = new ArrayList<>();
+    private final Map<String, Integer> pathIds = new HashMap<>();
+    private int[] fileIds;
+    private int[] lineNumbers;
+    private int[] tokenCounts;
+    private double[] entropies;
+    private int size;
+
+    public LineResults(int capacity) {
+        fileIds = new int[capacity];
+        lineNumbers = new int[capacity];
+        tokenCounts = new int[capacity];
+        entropies = new double[capacity];
+    }
+
+    /**
+     * @return the index of the added line, its entropy being NaN until it is set.
+     */
+    public int add(String filePath, int lineNumber, long tokensCount) {
+        if (size == fileIds.length) {
+            int capacity = Math.max(16, size + (size >> 1));
+            fileIds = Arrays.copyOf(fileIds, capacity);
+            lineNumbers = Arrays.copyOf(lineNumbers, capacity);
+            tokenCounts = Arrays.copyOf(tokenCounts, capacity);
+            entropies = Arrays.copyOf(entropies, capacity);
+        }
+        Integer id = pathIds.get(filePath);
+        if (id == null) {
+            id = paths.size();
+            paths.add(filePath);
+            pathIds.put(filePath, id);
+        }
+        fileIds[size] = id;
+        lineNumbers[size] = lineNumber;
+        tokenCounts[size] = (int) tokensCount;
+        entropies[size] = Double.NaN;
+        return size++;
+    }
+
+    public void setEntropy(int index, double entropy) {
+        checkIndex(index);
+        entropies[index] = entropy;
+    }
+
+    /**
+     * sorts the lines by increasing entropy, lines of equal entropies keeping their order,
+     * in the order of {@link Double#compare(double, double)} as {@code Comparator.comparing(Line::getEntropy)}.
+     */
+    public void sortByEntropy() {
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        mergeSort(order, new int[size], 0, size);
+        int[] sortedFileIds = new int[size];
+        int[] sortedLineNumbers = new int[size];
+        int[] sortedTokenCounts = new int[size];
+        double[] sortedEntropies = new double[size];
+        for (int i = 0; i < size; i++) {
+            int from = order[i];
+            sortedFileIds[i] = fileIds[from];
+            sortedLineNumbers[i] = lineNumbers[from];
+            sortedTokenCounts[i] = tokenCounts[from];
+            sortedEntropies[i] = entropies[from];
+        }
+        fileIds = sortedFileIds;
+        lineNumbers = sortedLineNumbers;
+        tokenCounts = sortedTokenCounts;
+        entropies = sortedEntropies;
+    }
+
+    private void mergeSort(int[] order, int[] buffer, int from, int to) {
+        if (to - from < 2) {
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        mergeSort(order, buffer, from, middle);
+        mergeSort(order, buffer, middle, to);
+        if (Double.compare(entropies[order[middle - 1]], entropies[order[middle]]) <= 0) {
+            return;
+        }
+        System.arraycopy(order, from, buffer, from, to - from);
+        int left = from, right = middle;
+        for (int i = from; i < to; i++) {
+            if (right >= to || (left < middle && Double.compare(entropies[buffer[left]], entropies[buffer[right]]) <= 0)) {
+                order[i] = buffer[left++];
+            } else {
+                order[i] = buffer[right++];
+            }
+        }
+    }
+
+    public String getFilePath(int index) {
+        checkIndex(index);
+        return paths.get(fileIds[index]);
+    }
+
+    public int getLineNumber(int index) {
+        checkIndex(index);
+        return lineNumbers[index];
+    }
+
+    public double getEntropy(int index) {
+        checkIndex(index);
+        return entropies[index];
+    }
+
+    public int getTokensCount(int index) {
+        checkIndex(index);
+        return tokenCounts[index];
+    }
+
+    public long tokensCount() {
+        long count = 0;
+        for (int i = 0; i < size; i++) {
+            count += tokenCounts[i];
+        }
+        return count;
+    }
+
+    /**
+     * @return the line as a {@link Line} without tokens.
+     */
+    @Override
+    public Line get(int index) {
+        checkIndex(index);
+        return new Line(paths.get(fileIds[index]), lineNumbers[index], tokenCounts[index], entropies[index]);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index " + index + ", size " + size);
+        }
+    }
+}
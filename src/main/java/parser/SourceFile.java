@@ -0,0 +1,86 @@
+package parser;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Content of a source file, read and decoded from UTF-8 once, then shared by line counting, caching and tokenization.
+ */
+public final class SourceFile {
+
+    private final byte[] bytes;
+    private final String text;
+
+    private SourceFile(byte[] bytes, String text) {
+        this.bytes = bytes;
+        this.text = text;
+    }
+
+    /**
+     * @throws java.nio.charset.CharacterCodingException if the file is not valid UTF-8, as {@link Files#lines(Path)}.
+     */
+    public static SourceFile read(Path path) throws IOException {
+        return of(Files.readAllBytes(path));
+    }
+
+    /**
+     * @param bytes content of a file, e.g. a blob of a git repository.
+     * @throws java.nio.charset.CharacterCodingException if the content is not valid UTF-8.
+     */
+    public static SourceFile of(byte[] bytes) throws IOException {
+        String text = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT)
+                .decode(ByteBuffer.wrap(bytes))
+                .toString();
+        return new SourceFile(bytes, text);
+    }
+
+    public byte[] getBytes() {
+        return bytes;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * @return a new reader over the text, for the tokenizers.
+     */
+    public Reader reader() {
+        return new StringReader(text);
+    }
+
+    /**
+     * @return the number of lines, counted as {@link java.io.BufferedReader#readLine()} does:
+     * lines end with '\n', '\r' or "\r\n", and a last line without terminator counts unless it is empty.
+     */
+    public long lineCount() {
+        long count = 0;
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c == '\n') {
+                count++;
+            } else if (c == '\r') {
+                count++;
+                if (i + 1 < length && text.charAt(i + 1) == '\n') {
+                    i++;
+                }
+            }
+        }
+        if (length > 0) {
+            char last = text.charAt(length - 1);
+            if (last != '\n' && last != '\r') {
+                count++;
+            }
+        }
+        return count;
+    }
+}
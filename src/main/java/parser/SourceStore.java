@@ -0,0 +1,25 @@
+package parser;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * Where the source files are read from: the file system, or the objects of a git commit.
+ */
+public interface SourceStore {
+
+    SourceStore FILE_SYSTEM = path -> SourceFile.read(Paths.get(path));
+
+    /**
+     * @param path absolute path of the file.
+     */
+    SourceFile read(String path) throws IOException;
+
+    /**
+     * @return an identifier of the content of the file, known without reading it and the same for every file with
+     * the same content, or null if the content is only known by reading the file.
+     */
+    default String contentId(String path) {
+        return null;
+    }
+}
@@ -0,0 +1,171 @@
+package utils;
+
+import git.GitCommit;
+import git.GitIgnore;
+import git.GitRepository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.RecursiveTask;
+import java.util.logging.Logger;
+
+/**
+ * Lists the source files of a repository in one parallel walk of its directories, then selects them by the words of
+ * their path: files whose path contains an include word, their neighbours, minus the files whose path contains an
+ * exclude word. Paths are absolute, words are matched against the whole path.
+ * <p>
+ * Files are either all the files under the repository directory, or only the files tracked by git, read from its
+ * index, so that untracked and ignored files, such as build outputs, are skipped, or the files of a commit.
+ */
+public final class RepositoryFiles {
+
+    private static final Logger LOG = LogFactory.logger(RepositoryFiles.class);
+
+    private RepositoryFiles() {
+    }
+
+    /**
+     * @param extension    of the listed files, without its dot.
+     * @param includeWords null to include every file.
+     * @param excludeWords null to exclude no file.
+     * @param neighbours   to also include the files under the directory of every included file.
+     * @return the selected files, sorted.
+     */
+    public static List<String> list(String repoPath, String extension, List<String> includeWords, List<String> excludeWords, boolean neighbours) throws IOException {
+        Path root = Paths.get(repoPath).toAbsolutePath();
+        List<String> files = walk(root, "." + extension, null);
+        Collections.sort(files);
+        return select(root.toString(), files, includeWords, excludeWords, neighbours);
+    }
+
+    /**
+     * as {@link #list(String, String, List, List, boolean)}, for the files tracked by git only. If the repository is
+     * not a git work tree or if git cannot be run, the files not ignored by the {@value GitIgnore#FILE_NAME} files
+     * are listed instead.
+     */
+    public static List<String> listTracked(String repoPath, String extension, List<String> includeWords, List<String> excludeWords, boolean neighbours) throws IOException {
+        Path root = Paths.get(repoPath).toAbsolutePath();
+        GitRepository git = GitRepository.open(root);
+        List<String> files;
+        if (git != null) {
+            files = git.trackedFiles("." + extension);
+        } else {
+            LOG.warning("Listing the files of " + root + " not ignored by its " + GitIgnore.FILE_NAME + " files instead of the files tracked by git.");
+            files = walk(root, "." + extension, GitIgnore.NONE);
+        }
+        Collections.sort(files);
+        return select(root.toString(), files, includeWords, excludeWords, neighbours);
+    }
+
+    /**
+     * as {@link #list(String, String, List, List, boolean)}, for the files of the commit under its directory.
+     */
+    public static List<String> listCommitted(GitCommit commit, String extension, List<String> includeWords, List<String> excludeWords, boolean neighbours) {
+        return select(commit.getDirectory().toString(), commit.files("." + extension), includeWords, excludeWords, neighbours);
+    }
+
+    /**
+     * @param ignore null to list every file, else the rules of the parents of the root.
+     */
+    private static List<String> walk(Path root, String suffix, GitIgnore ignore) throws IOException {
+        try {
+            return ThreadUtils.pool().invoke(new Walk(root, suffix, ignore));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * @param files absolute paths of the files under the root.
+     */
+    static List<String> select(String root, List<String> files, List<String> includeWords, List<String> excludeWords, boolean neighbours) {
+        WordMatcher include = includeWords == null ? null : new WordMatcher(includeWords);
+        WordMatcher exclude = excludeWords == null ? null : new WordMatcher(excludeWords);
+        boolean[] included = new boolean[files.size()];
+        Set<String> neighbourDirectories = new HashSet<>();
+        for (int i = 0; i < files.size(); i++) {
+            included[i] = include == null || include.matches(files.get(i));
+            if (included[i] && neighbours && include != null) {
+                neighbourDirectories.add(parent(files.get(i)));
+            }
+        }
+        List<String> res = new ArrayList<>();
+        for (int i = 0; i < files.size(); i++) {
+            String file = files.get(i);
+            if ((included[i] || underAny(file, root, neighbourDirectories)) && (exclude == null || !exclude.matches(file))) {
+                res.add(file);
+            }
+        }
+        return res;
+    }
+
+    private static boolean underAny(String file, String root, Set<String> directories) {
+        if (directories.isEmpty()) {
+            return false;
+        }
+        for (String dir = parent(file); dir != null && dir.length() >= root.length(); dir = parent(dir)) {
+            if (directories.contains(dir)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String parent(String path) {
+        int i = path.lastIndexOf(java.io.File.separatorChar);
+        return i <= 0 ? null : path.substring(0, i);
+    }
+
+    /**
+     * lists the files of a directory and forks one task per sub-directory. Links to directories are not followed.
+     */
+    private static final class Walk extends RecursiveTask<List<String>> {
+        private final Path directory;
+        private final String suffix;
+        private final GitIgnore ignore;
+
+        private Walk(Path directory, String suffix, GitIgnore ignore) {
+            this.directory = directory;
+            this.suffix = suffix;
+            this.ignore = ignore;
+        }
+
+        @Override
+        protected List<String> compute() {
+            List<String> res = new ArrayList<>();
+            List<Walk> subdirectories = new ArrayList<>();
+            try (DirectoryStream<Path> children = Files.newDirectoryStream(directory)) {
+                GitIgnore rules = ignore == null ? null : ignore.enter(directory);
+                for (Path child : children) {
+                    boolean isDirectory = Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS);
+                    if (rules != null && rules.isIgnored(child, isDirectory)) {
+                        continue;
+                    }
+                    if (isDirectory) {
+                        Walk walk = new Walk(child, suffix, rules);
+                        walk.fork();
+                        subdirectories.add(walk);
+                    } else if (child.toString().endsWith(suffix) && Files.isRegularFile(child)) {
+                        res.add(child.toString());
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            for (Walk walk : subdirectories) {
+                res.addAll(walk.join());
+            }
+            return res;
+        }
+    }
+}
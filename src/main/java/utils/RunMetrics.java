@@ -0,0 +1,230 @@
+package utils;
+
+import events.Events;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-phase metrics of a run: wall time, CPU time, allocated bytes, file, line and token counts, and the duration of
+ * the tasks run by {@link ThreadUtils}, e.g. the tokenization of each file, to list the slowest ones.
+ * <p>
+ * Phases are sequential: each one starts when the previous one is closed, and counts and tasks are attributed to the
+ * current phase. A phase is started and closed by the same thread, and only the tasks this thread submits to
+ * {@link ThreadUtils} are attributed to it. CPU time and allocated bytes are measured for the whole process,
+ * all threads included, when the JVM exposes them (-1 otherwise): they include the work of concurrent runs, if any.
+ * Each phase is also a {@link events.PhaseEvent} of the flight recorder, when the runtime has one.
+ */
+public final class RunMetrics implements ThreadUtils.TaskListener {
+
+    static final int SLOWEST_TASKS = 10;
+
+    private final List<Phase> phases = new ArrayList<>();
+    private final PriorityQueue<Task> slowest = new PriorityQueue<>(Comparator.comparingLong(t -> t.nanos));
+    private volatile Phase current;
+
+    /**
+     * starts a phase, to be closed when it is over.
+     */
+    public synchronized Phase phase(String name) {
+        Phase phase = new Phase(name);
+        phases.add(phase);
+        current = phase;
+        ThreadUtils.setSubmitterTaskListener(this);
+        return phase;
+    }
+
+    /**
+     * adds counts to the current phase, if any.
+     */
+    public void count(long files, long lines, long tokens) {
+        Phase phase = current;
+        if (phase != null) {
+            phase.files.addAndGet(files);
+            phase.lines.addAndGet(lines);
+            phase.tokens.addAndGet(tokens);
+        }
+    }
+
+    @Override
+    public void taskDone(String task, long nanos) {
+        Phase phase = current;
+        if (phase != null) {
+            phase.tasks.incrementAndGet();
+            phase.taskNanos.addAndGet(nanos);
+        }
+        synchronized (slowest) {
+            if (slowest.size() < SLOWEST_TASKS) {
+                slowest.add(new Task(task, nanos));
+            } else if (slowest.peek().nanos < nanos) {
+                slowest.poll();
+                slowest.add(new Task(task, nanos));
+            }
+        }
+    }
+
+    public synchronized List<Phase> getPhases() {
+        return new ArrayList<>(phases);
+    }
+
+    /**
+     * @return the phases, their totals and the slowest tasks, as JSON values.
+     */
+    public synchronized Map<String, Object> toJson() {
+        Map<String, Object> res = new LinkedHashMap<>();
+        List<Object> phasesJson = new ArrayList<>();
+        long wall = 0, cpu = 0, allocated = 0;
+        for (Phase p : phases) {
+            phasesJson.add(p.toJson());
+            wall += p.wallNanos;
+            cpu = cpu < 0 || p.cpuNanos < 0 ? -1 : cpu + p.cpuNanos;
+            allocated = allocated < 0 || p.allocatedBytes < 0 ? -1 : allocated + p.allocatedBytes;
+        }
+        res.put("phases", phasesJson);
+        Map<String, Object> total = new LinkedHashMap<>();
+        total.put("wall_ms", TimeUnit.NANOSECONDS.toMillis(wall));
+        total.put("cpu_ms", cpu < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(cpu));
+        total.put("allocated_bytes", allocated);
+        res.put("total", total);
+        List<Task> tasks;
+        synchronized (slowest) {
+            tasks = new ArrayList<>(slowest);
+        }
+        tasks.sort(Comparator.comparingLong((Task t) -> t.nanos).reversed());
+        List<Object> tasksJson = new ArrayList<>();
+        for (Task t : tasks) {
+            Map<String, Object> task = new LinkedHashMap<>();
+            task.put("task", t.name);
+            task.put("ms", t.nanos / 1e6);
+            tasksJson.add(task);
+        }
+        res.put("slowest_tasks", tasksJson);
+        return res;
+    }
+
+    public void write(Path path) throws IOException {
+        if (path.toAbsolutePath().getParent() != null) {
+            Files.createDirectories(path.toAbsolutePath().getParent());
+        }
+        Files.write(path, Json.write(toJson()).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static long processCpuNanos() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime();
+        }
+        return -1;
+    }
+
+    private static long allocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean) || !((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemoryEnabled()) {
+            return -1;
+        }
+        long sum = 0;
+        for (long bytes : ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            // -1 for the threads that ended meanwhile.
+            sum += Math.max(bytes, 0);
+        }
+        return sum;
+    }
+
+    public final class Phase implements AutoCloseable {
+        private final String name;
+        private final long startNanos = System.nanoTime();
+        private final long startCpu = processCpuNanos();
+        private final long startAllocated = allocatedBytes();
+        private final AtomicLong files = new AtomicLong();
+        private final AtomicLong lines = new AtomicLong();
+        private final AtomicLong tokens = new AtomicLong();
+        private final AtomicLong tasks = new AtomicLong();
+        private final AtomicLong taskNanos = new AtomicLong();
+        private long wallNanos = -1;
+        private long cpuNanos = -1;
+        private long allocatedBytes = -1;
+        private final Events.Phase event = Events.phase();
+
+        private Phase(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void close() {
+            wallNanos = System.nanoTime() - startNanos;
+            long cpu = processCpuNanos();
+            cpuNanos = cpu < 0 || startCpu < 0 ? -1 : cpu - startCpu;
+            long allocated = allocatedBytes();
+            allocatedBytes = allocated < 0 || startAllocated < 0 ? -1 : Math.max(0, allocated - startAllocated);
+            if (event.shouldCommit()) {
+                event.commit(name, files.get(), lines.get(), tokens.get());
+            }
+            ThreadUtils.setSubmitterTaskListener(null);
+            synchronized (RunMetrics.this) {
+                if (current == this) {
+                    current = null;
+                }
+            }
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getFiles() {
+            return files.get();
+        }
+
+        public long getLines() {
+            return lines.get();
+        }
+
+        public long getTokens() {
+            return tokens.get();
+        }
+
+        public long getTasks() {
+            return tasks.get();
+        }
+
+        /**
+         * @return -1 if the phase is not closed yet.
+         */
+        public long getWallNanos() {
+            return wallNanos;
+        }
+
+        private Map<String, Object> toJson() {
+            Map<String, Object> res = new LinkedHashMap<>();
+            res.put("name", name);
+            res.put("wall_ms", TimeUnit.NANOSECONDS.toMillis(wallNanos));
+            res.put("cpu_ms", cpuNanos < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(cpuNanos));
+            res.put("allocated_bytes", allocatedBytes);
+            res.put("files", files.get());
+            res.put("lines", lines.get());
+            res.put("tokens", tokens.get());
+            res.put("tokens_per_sec", wallNanos > 0 ? tokens.get() * 1e9 / wallNanos : 0d);
+            res.put("tasks", tasks.get());
+            res.put("task_ms", TimeUnit.NANOSECONDS.toMillis(taskNanos.get()));
+            return res;
+        }
+    }
+
+    private static final class Task {
+        private final String name;
+        private final long nanos;
+
+        private Task(String name, long nanos) {
+            this.name = name;
+            this.nanos = nanos;
+        }
+    }
+}
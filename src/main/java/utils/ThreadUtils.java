@@ -2,54 +2,219 @@ package utils;
 
 
 import cli.CliRequest;
+import events.Events;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.logging.Logger;
 
+/**
+ * Runs tasks on one shared, size-bounded, work-stealing pool.
+ * Submissions are throttled: a run never has more than {@link #IN_FLIGHT_PER_THREAD} tasks per thread waiting or
+ * running, so that the tasks of large repositories are not all instantiated and queued at once.
+ */
 public final class ThreadUtils {
 
     private final static Logger LOG = LogFactory.logger(CliRequest.class);
+    public static final int DEFAULT_PARALLELISM = Runtime.getRuntime().availableProcessors();
+    private static final int IN_FLIGHT_PER_THREAD = 2;
+
+    private static ForkJoinPool pool;
+    private static volatile TaskListener taskListener = (task, nanos) -> LOG.finest(String.format("%s took %d ms", task, TimeUnit.NANOSECONDS.toMillis(nanos)));
+    private static final ThreadLocal<TaskListener> submitterListener = new ThreadLocal<>();
 
     private ThreadUtils() throws IllegalAccessException {
         throw new IllegalAccessException("Utility class : static access only.");
     }
 
+    /**
+     * sets the number of threads of the shared pool, to be called between runs:
+     * the previous pool is shut down, it completes the tasks already submitted but does not accept new ones.
+     */
+    public static synchronized void setParallelism(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads should be > 0 : " + threads);
+        }
+        if (pool != null && pool.getParallelism() == threads) {
+            return;
+        }
+        if (pool != null) {
+            pool.shutdown();
+        }
+        pool = new ForkJoinPool(threads);
+    }
+
+    public static synchronized int getParallelism() {
+        return pool().getParallelism();
+    }
+
+    static synchronized ForkJoinPool pool() {
+        if (pool == null) {
+            setParallelism(DEFAULT_PARALLELISM);
+        }
+        return pool;
+    }
+
+    /**
+     * @param listener notified, from the worker thread, of the duration of every task run by this class.
+     */
+    public static void setTaskListener(TaskListener listener) {
+        taskListener = listener;
+    }
+
+    public static TaskListener getTaskListener() {
+        return taskListener;
+    }
+
+    /**
+     * @param listener notified as well of the duration of the tasks submitted by the calling thread only,
+     *                 so that concurrent runs are told apart. null to remove it.
+     */
+    public static void setSubmitterTaskListener(TaskListener listener) {
+        if (listener == null) {
+            submitterListener.remove();
+        } else {
+            submitterListener.set(listener);
+        }
+    }
+
     public static <T> List<T> runParallel(List<? extends Callable<T>> callables) throws ExecutionException, InterruptedException {
         assert callables != null && !callables.isEmpty();
         List<T> result = new ArrayList<>();
-        ExecutorService executorService = Executors.newCachedThreadPool();
-        List<Future<T>> futures = new ArrayList<>();
-        for (Callable<T> c : callables) {
-            futures.add(executorService.submit(c));
-        }
+        List<Future<T>> futures = submitAll(callables);
         int l = futures.size();
         for (Future<T> f : futures) {
             result.add(f.get());
             LOG.fine(String.format("runParallel %d / %d", result.size(), l));
         }
-        executorService.shutdown();
         return result;
     }
 
     public static <T> List<T> runMergeParallel(List<? extends Callable<List<T>>> callables) throws ExecutionException, InterruptedException {
         assert callables != null && !callables.isEmpty();
         List<T> result = new ArrayList<>();
-        ExecutorService executorService = Executors.newCachedThreadPool();
-        List<Future<List<T>>> futures = new ArrayList<>();
-        for (Callable<List<T>> c : callables) {
-            futures.add(executorService.submit(c));
-        }
+        List<Future<List<T>>> futures = submitAll(callables);
         int l = futures.size();
+        int done = 0;
         for (Future<List<T>> f : futures) {
             result.addAll(f.get());
-            LOG.fine(String.format("runParallel %d / %d", result.size(), l));
+            LOG.fine(String.format("runParallel %d / %d", ++done, l));
         }
-        executorService.shutdown();
         return result;
     }
 
-}
+    /**
+     * submits the callables one by one, blocking while the run already has its share of tasks in flight.
+     */
+    private static <T> List<Future<T>> submitAll(List<? extends Callable<T>> callables) throws InterruptedException {
+        ForkJoinPool executor = pool();
+        Semaphore inFlight = new Semaphore(executor.getParallelism() * IN_FLIGHT_PER_THREAD);
+        List<Future<T>> futures = new ArrayList<>();
+        for (Callable<T> c : callables) {
+            inFlight.acquire();
+            try {
+                futures.add(executor.submit(timed(c, inFlight::release)));
+            } catch (RejectedExecutionException e) {
+                inFlight.release();
+                throw e;
+            }
+        }
+        return futures;
+    }
+
+    private static <T> Callable<T> timed(Callable<T> c, Runnable onDone) {
+        TaskListener submitter = submitterListener.get();
+        return () -> {
+            Events.Task event = Events.task();
+            long start = System.nanoTime();
+            try {
+                return c.call();
+            } finally {
+                onDone.run();
+                if (event.shouldCommit()) {
+                    event.commit(c.toString());
+                }
+                long nanos = System.nanoTime() - start;
+                taskListener.taskDone(c.toString(), nanos);
+                if (submitter != null) {
+                    submitter.taskDone(c.toString(), nanos);
+                }
+            }
+        };
+    }
+
+    /**
+     * runs the callables and hands every result to the consumer as soon as it is available, i.e. in completion order.
+     * The consumer is called from the calling thread only, with the index of the callable that produced the result,
+     * and no more results than the run's share of tasks in flight are ever waiting for it.
+     */
+    public static <T> void runStreaming(List<? extends Callable<T>> callables, IndexedConsumer<? super T> consumer) throws ExecutionException, InterruptedException {
+        ForkJoinPool executor = pool();
+        CompletionService<T> completionService = new ExecutorCompletionService<>(executor);
+        Map<Future<T>, Integer> indexes = new HashMap<>();
+        int maxInFlight = executor.getParallelism() * IN_FLIGHT_PER_THREAD;
+        int l = callables.size();
+        int done = 0;
+        for (int i = 0; i < l; i++) {
+            if (indexes.size() == maxInFlight) {
+                consumeNext(completionService, indexes, consumer);
+                LOG.fine(String.format("runStreaming %d / %d", ++done, l));
+            }
+            indexes.put(completionService.submit(timed(callables.get(i), () -> {
+            })), i);
+        }
+        while (!indexes.isEmpty()) {
+            consumeNext(completionService, indexes, consumer);
+            LOG.fine(String.format("runStreaming %d / %d", ++done, l));
+        }
+    }
 
+    private static <T> void consumeNext(CompletionService<T> completionService, Map<Future<T>, Integer> indexes, IndexedConsumer<? super T> consumer) throws InterruptedException, ExecutionException {
+        Future<T> f = completionService.take();
+        int index = indexes.remove(f);
+        consumer.accept(index, f.get());
+    }
+
+    /**
+     * applies the action to every item, using at most the given number of threads of the shared pool.
+     * Items are handed out one by one, so slow items do not hold back a whole partition.
+     */
+    public static <T> void forEachParallel(List<T> items, Consumer<? super T> action, int threads) throws ExecutionException, InterruptedException {
+        ForkJoinPool executor = pool();
+        int workers = Math.min(Math.min(threads, executor.getParallelism()), items.size());
+        if (workers <= 1) {
+            items.forEach(action);
+            return;
+        }
+        AtomicInteger next = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int w = 0; w < workers; w++) {
+            futures.add(executor.submit(() -> {
+                for (int i = next.getAndIncrement(); i < items.size(); i = next.getAndIncrement()) {
+                    action.accept(items.get(i));
+                }
+            }));
+        }
+        for (Future<?> f : futures) {
+            f.get();
+        }
+    }
 
+    public interface IndexedConsumer<T> {
+        void accept(int index, T result);
+    }
+
+    public interface TaskListener {
+        /**
+         * @param task  the task description, i.e. its {@code toString()}.
+         * @param nanos wall time spent running the task.
+         */
+        void taskDone(String task, long nanos);
+    }
+
+}
@@ -0,0 +1,122 @@
+package utils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Tells if a text contains any of a set of words, in one scan of the text whatever the number of words:
+ * the words are compiled into an Aho-Corasick automaton, as {@code words.stream().anyMatch(text::contains)}.
+ */
+public final class WordMatcher {
+
+    // class of each char of the words, 0 for the chars that no word contains.
+    private final int[] charClasses;
+    // transitions[state * classes + class]
+    private final int[] transitions;
+    private final boolean[] accepting;
+    private final int classes;
+
+    /**
+     * @param words null words are ignored, an empty word is contained in every text.
+     */
+    public WordMatcher(List<String> words) {
+        char max = 0;
+        for (String w : words) {
+            for (int i = 0; w != null && i < w.length(); i++) {
+                max = (char) Math.max(max, w.charAt(i));
+            }
+        }
+        charClasses = new int[max + 1];
+        int classCount = 1;
+        for (String w : words) {
+            for (int i = 0; w != null && i < w.length(); i++) {
+                if (charClasses[w.charAt(i)] == 0) {
+                    charClasses[w.charAt(i)] = classCount++;
+                }
+            }
+        }
+        classes = classCount;
+
+        // trie of the words, -1 for missing children.
+        List<int[]> children = new ArrayList<>();
+        List<Boolean> ends = new ArrayList<>();
+        children.add(newNode());
+        ends.add(false);
+        for (String w : words) {
+            if (w == null) {
+                continue;
+            }
+            int state = 0;
+            for (int i = 0; i < w.length(); i++) {
+                int c = charClasses[w.charAt(i)];
+                if (children.get(state)[c] < 0) {
+                    children.get(state)[c] = children.size();
+                    children.add(newNode());
+                    ends.add(false);
+                }
+                state = children.get(state)[c];
+            }
+            ends.set(state, true);
+        }
+
+        // completes the trie into an automaton, breadth first so that failure states are completed first.
+        int states = children.size();
+        transitions = new int[states * classes];
+        accepting = new boolean[states];
+        int[] failure = new int[states];
+        Deque<Integer> queue = new ArrayDeque<>();
+        accepting[0] = ends.get(0);
+        for (int c = 0; c < classes; c++) {
+            int child = children.get(0)[c];
+            if (child < 0) {
+                transitions[c] = 0;
+            } else {
+                transitions[c] = child;
+                failure[child] = 0;
+                queue.add(child);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            accepting[state] = ends.get(state) || accepting[failure[state]];
+            for (int c = 0; c < classes; c++) {
+                int child = children.get(state)[c];
+                int next = transitions[failure[state] * classes + c];
+                if (child < 0) {
+                    transitions[state * classes + c] = next;
+                } else {
+                    transitions[state * classes + c] = child;
+                    failure[child] = next;
+                    queue.add(child);
+                }
+            }
+        }
+    }
+
+    private int[] newNode() {
+        int[] node = new int[classes];
+        Arrays.fill(node, -1);
+        return node;
+    }
+
+    /**
+     * @return true if the text contains any of the words.
+     */
+    public boolean matches(String text) {
+        if (accepting[0]) {
+            return true;
+        }
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char ch = text.charAt(i);
+            state = transitions[state * classes + (ch < charClasses.length ? charClasses[ch] : 0)];
+            if (accepting[state]) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
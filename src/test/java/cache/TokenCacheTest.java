@@ -0,0 +1,76 @@
+package cache;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+public class TokenCacheTest {
+
+    private static final Path TMP_DIR = Paths.get("src/test/resources/tmp/token_cache").toAbsolutePath();
+
+    @Before
+    public void setUp() throws IOException {
+        Files.createDirectories(TMP_DIR);
+    }
+
+    private static List<Iterable<String>> sentences() {
+        List<Iterable<String>> res = new ArrayList<>();
+        res.add(Arrays.asList("int", "i", "=", "0", ";"));
+        res.add(null);
+        res.add(Arrays.asList("\n"));
+        res.add(Collections.emptyList());
+        res.add(Arrays.asList("s", "=", "\"\u00e9\u4e2d\"", null, ";", "i"));
+        return res;
+    }
+
+    @Test
+    public void get_returns_the_put_sentences() {
+        TokenCache cache = new TokenCache(TMP_DIR, 1 << 20);
+        byte[] content = "int i = 0;".getBytes(StandardCharsets.UTF_8);
+        Assert.assertNull(cache.get(content, "tokenizer"));
+        cache.put(content, "tokenizer", sentences());
+        Assert.assertEquals(sentences(), new TokenCache(TMP_DIR, 1 << 20).get(content, "tokenizer"));
+        Assert.assertNull(cache.get(content, 1));
+        Assert.assertNull(cache.get("int i = 1;".getBytes(StandardCharsets.UTF_8), "tokenizer"));
+    }
+
+    @Test
+    public void put_evicts_the_least_recently_used_entries() throws InterruptedException, IOException {
+        byte[] first = "first".getBytes(StandardCharsets.UTF_8);
+        byte[] second = "second".getBytes(StandardCharsets.UTF_8);
+        byte[] third = "third".getBytes(StandardCharsets.UTF_8);
+        List<Iterable<String>> sentences = sentences();
+        int entrySize = TokenCache.encode(sentences).length;
+        // room for two entries, after evicting down to 90% of the bound.
+        TokenCache cache = new TokenCache(TMP_DIR, 2 * entrySize * 10 / 9 + 10);
+        cache.put(first, "tokenizer", sentences);
+        Thread.sleep(1100);
+        cache.put(second, "tokenizer", sentences);
+        Thread.sleep(1100);
+        Assert.assertNotNull(cache.get(first, "tokenizer"));
+        cache.put(third, "tokenizer", sentences);
+        Assert.assertNotNull(cache.get(first, "tokenizer"));
+        Assert.assertNull(cache.get(second, "tokenizer"));
+        Assert.assertNotNull(cache.get(third, "tokenizer"));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(TMP_DIR)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package cli;
+
+import modelling.exception.TrainingFailedException;
+import org.assertj.core.api.Assertions;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import utils.Json;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Stream;
+
+public class CliBatchTest {
+
+    private static final Path TMP_DIR = Paths.get("src/test/resources/tmp/batch").toAbsolutePath();
+    private static final String REPO = Paths.get("src/test/resources/test").toAbsolutePath().toString();
+    private static final String[] TARGETS = {
+            "src/test/resources/test/dummydir/SpringFeatureConfiguration.java",
+            "src/test/resources/test/SpringEarlyFeatureUsageService.java",
+            "src/test/resources/test/BasicFeatures.java"};
+
+    @Before
+    public void setUp() throws IOException {
+        Files.createDirectories(TMP_DIR);
+    }
+
+    private static String job(String id, String target, String out) {
+        Map<String, Object> job = new LinkedHashMap<>();
+        job.put("id", id);
+        job.put("repo", REPO);
+        job.put("engine", "INT");
+        job.put("n", 4);
+        job.put("ex_w_in_path", Collections.singletonList("example"));
+        job.put("in", Collections.singletonList(target));
+        job.put("out", out);
+        return Json.write(job);
+    }
+
+    @Test
+    public void run_trains_one_model_for_the_jobs_of_a_repository() throws IOException, InterruptedException, ExecutionException, TrainingFailedException {
+        List<String> manifest = new ArrayList<>();
+        for (int i = 0; i < TARGETS.length; i++) {
+            manifest.add(job("job" + i, TARGETS[i], TMP_DIR.resolve("job" + i + ".csv").toString()));
+        }
+        manifest.add("{\"id\": \"invalid\", \"repository\": \"" + REPO + "\"}");
+        Path manifestFile = Files.write(TMP_DIR.resolve("jobs.jsonl"), manifest, StandardCharsets.UTF_8);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        CliBatch batch = new CliBatch(manifestFile, output);
+        batch.run();
+        Assert.assertEquals(1, batch.getTrainedModels());
+
+        String[] answers = new String(output.toByteArray(), StandardCharsets.UTF_8).split("\n");
+        Assert.assertEquals(TARGETS.length + 1, answers.length);
+        for (int i = 0; i < TARGETS.length; i++) {
+            Map<?, ?> answer = (Map<?, ?>) Json.parse(answers[i]);
+            Assert.assertEquals("job" + i, answer.get("id"));
+            Assert.assertNull(answer.get("error"));
+            // same csv as the job run alone, trained without its target.
+            Path expected = TMP_DIR.resolve("expected" + i + ".csv");
+            CliRequest.parseArgs("-repo=" + REPO, "-engine=INT", "-n=4", "-ex_w_in_path=example", "-in=" + TARGETS[i], "-out=" + expected).train().rank();
+            Assertions.assertThat(TMP_DIR.resolve("job" + i + ".csv")).hasSameTextualContentAs(expected);
+        }
+        Map<?, ?> invalid = (Map<?, ?>) Json.parse(answers[TARGETS.length]);
+        Assert.assertEquals("invalid", invalid.get("id"));
+        Assert.assertNotNull(invalid.get("error"));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(TMP_DIR)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+}
@@ -6,14 +6,25 @@ import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
+import parser.Line;
+import utils.Json;
+import utils.ThreadUtils;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.stream.Collectors;
@@ -60,6 +71,282 @@ public class CliLineRequestTest {
         Assertions.assertThat(expectedFile).hasSameTextualContentAs(outputFile);
     }
 
+    @Test
+    public void parseArgs_leaves_the_shared_pool_unchanged() {
+        int parallelism = ThreadUtils.getParallelism();
+        CliRequest req = CliRequest.parseArgs(
+                "-repo=" + Paths.get("src/test/resources/test").toAbsolutePath(),
+                "-threads=" + (parallelism + 1),
+                "-in=src/test/resources/test/dummydir/SpringFeatureConfiguration.java");
+        Assert.assertEquals(parallelism + 1, req.getThreads());
+        Assert.assertEquals(parallelism, ThreadUtils.getParallelism());
+    }
+
+    @Test
+    public void rank_subtract_targets_same_output_as_retraining() throws IOException, ExecutionException, InterruptedException, TrainingFailedException {
+        String repoPathStr = "src/test/resources/test";
+        Path retrainedOutput = TMP_DIR.resolve("retrained.csv").toAbsolutePath();
+        Path subtractedOutput = TMP_DIR.resolve("subtracted.csv").toAbsolutePath();
+        String[] args = {
+                "-repo=" + Paths.get(repoPathStr).toAbsolutePath(),
+                "-engine=INT",
+                "-n=4",
+                "-ex_w_in_path=example",
+                "-in=src/test/resources/test/dummydir/SpringEarlyFeatureUsageTest.java",
+                "-in=src/test/resources/test/dummydir/SpringFeatureConfiguration.java"};
+        CliRequest.parseArgs(with(args, "-out=" + retrainedOutput)).train().rank();
+        CliRequest.parseArgs(with(args, "-out=" + subtractedOutput, "-subtract_targets")).train().rank();
+        Assertions.assertThat(retrainedOutput).hasSameTextualContentAs(subtractedOutput);
+    }
+
+    @Test
+    public void rank_repo_scores_each_file_as_a_model_trained_on_the_others() throws IOException, ExecutionException, InterruptedException, TrainingFailedException {
+        String repo = "-repo=" + Paths.get("src/test/resources/test").toAbsolutePath();
+        String target = "src/test/resources/test/dummydir/SpringFeatureConfiguration.java";
+        Path output = TMP_DIR.resolve("rank_repo.csv").toAbsolutePath();
+        List<Line> repositoryLines = (List<Line>) CliRequest.parseArgs(repo, "-engine=INT", "-ex_w_in_path=example", "-rank_repo", "-out=" + output).train().rank();
+        List<Line> targetLines = (List<Line>) CliRequest.parseArgs(repo, "-engine=INT", "-ex_w_in_path=example", "-in=" + target).train().rank();
+        Map<Line, Double> repositoryEntropies = new HashMap<>();
+        repositoryLines.forEach(l -> repositoryEntropies.put(l, l.getEntropy()));
+        Assert.assertFalse(targetLines.isEmpty());
+        Assert.assertTrue(repositoryLines.size() > targetLines.size());
+        for (Line l : targetLines) {
+            Assert.assertEquals(l.getEntropy(), repositoryEntropies.get(l));
+        }
+        try (Stream<String> lines = Files.lines(output)) {
+            Assert.assertEquals(repositoryLines.size() + 1, lines.count());
+        }
+    }
+
+    @Test
+    public void rank_query_training_same_output_as_full_training() throws IOException, ExecutionException, InterruptedException, TrainingFailedException {
+        String repoPathStr = "src/test/resources/test";
+        Path fullOutput = TMP_DIR.resolve("full_training.csv").toAbsolutePath();
+        Path queryOutput = TMP_DIR.resolve("query_training.csv").toAbsolutePath();
+        String[] args = {
+                "-repo=" + Paths.get(repoPathStr).toAbsolutePath(),
+                "-engine=INT",
+                "-n=4",
+                "-ex_w_in_path=example",
+                "-in=src/test/resources/test/dummydir/SpringEarlyFeatureUsageTest.java",
+                "-in=src/test/resources/test/dummydir/SpringFeatureConfiguration.java"};
+        CliRequest.parseArgs(with(args, "-out=" + fullOutput)).train().rank();
+        CliRequest.parseArgs(with(args, "-out=" + queryOutput, "-query_training")).train().rank();
+        Assertions.assertThat(fullOutput).hasSameTextualContentAs(queryOutput);
+    }
+
+    @Test
+    public void rank_with_warm_token_cache_same_output() throws IOException, ExecutionException, InterruptedException, TrainingFailedException {
+        Path cache = TMP_DIR.resolve("token_cache");
+        Path coldOutput = TMP_DIR.resolve("cold.csv").toAbsolutePath();
+        Path warmOutput = TMP_DIR.resolve("warm.csv").toAbsolutePath();
+        String[] args = {
+                "-repo=" + Paths.get("src/test/resources/test").toAbsolutePath(),
+                "-engine=INT",
+                "-ex_w_in_path=example",
+                "-token_cache=" + cache,
+                "-in=src/test/resources/test/dummydir/SpringFeatureConfiguration.java"};
+        CliRequest.parseArgs(with(args, "-out=" + coldOutput)).train().rank();
+        Assert.assertTrue(Files.isDirectory(cache));
+        CliRequest.parseArgs(with(args, "-out=" + warmOutput)).train().rank();
+        Assertions.assertThat(coldOutput).hasSameTextualContentAs(warmOutput);
+    }
+
+    @Test
+    public void rank_at_commit_same_output_as_ranking_its_checkout() throws IOException, ExecutionException, InterruptedException, TrainingFailedException {
+        Path sources = Paths.get("src/test/resources/test").toAbsolutePath();
+        Path checkout = TMP_DIR.resolve("checkout");
+        Path repo = TMP_DIR.resolve("repo");
+        copy(sources, checkout);
+        copy(sources, repo);
+        git(repo, "init", "-q");
+        git(repo, "add", ".");
+        git(repo, "-c", "user.name=test", "-c", "user.email=test@test", "commit", "-q", "-m", "first");
+        // the next commit and the work tree change the target and the training files.
+        Path target = repo.resolve("dummydir/SpringFeatureConfiguration.java");
+        Files.write(target, Arrays.asList("class SpringFeatureConfiguration {", "}"));
+        Files.delete(repo.resolve("BasicFeatures.java"));
+        git(repo, "-c", "user.name=test", "-c", "user.email=test@test", "commit", "-q", "-a", "-m", "second");
+        Files.delete(target);
+        Files.write(repo.resolve("dummydir/Untracked.java"), Arrays.asList("class Untracked {", "}"));
+
+        Path checkoutOutput = TMP_DIR.resolve("checkout.csv").toAbsolutePath();
+        Path commitOutput = TMP_DIR.resolve("commit.csv").toAbsolutePath();
+        Path cachedOutput = TMP_DIR.resolve("commit_cached.csv").toAbsolutePath();
+        String[] args = {"-engine=INT", "-ex_w_in_path=example", "-token_cache=" + TMP_DIR.resolve("token_cache"), "-in=dummydir/SpringFeatureConfiguration.java"};
+        CliRequest.parseArgs(with(args, "-repo=" + checkout, "-out=" + checkoutOutput)).train().rank();
+        try (CliRequest<?, ?> atCommit = CliRequest.parseArgs(with(args, "-repo=" + repo, "-commit=HEAD~1", "-out=" + commitOutput))) {
+            Assert.assertEquals(4, atCommit.getTrainingFiles().size());
+            Assert.assertTrue(atCommit.getTrainingFiles().contains(repo.resolve("BasicFeatures.java").toString()));
+            atCommit.train().rank();
+        }
+        rank(with(args, "-repo=" + repo, "-commit=HEAD~1", "-out=" + cachedOutput));
+        Assertions.assertThat(checkoutOutput).hasSameTextualContentAs(commitOutput);
+        Assertions.assertThat(checkoutOutput).hasSameTextualContentAs(cachedOutput);
+        try {
+            // the target has been rewritten at HEAD, not deleted: only HEAD~2 does not exist.
+            CliRequest.parseArgs(with(args, "-repo=" + repo, "-commit=HEAD~2"));
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            Assert.assertTrue(e.getMessage().startsWith("Unknown commit"));
+        }
+    }
+
+    @Test
+    public void update_from_commit_same_output_as_retraining() throws IOException, ExecutionException, InterruptedException, TrainingFailedException {
+        Path repo = TMP_DIR.resolve("repo");
+        copy(Paths.get("src/test/resources/test").toAbsolutePath(), repo);
+        git(repo, "init", "-q");
+        git(repo, "add", ".");
+        git(repo, "-c", "user.name=test", "-c", "user.email=test@test", "commit", "-q", "-m", "first");
+        Files.write(repo.resolve("BasicFeatures.java"), Arrays.asList("class BasicFeatures {", "    int changed = 1;", "}"), StandardOpenOption.APPEND);
+        Files.delete(repo.resolve("SpringEarlyFeatureUsageService.java"));
+        Files.write(repo.resolve("dummydir/Added.java"), Arrays.asList("class Added {", "    int added = 2;", "}"));
+        git(repo, "add", "-A");
+        git(repo, "-c", "user.name=test", "-c", "user.email=test@test", "commit", "-q", "-m", "second");
+
+        Path firstModel = TMP_DIR.resolve("first.bin");
+        Path updatedModel = TMP_DIR.resolve("updated.bin");
+        Path retrainedOutput = TMP_DIR.resolve("retrained.csv").toAbsolutePath();
+        Path updatedOutput = TMP_DIR.resolve("updated.csv").toAbsolutePath();
+        Path reloadedOutput = TMP_DIR.resolve("reloaded.csv").toAbsolutePath();
+        String[] args = {"-repo=" + repo, "-ex_w_in_path=example", "-subtract_targets", "-in=dummydir/SpringFeatureConfiguration.java"};
+        try (CliRequest<?, ?> first = CliRequest.parseArgs(with(args, "-engine=INT", "-commit=HEAD~1", "-model_out=" + firstModel))) {
+            first.train();
+        }
+        rank(with(args, "-engine=INT", "-commit=HEAD", "-out=" + retrainedOutput));
+        rank(with(args, "-model_in=" + firstModel, "-update_from=HEAD~1", "-commit=HEAD", "-model_out=" + updatedModel, "-out=" + updatedOutput));
+        rank(with(args, "-model_in=" + updatedModel, "-commit=HEAD", "-out=" + reloadedOutput));
+        Assertions.assertThat(retrainedOutput).hasSameTextualContentAs(updatedOutput);
+        Assertions.assertThat(retrainedOutput).hasSameTextualContentAs(reloadedOutput);
+        try {
+            CliRequest.parseArgs(with(args, "-model_in=" + firstModel, "-update_from=HEAD~1"));
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            Assert.assertTrue(e.getMessage().startsWith(CliArgPrefix.UPDATE_FROM.argPrefix));
+        }
+    }
+
+    @Test
+    public void rank_diff_scores_the_changed_lines_as_ranking_the_whole_files() throws IOException, ExecutionException, InterruptedException, TrainingFailedException {
+        Path repo = TMP_DIR.resolve("repo");
+        copy(Paths.get("src/test/resources/test").toAbsolutePath(), repo);
+        git(repo, "init", "-q");
+        git(repo, "add", ".");
+        git(repo, "-c", "user.name=test", "-c", "user.email=test@test", "commit", "-q", "-m", "first");
+        Path changed = repo.resolve("dummydir/SpringFeatureConfiguration.java");
+        List<String> lines = new ArrayList<>(Files.readAllLines(changed));
+        lines.add(3, "    private static final int ADDED = 42;");
+        lines.set(lines.size() - 3, lines.get(lines.size() - 3) + " // changed");
+        Files.write(changed, lines);
+        Files.write(repo.resolve("dummydir2/Added.java"), Arrays.asList("class Added {", "", "    int added = 2;", "}"));
+        git(repo, "add", "-A");
+        git(repo, "-c", "user.name=test", "-c", "user.email=test@test", "commit", "-q", "-m", "second");
+
+        Path patch = TMP_DIR.resolve("second.patch");
+        Assert.assertEquals(0, new ProcessBuilder("git", "-C", repo.toString(), "diff", "HEAD~1", "HEAD").redirectOutput(patch.toFile()).start().waitFor());
+        Path diffOutput = TMP_DIR.resolve("diff.csv").toAbsolutePath();
+        Path patchOutput = TMP_DIR.resolve("patch.csv").toAbsolutePath();
+        String[] args = {"-repo=" + repo, "-engine=INT", "-ex_w_in_path=example"};
+        List<Line> diffLines = rank(with(args, "-diff=HEAD~1..HEAD", "-out=" + diffOutput));
+        rank(with(args, "-patch=" + patch, "-commit=HEAD", "-out=" + patchOutput));
+        List<Line> fileLines = rank(with(args, "-commit=HEAD", "-in=dummydir/SpringFeatureConfiguration.java", "-in=dummydir2/Added.java"));
+
+        Map<Line, Double> fileEntropies = new HashMap<>();
+        fileLines.forEach(l -> fileEntropies.put(l, l.getEntropy()));
+        Set<String> ranked = new HashSet<>();
+        for (Line l : diffLines) {
+            Assert.assertEquals(fileEntropies.get(l), l.getEntropy());
+            ranked.add(l.getFilePath() + ":" + l.getLineNumber());
+        }
+        Set<String> expected = new HashSet<>(Arrays.asList("/dummydir/SpringFeatureConfiguration.java:4",
+                "/dummydir/SpringFeatureConfiguration.java:" + (lines.size() - 2),
+                "/dummydir2/Added.java:1", "/dummydir2/Added.java:3", "/dummydir2/Added.java:4"));
+        Assert.assertEquals(expected, ranked);
+        Assertions.assertThat(diffOutput).hasSameTextualContentAs(patchOutput);
+    }
+
+    @Test
+    public void rank_diff_without_java_change_writes_no_line() throws IOException, ExecutionException, InterruptedException, TrainingFailedException {
+        Path repo = TMP_DIR.resolve("repo");
+        copy(Paths.get("src/test/resources/test").toAbsolutePath(), repo);
+        git(repo, "init", "-q");
+        git(repo, "add", ".");
+        git(repo, "-c", "user.name=test", "-c", "user.email=test@test", "commit", "-q", "-m", "first");
+        Files.write(repo.resolve("notes.txt"), Collections.singletonList("not java"));
+        git(repo, "add", "-A");
+        git(repo, "-c", "user.name=test", "-c", "user.email=test@test", "commit", "-q", "-m", "second");
+
+        Path output = TMP_DIR.resolve("diff.csv").toAbsolutePath();
+        List<Line> ranked = rank("-repo=" + repo, "-engine=INT", "-ex_w_in_path=example", "-diff=HEAD~1..HEAD", "-out=" + output);
+        Assert.assertTrue(ranked.isEmpty());
+        Assert.assertEquals(Collections.singletonList(Line.HEADERS), Files.readAllLines(output));
+    }
+
+    @Test
+    public void rank_writes_the_metrics_of_every_phase() throws IOException, ExecutionException, InterruptedException, TrainingFailedException {
+        Path metricsFile = TMP_DIR.resolve("metrics.json");
+        CliRequest<?, ?> req = CliRequest.parseArgs(
+                "-repo=" + Paths.get("src/test/resources/test").toAbsolutePath(),
+                "-engine=INT",
+                "-ex_w_in_path=example",
+                "-out=" + TMP_DIR.resolve("metrics.csv").toAbsolutePath(),
+                "-metrics=" + metricsFile,
+                "-in=src/test/resources/test/dummydir/SpringFeatureConfiguration.java");
+        List<?> ranked = (List<?>) req.train().rank();
+
+        Map<?, ?> metrics = (Map<?, ?>) Json.parse(new String(Files.readAllBytes(metricsFile), StandardCharsets.UTF_8));
+        List<?> phases = (List<?>) metrics.get("phases");
+        Assert.assertEquals(Arrays.asList("discovery", "training", "target_tokenization", "scoring", "output"),
+                phases.stream().map(p -> ((Map<?, ?>) p).get("name")).collect(Collectors.toList()));
+        Map<?, ?> discovery = (Map<?, ?>) phases.get(0);
+        Map<?, ?> training = (Map<?, ?>) phases.get(1);
+        Map<?, ?> scoring = (Map<?, ?>) phases.get(3);
+        Assert.assertEquals((long) req.getTrainingFiles().size(), discovery.get("files"));
+        Assert.assertEquals(discovery.get("files"), training.get("files"));
+        Assert.assertEquals(training.get("files"), training.get("tasks"));
+        Assert.assertTrue((Long) training.get("tokens") > 0);
+        Assert.assertEquals((long) ranked.size(), scoring.get("lines"));
+        Assert.assertFalse(((List<?>) metrics.get("slowest_tasks")).isEmpty());
+    }
+
+    /**
+     * trains and ranks a request, then stops its git readers.
+     */
+    private static List<Line> rank(String... args) throws IOException, ExecutionException, InterruptedException, TrainingFailedException {
+        try (CliRequest<?, ?> req = CliRequest.parseArgs(args)) {
+            return (List<Line>) req.train().rank();
+        }
+    }
+
+    private static void copy(Path from, Path to) throws IOException {
+        try (Stream<Path> files = Files.walk(from)) {
+            for (Path f : (Iterable<Path>) files::iterator) {
+                Path copy = to.resolve(from.relativize(f).toString());
+                if (Files.isDirectory(f)) {
+                    Files.createDirectories(copy);
+                } else {
+                    Files.copy(f, copy);
+                }
+            }
+        }
+    }
+
+    private static void git(Path repo, String... args) throws IOException, InterruptedException {
+        String[] command = new String[args.length + 3];
+        command[0] = "git";
+        command[1] = "-C";
+        command[2] = repo.toString();
+        System.arraycopy(args, 0, command, 3, args.length);
+        Assert.assertEquals(0, new ProcessBuilder(command).inheritIO().start().waitFor());
+    }
+
+    private static String[] with(String[] args, String... extra) {
+        String[] res = Arrays.copyOf(args, args.length + extra.length);
+        System.arraycopy(extra, 0, res, args.length, extra.length);
+        return res;
+    }
+
     // fixme: tests run fine when each one is run separately.
     //@Test
     public void parseArgs_JP_tokenizer() throws IOException, ExecutionException, InterruptedException, TrainingFailedException {
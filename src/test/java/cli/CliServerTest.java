@@ -0,0 +1,150 @@
+package cli;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import parser.Line;
+import utils.Json;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+public class CliServerTest {
+
+    private static final Path TMP_DIR = Paths.get("src/test/resources/tmp/server").toAbsolutePath();
+    private static final String REPO = Paths.get("src/test/resources/test").toAbsolutePath().toString();
+    private static final Path TARGET = Paths.get("src/test/resources/test/dummydir/SpringFeatureConfiguration.java");
+
+    private CliServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        Files.createDirectories(TMP_DIR);
+        server = new CliServer(0, Long.MAX_VALUE, 4).start();
+    }
+
+    private Map<String, Object> arguments() {
+        Map<String, Object> arguments = new LinkedHashMap<>();
+        arguments.put("repo", REPO);
+        arguments.put("engine", "INT");
+        arguments.put("n", 4);
+        arguments.put("ex_w_in_path", Collections.singletonList("example"));
+        return arguments;
+    }
+
+    @Test
+    public void rank_sources_as_files_outside_of_the_repository() throws Exception {
+        // the same file, given by path outside of the repository or by text.
+        Path copy = Files.copy(TARGET, TMP_DIR.resolve(TARGET.getFileName()));
+        Map<String, Object> byPath = arguments();
+        byPath.put("in", copy.toString());
+        Map<String, Object> byText = arguments();
+        byText.put("sources", Collections.singletonMap("Spring.java", new String(Files.readAllBytes(TARGET), StandardCharsets.UTF_8)));
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        Future<Map<?, ?>> pathAnswer = executor.submit(() -> post("/rank", Json.write(byPath), 200));
+        Future<Map<?, ?>> textAnswer = executor.submit(() -> post("/rank", Json.write(byText), 200));
+        List<?> pathResults = (List<?>) pathAnswer.get().get("results");
+        List<?> textResults = (List<?>) textAnswer.get().get("results");
+        executor.shutdown();
+
+        Assert.assertFalse(pathResults.isEmpty());
+        Assert.assertEquals(pathResults.size(), textResults.size());
+        for (int i = 0; i < pathResults.size(); i++) {
+            Map<?, ?> p = (Map<?, ?>) pathResults.get(i);
+            Map<?, ?> t = (Map<?, ?>) textResults.get(i);
+            Assert.assertEquals("Spring.java", t.get("file"));
+            Assert.assertEquals(p.get("line"), t.get("line"));
+            Assert.assertEquals(p.get("entropy"), t.get("entropy"));
+        }
+        // both requests are scored by the model trained on the whole repository.
+        Assert.assertEquals(1, server.getModels().size());
+        Map<?, ?> models = get("/models");
+        Assert.assertEquals(1L, models.get("models"));
+        Assert.assertTrue((Long) models.get("bytes") > 0);
+    }
+
+    @Test
+    public void rank_targets_of_a_repository_with_one_model() throws Exception {
+        List<String> targets = Arrays.asList(TARGET.toAbsolutePath().toString(), REPO + "/BasicFeatures.java");
+        for (String target : targets) {
+            Map<String, Object> arguments = arguments();
+            arguments.put("in", target);
+            List<?> results = (List<?>) post("/rank", Json.write(arguments), 200).get("results");
+
+            // each target is still scored as by a model trained without it.
+            List<?> expected = (List<?>) CliRequest.parseArgs("-repo=" + REPO, "-engine=INT", "-n=4", "-ex_w_in_path=example", "-in=" + target).train().rank();
+            Assert.assertFalse(results.isEmpty());
+            Assert.assertEquals(expected.size(), results.size());
+            for (int i = 0; i < expected.size(); i++) {
+                Assert.assertEquals(((Line) expected.get(i)).getEntropy(), ((Map<?, ?>) results.get(i)).get("entropy"));
+            }
+        }
+        // the registry trains on a miss only: one entry is one training.
+        Assert.assertEquals(1, server.getModels().size());
+        Assert.assertEquals(1L, get("/models").get("models"));
+    }
+
+    @Test
+    public void rank_answers_400_to_invalid_requests() throws IOException {
+        Map<String, Object> arguments = arguments();
+        arguments.put("repository", REPO);
+        Assert.assertNotNull(post("/rank", Json.write(arguments), 400).get("error"));
+        Assert.assertNotNull(post("/rank", "{not json", 400).get("error"));
+        for (String name : Arrays.asList("", "/")) {
+            Map<String, Object> unnamed = arguments();
+            unnamed.put("sources", Collections.singletonMap(name, "class A {}"));
+            Assert.assertNotNull(post("/rank", Json.write(unnamed), 400).get("error"));
+        }
+    }
+
+    private Map<?, ?> post(String path, String body, int expectedStatus) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + server.getPort() + path).openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        try (OutputStream os = connection.getOutputStream()) {
+            os.write(body.getBytes(StandardCharsets.UTF_8));
+        }
+        return read(connection, expectedStatus);
+    }
+
+    private Map<?, ?> get(String path) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + server.getPort() + path).openConnection();
+        return read(connection, 200);
+    }
+
+    private static Map<?, ?> read(HttpURLConnection connection, int expectedStatus) throws IOException {
+        Assert.assertEquals(expectedStatus, connection.getResponseCode());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream in = expectedStatus < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        }
+        return (Map<?, ?>) Json.parse(new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.stop();
+        try (Stream<Path> paths = Files.walk(TMP_DIR)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package cli;
+
+import org.junit.Assert;
+import org.junit.Test;
+import parser.Line;
+import utils.Json;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class CliWorkerTest {
+
+    private static final String REPO = Paths.get("src/test/resources/test").toAbsolutePath().toString();
+    private static final String TARGET = "src/test/resources/test/dummydir/SpringFeatureConfiguration.java";
+
+    @Test
+    public void run_answers_every_request_and_shares_models() throws Exception {
+        Map<String, Object> arguments = new LinkedHashMap<>();
+        arguments.put("id", 1);
+        arguments.put("repo", REPO);
+        arguments.put("engine", "INT");
+        arguments.put("n", 4);
+        arguments.put("ex_w_in_path", Collections.singletonList("example"));
+        arguments.put("in", Collections.singletonList(TARGET));
+        String request = Json.write(arguments);
+        String input = request + "\n{not json\n" + request.replace("\"id\":1", "\"id\":\"second\"") + "\n";
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        CliWorker worker = new CliWorker(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), output);
+        worker.run();
+        String[] answers = new String(output.toByteArray(), StandardCharsets.UTF_8).split("\n");
+        Assert.assertEquals(3, answers.length);
+
+        Map<?, ?> first = (Map<?, ?>) Json.parse(answers[0]);
+        Map<?, ?> error = (Map<?, ?>) Json.parse(answers[1]);
+        Map<?, ?> second = (Map<?, ?>) Json.parse(answers[2]);
+        Assert.assertEquals(1L, first.get("id"));
+        Assert.assertNotNull(error.get("error"));
+        Assert.assertEquals("second", second.get("id"));
+        Assert.assertEquals(first.get("results"), second.get("results"));
+        Assert.assertEquals(1, worker.getModels().size());
+
+        List<Line> expected = (List<Line>) CliRequest.parseArgs("-repo=" + REPO, "-engine=INT", "-n=4", "-ex_w_in_path=example", "-in=" + TARGET).train().rank();
+        List<?> results = (List<?>) first.get("results");
+        Assert.assertEquals(expected.size(), results.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Map<?, ?> result = (Map<?, ?>) results.get(i);
+            Assert.assertEquals((long) expected.get(i).getLineNumber(), result.get("line"));
+            Assert.assertEquals(expected.get(i).getEntropy(), result.get("entropy"));
+        }
+    }
+
+    @Test
+    public void run_shares_the_model_of_the_repository_between_targets() throws Exception {
+        String other = "src/test/resources/test/BasicFeatures.java";
+        StringBuilder input = new StringBuilder();
+        for (String target : Arrays.asList(TARGET, other)) {
+            Map<String, Object> arguments = new LinkedHashMap<>();
+            arguments.put("repo", REPO);
+            arguments.put("engine", "INT");
+            arguments.put("ex_w_in_path", Collections.singletonList("example"));
+            arguments.put("in", Collections.singletonList(target));
+            input.append(Json.write(arguments)).append('\n');
+        }
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        CliWorker worker = new CliWorker(new ByteArrayInputStream(input.toString().getBytes(StandardCharsets.UTF_8)), output);
+        worker.run();
+        String[] answers = new String(output.toByteArray(), StandardCharsets.UTF_8).split("\n");
+        Assert.assertEquals(2, answers.length);
+        // the registry trains on a miss only: one entry is one training.
+        Assert.assertEquals(1, worker.getModels().size());
+
+        // each target is still scored as by a model trained without it.
+        List<Line> expected = (List<Line>) CliRequest.parseArgs("-repo=" + REPO, "-engine=INT", "-ex_w_in_path=example", "-in=" + other).train().rank();
+        List<?> results = (List<?>) ((Map<?, ?>) Json.parse(answers[1])).get("results");
+        Assert.assertEquals(expected.size(), results.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Assert.assertEquals(expected.get(i).getEntropy(), ((Map<?, ?>) results.get(i)).get("entropy"));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void toArgs_rejects_unknown_arguments() throws IOException {
+        RankingService.toArgs((Map<?, ?>) Json.parse("{\"repository\": \"x\"}"));
+    }
+}
@@ -0,0 +1,77 @@
+package cli.line;
+
+import cli.CliRequest;
+import modelling.exception.TrainingFailedException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import utils.ThreadUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.concurrent.ExecutionException;
+
+public class CliLineRequestParallelTest {
+
+    private static final Path TMP_DIR = Paths.get("src/test/resources/tmp/parallel").toAbsolutePath();
+    // the 127 target lines are scored in about 60 batches.
+    private static final int SCORING_BATCH = 2;
+
+    @Before
+    public void setUp() throws IOException {
+        // with one thread in the pool, every batch is scored by the calling thread.
+        Assume.assumeTrue(ThreadUtils.getParallelism() > 1);
+        Files.createDirectories(TMP_DIR);
+    }
+
+    @Test
+    public void rank_parallel_same_output_as_sequential() throws IOException, ExecutionException, InterruptedException, TrainingFailedException {
+        assertParallelRankIsDeterministic("KYLM");
+    }
+
+    @Test
+    public void rank_parallel_same_output_as_sequential_int_engine() throws IOException, ExecutionException, InterruptedException, TrainingFailedException {
+        assertParallelRankIsDeterministic("INT");
+    }
+
+    private void assertParallelRankIsDeterministic(String engine) throws IOException, ExecutionException, InterruptedException, TrainingFailedException {
+        String sequentialOutput = rankWithThreads(engine, 1);
+        for (int run = 0; run < 10; run++) {
+            Assert.assertEquals(sequentialOutput, rankWithThreads(engine, 2 + run * 3));
+        }
+    }
+
+    private String rankWithThreads(String engine, int threads) throws IOException, ExecutionException, InterruptedException, TrainingFailedException {
+        Path outputFile = TMP_DIR.resolve("rank_" + engine + "_" + threads + "_threads.csv");
+        CliLineRequest request = (CliLineRequest) CliRequest.parseArgs(
+                "-repo=" + Paths.get("src/test/resources/test").toAbsolutePath(),
+                "-engine=" + engine,
+                "-threads=" + threads,
+                "-n=4",
+                "-out=" + outputFile,
+                "-ex_w_in_path=",
+                "-in=src/test/resources/test/dummydir/SpringEarlyFeatureUsageTest.java",
+                "-in=src/test/resources/test/dummydir/SpringFeatureConfiguration.java",
+                "-in=src/test/resources/test/BasicFeatures.java",
+                "-in=src/test/resources/test/SpringEarlyFeatureUsageService.java");
+        request.scoringBatch = SCORING_BATCH;
+        request.train().rank();
+        return new String(Files.readAllBytes(outputFile));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (Files.exists(TMP_DIR)) {
+            Files.walk(TMP_DIR)
+                    .sorted(Comparator.reverseOrder())
+                    .map(Path::toFile)
+                    .forEach(File::delete);
+        }
+    }
+}
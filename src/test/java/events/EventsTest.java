@@ -0,0 +1,94 @@
+package events;
+
+import cli.CliRequest;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class EventsTest {
+
+    private static final Path TMP_DIR = Paths.get("src/test/resources/tmp").toAbsolutePath();
+    private static final String TARGET = "src/test/resources/test/dummydir/SpringFeatureConfiguration.java";
+
+    @Before
+    public void setUp() throws Exception {
+        Files.createDirectories(TMP_DIR);
+    }
+
+    @Test
+    public void events_are_available_on_a_runtime_with_the_flight_recorder() {
+        // the recording of the other test needs jdk.jfr as well.
+        Assert.assertTrue(Events.isAvailable());
+        Assert.assertTrue(Events.task() instanceof TaskEvent);
+    }
+
+    @Test
+    public void a_recorded_run_has_the_events_of_its_phases_tasks_tokenizations_and_scorings() throws Exception {
+        Path recordingFile = TMP_DIR.resolve("run.jfr");
+        List<RecordedEvent> events;
+        try (Recording recording = new Recording()) {
+            for (String name : Arrays.asList(PhaseEvent.NAME, TaskEvent.NAME, TokenizeEvent.NAME, ScoringEvent.NAME)) {
+                recording.enable(name).withoutThreshold();
+            }
+            recording.start();
+            CliRequest.parseArgs(
+                    "-repo=" + Paths.get("src/test/resources/test").toAbsolutePath(),
+                    "-engine=INT",
+                    "-ex_w_in_path=example",
+                    "-in=" + TARGET).train().rank();
+            recording.stop();
+            recording.dump(recordingFile);
+        }
+        events = RecordingFile.readAllEvents(recordingFile);
+
+        List<String> phases = events.stream().filter(e -> is(e, PhaseEvent.NAME))
+                .map(e -> e.getString("phase")).collect(Collectors.toList());
+        Assert.assertEquals(Arrays.asList("discovery", "training", "target_tokenization", "scoring"), phases);
+        RecordedEvent training = events.stream().filter(e -> is(e, PhaseEvent.NAME) && "training".equals(e.getString("phase"))).findFirst().get();
+        Assert.assertTrue(training.getLong("tokens") > 0);
+        Assert.assertTrue(training.getDuration().toNanos() > 0);
+
+        Assert.assertTrue(events.stream().anyMatch(e -> is(e, TaskEvent.NAME) && e.getString("task").contains("SpringFeatureConfiguration.java")));
+
+        List<RecordedEvent> tokenizations = events.stream().filter(e -> is(e, TokenizeEvent.NAME)).collect(Collectors.toList());
+        Assert.assertFalse(tokenizations.isEmpty());
+        for (RecordedEvent e : tokenizations) {
+            Assert.assertTrue(e.getString("file").endsWith(".java"));
+            Assert.assertTrue(e.getLong("tokens") > 0);
+            Assert.assertNotNull(e.getString("tokenizer"));
+        }
+
+        List<RecordedEvent> scorings = events.stream().filter(e -> is(e, ScoringEvent.NAME)).collect(Collectors.toList());
+        Assert.assertFalse(scorings.isEmpty());
+        for (RecordedEvent e : scorings) {
+            Assert.assertTrue(e.getString("file").endsWith("SpringFeatureConfiguration.java"));
+            Assert.assertTrue(e.getLong("lines") > 0);
+            Assert.assertTrue(e.getLong("tokens") > 0);
+        }
+    }
+
+    private static boolean is(RecordedEvent event, String name) {
+        return name.equals(event.getEventType().getName());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Files.walk(TMP_DIR)
+                .sorted(Comparator.reverseOrder())
+                .map(Path::toFile)
+                .forEach(File::delete);
+    }
+}
@@ -0,0 +1,109 @@
+package git;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class GitCommitTest {
+
+    private static final Path TMP_DIR = Paths.get("src/test/resources/tmp/git_commit").toAbsolutePath();
+
+    @Before
+    public void setUp() throws IOException {
+        Files.createDirectories(TMP_DIR);
+    }
+
+    @Test
+    public void read_returns_the_blobs_of_the_commit_in_parallel() throws Exception {
+        Path repo = TMP_DIR.resolve("repo");
+        List<String> files = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            files.add("src/p" + i % 3 + "/C" + i + ".java");
+            write(repo.resolve(files.get(i)), content(i, "first"));
+        }
+        write(repo.resolve("src/notes.txt"), "notes");
+        git(repo, "init", "-q");
+        git(repo, "add", ".");
+        git(repo, "-c", "user.name=test", "-c", "user.email=test@test", "commit", "-q", "-m", "first");
+        for (int i = 0; i < 20; i++) {
+            write(repo.resolve(files.get(i)), content(i, "second"));
+        }
+        git(repo, "-c", "user.name=test", "-c", "user.email=test@test", "commit", "-q", "-a", "-m", "second");
+
+        try (GitCommit commit = GitCommit.open(repo, "HEAD~1")) {
+            List<String> expected = new ArrayList<>();
+            files.forEach(f -> expected.add(repo.resolve(f).toString()));
+            Collections.sort(expected);
+            Assert.assertEquals(expected, commit.files(".java"));
+            ExecutorService executor = Executors.newFixedThreadPool(4);
+            try {
+                List<Future<byte[]>> reads = new ArrayList<>();
+                for (int run = 0; run < 5; run++) {
+                    for (String f : files) {
+                        reads.add(executor.submit(() -> commit.readBytes(repo.resolve(f).toString())));
+                    }
+                }
+                for (int r = 0; r < reads.size(); r++) {
+                    Assert.assertEquals(content(r % files.size(), "first"), new String(reads.get(r).get(), StandardCharsets.UTF_8));
+                }
+            } finally {
+                executor.shutdown();
+            }
+            try {
+                commit.read(repo.resolve("src/Missing.java").toString());
+                Assert.fail();
+            } catch (NoSuchFileException e) {
+                Assert.assertNull(commit.contentId(repo.resolve("src/Missing.java").toString()));
+            }
+        }
+        try (GitCommit commit = GitCommit.open(repo.resolve("src/p1"), "HEAD")) {
+            Assert.assertEquals(Arrays.asList(repo.resolve("src/p1/C1.java").toString(), repo.resolve("src/p1/C10.java").toString()),
+                    commit.files(".java").subList(0, 2));
+            Assert.assertEquals(7, commit.files(".java").size());
+            Assert.assertEquals(content(1, "second"), commit.read(repo.resolve("src/p1/C1.java").toString()).getText());
+        }
+    }
+
+    private static String content(int i, String commit) {
+        return "class C" + i + " {\n    String commit = \"" + commit + "\";\n}\n";
+    }
+
+    private static void write(Path file, String content) throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void git(Path repo, String... args) throws IOException, InterruptedException {
+        String[] command = new String[args.length + 3];
+        command[0] = "git";
+        command[1] = "-C";
+        command[2] = repo.toString();
+        System.arraycopy(args, 0, command, 3, args.length);
+        Assert.assertEquals(0, new ProcessBuilder(command).inheritIO().start().waitFor());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.walk(TMP_DIR)
+                .sorted(Comparator.reverseOrder())
+                .map(Path::toFile)
+                .forEach(File::delete);
+    }
+}
@@ -0,0 +1,113 @@
+package git;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import utils.RepositoryFiles;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class GitRepositoryTest {
+
+    private static final Path TMP_DIR = Paths.get("src/test/resources/tmp/git").toAbsolutePath();
+    private static final List<String> FILES = Arrays.asList("src/A.java", "src/b/B.java", "target/generated/G.java",
+            "build/H.java", "node_modules/x/N.java", "src/Untracked.java", "src/Kept.java", "src/notes.txt");
+    private static final List<String> IGNORE = Arrays.asList("# build outputs", "target/", "/build", "node_modules",
+            "Untracked.java", "*.java.orig", "!Kept.java");
+
+    private Path outsideRepository;
+
+    @Before
+    public void setUp() throws IOException {
+        Files.createDirectories(TMP_DIR);
+        outsideRepository = Files.createTempDirectory("not_a_git_repo");
+    }
+
+    @Test
+    public void listTracked_lists_the_files_of_the_index_only() throws IOException, InterruptedException {
+        Path repo = TMP_DIR.resolve("repo");
+        write(repo);
+        git(repo, "init", "-q");
+        git(repo, "add", "-f", "src/A.java", "src/b/B.java", "src/Kept.java", "build/H.java");
+        Files.delete(repo.resolve("src/Kept.java"));
+
+        List<String> expected = absolute(repo, "build/H.java", "src/A.java", "src/b/B.java");
+        Assert.assertEquals(expected, RepositoryFiles.listTracked(repo.toString(), "java", null, null, false));
+        Assert.assertEquals(absolute(repo, "src/b/B.java"), RepositoryFiles.listTracked(repo.toString(), "java", Collections.singletonList("B"), null, false));
+        Assert.assertEquals(absolute(repo, "src/b/B.java"), RepositoryFiles.listTracked(repo.resolve("src/b").toString(), "java", null, null, false));
+        Assert.assertNull(GitRepository.open(outsideRepository));
+    }
+
+    @Test
+    public void listTracked_lists_an_unmerged_file_once() throws IOException, InterruptedException {
+        Path repo = TMP_DIR.resolve("repo");
+        write(repo);
+        git(repo, "init", "-q");
+        git(repo, "add", "src/A.java");
+        git(repo, "-c", "user.name=test", "-c", "user.email=test@test", "commit", "-q", "-m", "first");
+        git(repo, "checkout", "-q", "-b", "other");
+        Files.write(repo.resolve("src/A.java"), Collections.singletonList("class A { int other; }"));
+        git(repo, "-c", "user.name=test", "-c", "user.email=test@test", "commit", "-q", "-a", "-m", "other");
+        git(repo, "checkout", "-q", "-");
+        Files.write(repo.resolve("src/A.java"), Collections.singletonList("class A { int first; }"));
+        git(repo, "-c", "user.name=test", "-c", "user.email=test@test", "commit", "-q", "-a", "-m", "second");
+        Process merge = new ProcessBuilder("git", "-C", repo.toString(), "-c", "user.name=test", "-c", "user.email=test@test", "merge", "-q", "other").start();
+        Assert.assertNotEquals(0, merge.waitFor());
+
+        Assert.assertEquals(absolute(repo, "src/A.java"), RepositoryFiles.listTracked(repo.toString(), "java", null, null, false));
+    }
+
+    @Test
+    public void listTracked_outside_of_git_skips_the_ignored_files() throws IOException {
+        write(outsideRepository);
+        Files.write(outsideRepository.resolve("src/b/" + GitIgnore.FILE_NAME), Collections.singletonList("B.java"));
+        Files.createDirectories(outsideRepository.resolve(".git"));
+        Files.write(outsideRepository.resolve(".git/Hidden.java"), Collections.singletonList("class Hidden {}"));
+
+        Assert.assertEquals(absolute(outsideRepository, "src/A.java", "src/Kept.java"),
+                RepositoryFiles.listTracked(outsideRepository.toString(), "java", null, null, false));
+        Assert.assertEquals(8, RepositoryFiles.list(outsideRepository.toString(), "java", null, null, false).size());
+    }
+
+    private static void write(Path repo) throws IOException {
+        for (String f : FILES) {
+            Path p = repo.resolve(f);
+            Files.createDirectories(p.getParent());
+            Files.write(p, Collections.singletonList("class X {}"));
+        }
+        Files.write(repo.resolve(GitIgnore.FILE_NAME), IGNORE);
+    }
+
+    private static List<String> absolute(Path repo, String... files) {
+        return Arrays.stream(files).map(f -> repo.resolve(f).toString()).collect(Collectors.toList());
+    }
+
+    private static void git(Path repo, String... args) throws IOException, InterruptedException {
+        String[] command = new String[args.length + 3];
+        command[0] = "git";
+        command[1] = "-C";
+        command[2] = repo.toString();
+        System.arraycopy(args, 0, command, 3, args.length);
+        Assert.assertEquals(0, new ProcessBuilder(command).inheritIO().start().waitFor());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        for (Path dir : Arrays.asList(TMP_DIR, outsideRepository)) {
+            Files.walk(dir)
+                    .sorted(Comparator.reverseOrder())
+                    .map(Path::toFile)
+                    .forEach(File::delete);
+        }
+    }
+}
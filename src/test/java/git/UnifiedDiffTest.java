@@ -0,0 +1,71 @@
+package git;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Map;
+
+public class UnifiedDiffTest {
+
+    @Test
+    public void parse_returns_the_added_lines_of_the_new_versions() throws IOException {
+        String diff = String.join("\n",
+                "diff --git a/src/A.java b/src/A.java",
+                "index 1111111..2222222 100644",
+                "--- a/src/A.java",
+                "+++ b/src/A.java",
+                "@@ -2,3 +2,4 @@ class A {",
+                "     int a;",
+                "--- removed line that looks like a header",
+                "+    int b;",
+                "+    int c;",
+                "     int d;",
+                "@@ -10 +11 @@",
+                "-}",
+                "+} // end",
+                "\\ No newline at end of file",
+                "diff --git a/src/New.java b/src/New.java",
+                "new file mode 100644",
+                "--- /dev/null",
+                "+++ b/src/New.java",
+                "@@ -0,0 +1,2 @@",
+                "+class New {",
+                "+}",
+                "diff --git a/src/Deleted.java b/src/Deleted.java",
+                "deleted file mode 100644",
+                "--- a/src/Deleted.java",
+                "+++ /dev/null",
+                "@@ -1,2 +0,0 @@",
+                "-class Deleted {",
+                "-}",
+                "--- Plain.java\t2024-01-01 00:00:00.000000000 +0000",
+                "+++ Plain.java\t2024-01-02 00:00:00.000000000 +0000",
+                "@@ -5,0 +6 @@",
+                "+    // added",
+                "");
+        Map<String, BitSet> lines = UnifiedDiff.parse(diff);
+        Assert.assertEquals(Arrays.asList("Plain.java", "src/A.java", "src/New.java"), Arrays.asList(lines.keySet().toArray()));
+        Assert.assertEquals(bits(3, 4, 11), lines.get("src/A.java"));
+        Assert.assertEquals(bits(1, 2), lines.get("src/New.java"));
+        Assert.assertEquals(bits(6), lines.get("Plain.java"));
+    }
+
+    @Test
+    public void newRevision_is_the_right_side_of_the_range() {
+        Assert.assertEquals("B", UnifiedDiff.newRevision("A..B"));
+        Assert.assertEquals("B", UnifiedDiff.newRevision("A...B"));
+        Assert.assertEquals("HEAD", UnifiedDiff.newRevision("A.."));
+        Assert.assertNull(UnifiedDiff.newRevision("A"));
+    }
+
+    private static BitSet bits(int... set) {
+        BitSet res = new BitSet();
+        for (int i : set) {
+            res.set(i);
+        }
+        return res;
+    }
+}
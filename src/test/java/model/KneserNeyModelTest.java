@@ -0,0 +1,180 @@
+package model;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class KneserNeyModelTest {
+
+    private static List<Iterable<String>> corpus() {
+        List<Iterable<String>> res = new ArrayList<>();
+        res.add(Arrays.asList("int", "i", "=", "0", ";"));
+        res.add(Arrays.asList("int", "j", "=", "i", ";"));
+        res.add(Arrays.asList("return", "i", ";"));
+        res.add(Arrays.asList("i", "++", ";"));
+        res.add(Arrays.asList("int", "k", "=", "0", ";"));
+        res.add(Collections.singletonList("}"));
+        return res;
+    }
+
+    @Test
+    public void crossEntropy_seen_sentence_is_more_natural() {
+        KneserNeyModel model = new KneserNeyModel(3, 1).train(corpus());
+        double seen = model.crossEntropy(Arrays.asList("int", "i", "=", "0", ";"));
+        double unseen = model.crossEntropy(Arrays.asList("while", "(", "k", ")", "{"));
+        Assert.assertTrue(seen > 0);
+        Assert.assertTrue(seen < unseen);
+    }
+
+    @Test
+    public void crossEntropy_does_not_depend_on_training_order() {
+        List<Iterable<String>> corpus = corpus();
+        KneserNeyModel model = new KneserNeyModel(4, 1).train(corpus);
+        Collections.reverse(corpus);
+        KneserNeyModel reversed = new KneserNeyModel(4, 1).train(corpus);
+        for (Iterable<String> sentence : corpus) {
+            Assert.assertEquals(model.crossEntropy(sentence), reversed.crossEntropy(sentence), 0d);
+        }
+    }
+
+    @Test
+    public void crossEntropy_threshold_scores_rare_tokens_as_unknown() {
+        KneserNeyModel model = new KneserNeyModel(2, 2).train(corpus());
+        Assert.assertEquals(model.crossEntropy(Arrays.asList("int", "j")), model.crossEntropy(Arrays.asList("int", "never_seen")), 0d);
+    }
+
+    @Test
+    public void train_counts_rare_tokens_as_unknown() {
+        List<String> query = Arrays.asList("int", "never_seen", "=", "0", ";");
+        KneserNeyModel cutoff = new KneserNeyModel(3, 2).train(corpus());
+        KneserNeyModel noCutoff = new KneserNeyModel(3, 2);
+        corpus().forEach(noCutoff::add);
+        // the unknown token gets the mass of the rare tokens instead of the uniform floor only.
+        Assert.assertTrue(cutoff.crossEntropy(query) < noCutoff.crossEntropy(query));
+        Assert.assertEquals(Vocabulary.UNK, cutoff.getVocabulary().id("j"));
+    }
+
+    @Test
+    public void probabilities_sum_to_one_with_and_without_cutoff() {
+        // "d" is seen once: counted as unknown by the cutoff, which leaves one unigram seen once for the discount.
+        List<Iterable<String>> corpus = Arrays.asList(Arrays.asList("a", "b"), Arrays.asList("a", "c"), Arrays.asList("b", "c"), Arrays.asList("a", "d"));
+        for (int threshold = 1; threshold <= 2; threshold++) {
+            KneserNeyModel model = new KneserNeyModel(1, threshold).train(corpus);
+            Assert.assertTrue(model.getCounts().discount(1) > 0);
+            Vocabulary vocabulary = model.getVocabulary();
+            // a unigram scores the end delimiter alone, and each word followed by it.
+            double eosBits = model.crossEntropy(Collections.emptyList());
+            double sum = Math.pow(2, -eosBits) + probability(model, "never_seen", eosBits);
+            for (int id = Vocabulary.EOS + 1; id < vocabulary.size(); id++) {
+                sum += probability(model, vocabulary.token(id), eosBits);
+            }
+            Assert.assertEquals(1d, sum, 1e-9);
+        }
+    }
+
+    @Test
+    public void crossEntropy_of_unseen_word_is_finite_without_discount() {
+        // every bigram seen 3 times: no count-of-counts, so no discount at order 2.
+        List<Iterable<String>> corpus = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            corpus.add(Arrays.asList("a", "b"));
+        }
+        KneserNeyModel model = new KneserNeyModel(2, 1).train(corpus);
+        Assert.assertEquals(0d, model.getCounts().discount(2), 0d);
+        double entropy = model.crossEntropy(Arrays.asList("a", "never_seen"));
+        Assert.assertFalse(Double.isInfinite(entropy) || Double.isNaN(entropy));
+        Assert.assertTrue(entropy > model.crossEntropy(Arrays.asList("a", "b")));
+    }
+
+    @Test
+    public void trainer_applies_the_cutoff_of_the_whole_training_set() throws Exception {
+        List<Iterable<String>> corpus = corpus();
+        KneserNeyModel expected = new KneserNeyModel(3, 2).train(corpus);
+        ModelTrainer trainer = KneserNeyModel.trainer(3, 2);
+        trainer.add(1, corpus.subList(3, 6));
+        trainer.add(0, Corpus.of(corpus.subList(0, 3)));
+        LanguageModel model = trainer.train();
+        for (Iterable<String> sentence : corpus) {
+            Assert.assertEquals(expected.crossEntropy(sentence), model.crossEntropy(sentence), 0d);
+        }
+        Assert.assertEquals(expected.crossEntropy(Arrays.asList("int", "never_seen")), model.crossEntropy(Arrays.asList("int", "never_seen")), 0d);
+    }
+
+    @Test
+    public void remove_gives_the_model_trained_without_the_sentences() {
+        List<Iterable<String>> corpus = corpus();
+        List<Iterable<String>> leftOut = corpus.subList(3, 6);
+        List<Iterable<String>> kept = new ArrayList<>(corpus.subList(0, 3));
+        KneserNeyModel expected = new KneserNeyModel(3, 1).train(kept);
+        KneserNeyModel subtracted = new KneserNeyModel(3, 1).train(corpus);
+        leftOut.forEach(subtracted::remove);
+        for (Iterable<String> sentence : corpus) {
+            Assert.assertEquals(expected.crossEntropy(sentence), subtracted.crossEntropy(sentence), 0d);
+        }
+    }
+
+    @Test
+    public void remover_subtracts_the_corpus_added_by_the_trainer() {
+        List<Iterable<String>> corpus = corpus();
+        KneserNeyModel expected = new KneserNeyModel(3, 1).train(new ArrayList<>(corpus.subList(0, 3)));
+        KneserNeyModel model = new KneserNeyModel(3, 1);
+        model.trainer().add(0, Corpus.of(corpus));
+        model.remover().add(0, Corpus.of(corpus.subList(3, 6)));
+        for (Iterable<String> sentence : corpus) {
+            Assert.assertEquals(expected.crossEntropy(sentence), model.crossEntropy(sentence), 0d);
+        }
+    }
+
+    @Test
+    public void without_scores_as_the_model_trained_without_the_sentences() {
+        List<Iterable<String>> corpus = corpus();
+        List<Iterable<String>> leftOut = corpus.subList(0, 2);
+        KneserNeyModel expected = new KneserNeyModel(3, 1).train(new ArrayList<>(corpus.subList(2, 6)));
+        KneserNeyModel model = new KneserNeyModel(3, 1).train(corpus);
+        double before = model.crossEntropy(corpus.get(0));
+        LanguageModel without = model.without(leftOut);
+        for (Iterable<String> sentence : corpus) {
+            Assert.assertEquals(expected.crossEntropy(sentence), without.crossEntropy(sentence), 0d);
+        }
+        Assert.assertEquals(before, model.crossEntropy(corpus.get(0)), 0d);
+    }
+
+    @Test
+    public void add_corpus_scores_as_adding_its_sentences() {
+        List<Iterable<String>> sentences = corpus();
+        Corpus corpus = Corpus.of(sentences);
+        Assert.assertEquals(sentences.size(), corpus.size());
+        Assert.assertEquals(sentences.get(0), toList(corpus.sentence(0)));
+        KneserNeyModel expected = new KneserNeyModel(3, 2);
+        sentences.forEach(expected::add);
+        KneserNeyModel model = new KneserNeyModel(3, 2);
+        model.add(corpus);
+        Corpus queries = Corpus.of(Arrays.asList(Arrays.asList("int", "i", "=", "1", ";"), Arrays.asList("never_seen", "i"), Collections.emptyList()));
+        double[] entropies = model.crossEntropies(queries, 0, queries.size());
+        LanguageModel without = model.without(sentences.subList(0, 2));
+        double[] withoutEntropies = without.crossEntropies(queries, 1, 3);
+        for (int s = 0; s < queries.size(); s++) {
+            Assert.assertEquals(expected.crossEntropy(queries.sentence(s)), entropies[s], 0d);
+            if (s > 0) {
+                Assert.assertEquals(without.crossEntropy(queries.sentence(s)), withoutEntropies[s - 1], 0d);
+            }
+        }
+    }
+
+    /**
+     * @return the unigram probability of the token, from the entropy of the token followed by the end delimiter.
+     */
+    private static double probability(KneserNeyModel model, String token, double eosBits) {
+        return Math.pow(2, -(2 * model.crossEntropy(Collections.singletonList(token)) - eosBits));
+    }
+
+    private static List<String> toList(Iterable<String> tokens) {
+        List<String> res = new ArrayList<>();
+        tokens.forEach(res::add);
+        return res;
+    }
+}
@@ -0,0 +1,110 @@
+package model;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+public class ModelFileTest {
+
+    private static final Path TMP_DIR = Paths.get("src/test/resources/tmp").toAbsolutePath();
+
+    static List<Iterable<String>> corpus() {
+        List<Iterable<String>> res = new ArrayList<>();
+        res.add(Arrays.asList("public", "class", "User", "{"));
+        res.add(Arrays.asList("private", "String", "name", ";"));
+        res.add(Arrays.asList("private", "Role", "role", ";"));
+        res.add(Arrays.asList("public", "String", "getName", "(", ")", "{"));
+        res.add(Arrays.asList("return", "name", ";"));
+        res.add(Arrays.asList("public", "Role", "getRole", "(", ")", "{"));
+        res.add(Arrays.asList("return", "role", ";"));
+        res.add(Collections.singletonList("}"));
+        res.add(Arrays.asList("\u00e9", "\u00fc", "\u540d\u524d"));
+        return res;
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        Files.createDirectories(TMP_DIR);
+    }
+
+    @Test
+    public void read_returns_the_written_model() throws IOException {
+        Path file = TMP_DIR.resolve("model.bin");
+        KneserNeyModel model = new KneserNeyModel(4, 1).train(corpus());
+        ModelFile.write(model, file);
+        KneserNeyModel loaded = ModelFile.read(file);
+        Assert.assertEquals(4, loaded.getSize());
+        Assert.assertEquals(1, loaded.getThreshold());
+        for (Iterable<String> sentence : corpus()) {
+            Assert.assertEquals(model.crossEntropy(sentence), loaded.crossEntropy(sentence), 0d);
+        }
+        List<String> unseen = Arrays.asList("return", "getRole", "(", ")", ";");
+        Assert.assertEquals(model.crossEntropy(unseen), loaded.crossEntropy(unseen), 0d);
+    }
+
+    @Test
+    public void read_returns_the_written_model_larger_than_the_read_buffer() throws IOException {
+        Path file = TMP_DIR.resolve("model.bin");
+        List<Iterable<String>> corpus = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) {
+            corpus.add(Arrays.asList("token" + i, "token" + (i * 7 % 20000), "token" + (i * 13 % 20000)));
+        }
+        KneserNeyModel model = new KneserNeyModel(3, 1).train(corpus);
+        ModelFile.write(model, file);
+        Assert.assertTrue(Files.size(file) > 2 << 20);
+        KneserNeyModel loaded = ModelFile.read(file);
+        for (int i = 0; i < corpus.size(); i += 97) {
+            Assert.assertEquals(model.crossEntropy(corpus.get(i)), loaded.crossEntropy(corpus.get(i)), 0d);
+        }
+    }
+
+    @Test
+    public void read_model_can_be_trained_further() throws IOException {
+        Path file = TMP_DIR.resolve("model.bin");
+        List<Iterable<String>> corpus = corpus();
+        List<String> extra = Arrays.asList("private", "int", "age", ";");
+        ModelFile.write(new KneserNeyModel(3, 1).train(corpus), file);
+        KneserNeyModel loaded = ModelFile.read(file);
+        loaded.add(extra);
+        corpus.add(extra);
+        KneserNeyModel expected = new KneserNeyModel(3, 1).train(corpus);
+        for (Iterable<String> sentence : corpus) {
+            Assert.assertEquals(expected.crossEntropy(sentence), loaded.crossEntropy(sentence), 0d);
+        }
+    }
+
+    @Test
+    public void map_scores_as_the_written_model() throws IOException {
+        Path file = TMP_DIR.resolve("model.bin");
+        KneserNeyModel model = new KneserNeyModel(4, 2).train(corpus());
+        ModelFile.write(model, file);
+        MappedKneserNeyModel mapped = ModelFile.map(file);
+        Assert.assertEquals(4, mapped.getSize());
+        Assert.assertEquals(2, mapped.getThreshold());
+        List<Iterable<String>> sentences = corpus();
+        sentences.add(Arrays.asList("return", "getRole", "(", ")", ";"));
+        sentences.add(Arrays.asList("never", "seen", "tokens"));
+        for (Iterable<String> sentence : sentences) {
+            Assert.assertEquals(model.crossEntropy(sentence), mapped.crossEntropy(sentence), 0d);
+        }
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.walk(TMP_DIR)
+                .sorted(Comparator.reverseOrder())
+                .map(Path::toFile)
+                .forEach(java.io.File::delete);
+    }
+}
@@ -0,0 +1,102 @@
+package model;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ModelRegistryTest {
+
+    @Test
+    public void get_trains_once_for_concurrent_requests() throws ExecutionException, InterruptedException {
+        ModelRegistry registry = new ModelRegistry(2);
+        AtomicInteger trainings = new AtomicInteger();
+        LanguageModel trained = tokens -> 1d;
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<LanguageModel>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(() -> registry.get("key", () -> {
+                    trainings.incrementAndGet();
+                    Thread.sleep(50);
+                    return trained;
+                })));
+            }
+            for (Future<LanguageModel> f : futures) {
+                Assert.assertTrue(trained == f.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        Assert.assertEquals(1, trainings.get());
+    }
+
+    @Test
+    public void get_evicts_the_least_recently_used_models() throws ExecutionException, InterruptedException {
+        ModelRegistry registry = new ModelRegistry(2);
+        AtomicInteger trainings = new AtomicInteger();
+        for (String key : new String[]{"a", "b", "a", "c", "a", "b"}) {
+            registry.get(key, () -> {
+                trainings.incrementAndGet();
+                return tokens -> 1d;
+            });
+        }
+        // a, b, c trained, then b again as it had been evicted by c.
+        Assert.assertEquals(4, trainings.get());
+        Assert.assertEquals(2, registry.size());
+    }
+
+    @Test
+    public void get_evicts_the_least_recently_used_models_beyond_the_memory_bound() throws ExecutionException, InterruptedException {
+        ModelRegistry registry = new ModelRegistry(8, 250);
+        for (String key : new String[]{"a", "b", "c"}) {
+            registry.get(key, () -> new LanguageModel() {
+                @Override
+                public double crossEntropy(Iterable<String> tokens) {
+                    return 1d;
+                }
+
+                @Override
+                public long estimatedBytes() {
+                    return 100L;
+                }
+            });
+        }
+        Assert.assertEquals(2, registry.size());
+        Assert.assertEquals(200L, registry.bytes());
+    }
+
+    @Test
+    public void estimatedBytes_grows_with_the_training_set() {
+        KneserNeyModel model = new KneserNeyModel(3, 1);
+        model.add(Arrays.asList("int", "i", "=", "0", ";"));
+        long bytes = model.estimatedBytes();
+        Assert.assertTrue(bytes > 0);
+        for (int i = 0; i < 1000; i++) {
+            model.add(Arrays.asList("int", "i" + i, "=", String.valueOf(i), ";"));
+        }
+        Assert.assertTrue(model.estimatedBytes() > bytes);
+    }
+
+    @Test
+    public void get_does_not_keep_failed_trainings() throws InterruptedException, ExecutionException {
+        ModelRegistry registry = new ModelRegistry(2);
+        try {
+            registry.get("key", () -> {
+                throw new IllegalStateException("failed");
+            });
+            Assert.fail();
+        } catch (ExecutionException e) {
+            Assert.assertEquals(0, registry.size());
+        }
+        LanguageModel trained = tokens -> 1d;
+        Assert.assertTrue(trained == registry.get("key", () -> trained));
+    }
+}
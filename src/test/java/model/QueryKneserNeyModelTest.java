@@ -0,0 +1,44 @@
+package model;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class QueryKneserNeyModelTest {
+
+    private static List<Iterable<String>> corpus() {
+        List<Iterable<String>> res = new ArrayList<>();
+        res.add(Arrays.asList("int", "i", "=", "0", ";"));
+        res.add(Arrays.asList("int", "j", "=", "i", ";"));
+        res.add(Arrays.asList("return", "i", ";"));
+        res.add(Arrays.asList("i", "++", ";"));
+        res.add(Arrays.asList("int", "k", "=", "0", ";"));
+        res.add(Arrays.asList("k", "=", "i", "+", "j", ";"));
+        return res;
+    }
+
+    @Test
+    public void crossEntropy_same_as_full_model() throws Exception {
+        List<Iterable<String>> queries = new ArrayList<>();
+        queries.add(Arrays.asList("int", "i", "=", "j", ";"));
+        queries.add(Arrays.asList("while", "(", "i", ")", "{"));
+        queries.add(new ArrayList<>());
+        for (int n = 1; n <= 4; n++) {
+            for (int threshold = 1; threshold <= 2; threshold++) {
+                KneserNeyModel full = new KneserNeyModel(n, threshold).train(corpus());
+                QueryKneserNeyModel model = new QueryKneserNeyModel(n, threshold, queries).train(corpus());
+                ModelTrainer trainer = QueryKneserNeyModel.trainer(n, threshold, queries);
+                trainer.add(1, corpus().subList(3, 6));
+                trainer.add(0, corpus().subList(0, 3));
+                LanguageModel trained = trainer.train();
+                for (Iterable<String> query : queries) {
+                    Assert.assertEquals(full.crossEntropy(query), model.crossEntropy(query), 0d);
+                    Assert.assertEquals(full.crossEntropy(query), trained.crossEntropy(query), 0d);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package parser;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import output.CsvPrinter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+public class LineResultsTest {
+
+    private static final Path TMP_DIR = Paths.get("src/test/resources/tmp/line_results").toAbsolutePath();
+
+    @Before
+    public void setUp() throws IOException {
+        Files.createDirectories(TMP_DIR);
+    }
+
+    @Test
+    public void sortByEntropy_same_order_and_csv_as_sorting_lines() throws IOException {
+        Random random = new Random(7);
+        double[] entropies = {0.5, -0.0, 0.0, 1.25, Double.NaN, Double.POSITIVE_INFINITY, 3.0};
+        List<Line> lines = new ArrayList<>();
+        LineResults results = new LineResults(0);
+        for (int i = 0; i < 5000; i++) {
+            String path = "/pkg/File" + random.nextInt(40) + ".java";
+            List<String> tokens = Arrays.asList("a", "b", "c").subList(0, 1 + random.nextInt(3));
+            // few distinct entropies, to check that equal ones keep their order.
+            double entropy = entropies[random.nextInt(entropies.length)];
+            Line line = new Line(path, i + 1, tokens);
+            line.calculateEntropy(t -> entropy);
+            lines.add(line);
+            results.setEntropy(results.add(path, i + 1, tokens.size()), entropy);
+        }
+        lines.sort(Comparator.comparing(Line::getEntropy));
+        results.sortByEntropy();
+
+        Assert.assertEquals(lines.size(), results.size());
+        for (int i = 0; i < lines.size(); i++) {
+            Assert.assertEquals(lines.get(i), results.get(i));
+            Assert.assertEquals(lines.get(i).getEntropy(), results.get(i).getEntropy());
+            Assert.assertEquals(lines.get(i).getTokensCount(), results.getTokensCount(i));
+        }
+        Path expected = TMP_DIR.resolve("lines.csv");
+        Path actual = TMP_DIR.resolve("results.csv");
+        new CsvPrinter<>(expected.toString(), lines).print();
+        CsvPrinter.print(actual.toString(), results);
+        Assert.assertEquals(Files.readAllLines(expected), Files.readAllLines(actual));
+    }
+
+    @Test
+    public void add_grows_the_columns_and_shares_the_paths() {
+        LineResults results = new LineResults(1);
+        results.add("/A.java", 1, 3);
+        results.add("/B.java", 2, 4);
+        results.add("/A.java", 3, 5);
+        Assert.assertEquals(3, results.size());
+        Assert.assertTrue(results.getFilePath(0) == results.getFilePath(2));
+        Assert.assertTrue(Double.isNaN(results.getEntropy(1)));
+        Assert.assertEquals(12, results.tokensCount());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.walk(TMP_DIR)
+                .sorted(Comparator.reverseOrder())
+                .map(Path::toFile)
+                .forEach(File::delete);
+    }
+}
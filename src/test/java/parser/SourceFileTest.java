@@ -0,0 +1,64 @@
+package parser;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+public class SourceFileTest {
+
+    private static final Path TMP_DIR = Paths.get("src/test/resources/tmp/source_file").toAbsolutePath();
+
+    @Before
+    public void setUp() throws IOException {
+        Files.createDirectories(TMP_DIR);
+    }
+
+    @Test
+    public void lineCount_same_as_files_lines() throws IOException {
+        String[] contents = {"", "a", "a\n", "a\nb", "\n\n", "a\r\nb\r\n", "a\rb\r", "a\r\n\r\nb", "\u00e9\n\u4e2d"};
+        for (int i = 0; i < contents.length; i++) {
+            Path p = TMP_DIR.resolve(i + ".java");
+            Files.write(p, contents[i].getBytes(StandardCharsets.UTF_8));
+            long expected;
+            try (Stream<String> lines = Files.lines(p, StandardCharsets.UTF_8)) {
+                expected = lines.count();
+            }
+            Assert.assertEquals("content " + i, expected, SourceFile.read(p).lineCount());
+        }
+    }
+
+    @Test
+    public void reader_returns_the_decoded_text() throws IOException {
+        Path p = TMP_DIR.resolve("text.java");
+        Files.write(p, "int \u00e9 = 0;\n".getBytes(StandardCharsets.UTF_8));
+        try (BufferedReader reader = new BufferedReader(SourceFile.read(p).reader())) {
+            Assert.assertEquals("int \u00e9 = 0;", reader.readLine());
+            Assert.assertNull(reader.readLine());
+        }
+    }
+
+    @Test(expected = CharacterCodingException.class)
+    public void read_rejects_invalid_utf8() throws IOException {
+        Path p = TMP_DIR.resolve("latin1.java");
+        Files.write(p, new byte[]{'a', (byte) 0xe9, '\n'});
+        SourceFile.read(p);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(TMP_DIR)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package utils;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class RepositoryFilesTest {
+
+    private static final Path TMP_DIR = Paths.get("src/test/resources/tmp/repository_files").toAbsolutePath();
+
+    @Before
+    public void setUp() throws IOException {
+        Files.createDirectories(TMP_DIR);
+    }
+
+    @Test
+    public void list_selects_as_walking_once_per_word_and_neighbour_directory() throws IOException {
+        String[] files = {"src/main/A.java", "src/main/util/B.java", "src/main/util/deep/C.java", "src/test/ATest.java",
+                "src/test/fixtures/D.java", "examples/E.java", "examples/readme.md", "lib/F.java", "lib/G.txt"};
+        for (String f : files) {
+            Path p = TMP_DIR.resolve(f);
+            Files.createDirectories(p.getParent());
+            Files.write(p, Collections.singletonList("class X {}"));
+        }
+        String repo = TMP_DIR.toString();
+        List<List<String>> includes = Arrays.asList(null, Arrays.asList("util"), Arrays.asList("Test", "lib"), Arrays.asList("nowhere"));
+        List<List<String>> excludes = Arrays.asList(null, Arrays.asList("test", "example"), Arrays.asList("deep"));
+        for (List<String> include : includes) {
+            for (List<String> exclude : excludes) {
+                for (boolean neighbours : new boolean[]{false, true}) {
+                    Assert.assertEquals(include + " " + exclude + " " + neighbours,
+                            walkedPerWord(repo, include, exclude, neighbours),
+                            RepositoryFiles.list(repo, "java", include, exclude, neighbours));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void matches_same_as_any_word_contained() {
+        Random random = new Random(3);
+        for (int run = 0; run < 200; run++) {
+            List<String> words = new ArrayList<>();
+            for (int w = random.nextInt(4); w >= 0; w--) {
+                words.add(randomText(random, 1 + random.nextInt(3)));
+            }
+            WordMatcher matcher = new WordMatcher(words);
+            for (int t = 0; t < 20; t++) {
+                String text = randomText(random, random.nextInt(12));
+                Assert.assertEquals(words + " in " + text, words.stream().anyMatch(text::contains), matcher.matches(text));
+            }
+        }
+        Assert.assertTrue(new WordMatcher(Arrays.asList("x", "")).matches("abc"));
+        Assert.assertFalse(new WordMatcher(Collections.emptyList()).matches("abc"));
+    }
+
+    private static String randomText(Random random, int length) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            sb.append("ab/\u00e9".charAt(random.nextInt(4)));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * the selection made by walking the repository once per include word and once per neighbour directory.
+     */
+    private static List<String> walkedPerWord(String repo, List<String> include, List<String> exclude, boolean neighbours) throws IOException {
+        Set<String> paths = new HashSet<>();
+        if (include == null) {
+            paths.addAll(walk(repo, null));
+        } else {
+            for (String w : include) {
+                paths.addAll(walk(repo, w));
+            }
+        }
+        if (neighbours) {
+            Set<String> neighbourFiles = new HashSet<>();
+            for (String p : paths) {
+                neighbourFiles.addAll(walk(Paths.get(p).getParent().toString(), null));
+            }
+            paths.addAll(neighbourFiles);
+        }
+        return paths.stream().filter(p -> exclude == null || exclude.stream().noneMatch(p::contains)).sorted().collect(Collectors.toList());
+    }
+
+    private static List<String> walk(String directory, String word) throws IOException {
+        try (Stream<Path> s = Files.walk(Paths.get(directory))) {
+            return s.filter(Files::isRegularFile).map(p -> p.toAbsolutePath().toString())
+                    .filter(p -> p.endsWith(".java") && (word == null || p.contains(word))).collect(Collectors.toList());
+        }
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.walk(TMP_DIR)
+                .sorted(Comparator.reverseOrder())
+                .map(Path::toFile)
+                .forEach(File::delete);
+    }
+}
@@ -0,0 +1,135 @@
+package utils;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ThreadUtilsTest {
+
+    private final ThreadUtils.TaskListener defaultListener = ThreadUtils.getTaskListener();
+
+    @Test
+    public void runParallel_keeps_submission_order_and_bounds_tasks_in_flight() throws ExecutionException, InterruptedException {
+        ThreadUtils.setParallelism(3);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<Callable<Integer>> callables = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            int value = i;
+            callables.add(() -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                Thread.sleep(value % 3);
+                running.decrementAndGet();
+                return value;
+            });
+        }
+        List<Integer> result = ThreadUtils.runParallel(callables);
+        for (int i = 0; i < 200; i++) {
+            Assert.assertEquals(i, (int) result.get(i));
+        }
+        Assert.assertTrue(maxRunning.get() <= 3);
+    }
+
+    @Test
+    public void runParallel_reports_every_task_duration() throws ExecutionException, InterruptedException {
+        List<String> tasks = new ArrayList<>();
+        ThreadUtils.setTaskListener((task, nanos) -> {
+            synchronized (tasks) {
+                tasks.add(task);
+            }
+        });
+        List<Callable<String>> callables = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            String name = "task" + i;
+            callables.add(new Callable<String>() {
+                @Override
+                public String call() {
+                    return name;
+                }
+
+                @Override
+                public String toString() {
+                    return name;
+                }
+            });
+        }
+        List<String> result = ThreadUtils.runParallel(callables);
+        Assert.assertEquals(10, tasks.size());
+        Assert.assertTrue(tasks.containsAll(result));
+    }
+
+    @Test
+    public void setSubmitterTaskListener_only_reports_the_tasks_of_the_calling_thread() throws Exception {
+        List<String> tasks = new ArrayList<>();
+        ThreadUtils.setSubmitterTaskListener((task, nanos) -> {
+            synchronized (tasks) {
+                tasks.add(task);
+            }
+        });
+        try {
+            Thread other = new Thread(() -> {
+                try {
+                    ThreadUtils.runParallel(Collections.singletonList(named("other")));
+                } catch (ExecutionException | InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            other.start();
+            other.join();
+            ThreadUtils.runParallel(Collections.singletonList(named("mine")));
+        } finally {
+            ThreadUtils.setSubmitterTaskListener(null);
+        }
+        Assert.assertEquals(Collections.singletonList("mine"), tasks);
+    }
+
+    private static Callable<String> named(String name) {
+        return new Callable<String>() {
+            @Override
+            public String call() {
+                return name;
+            }
+
+            @Override
+            public String toString() {
+                return name;
+            }
+        };
+    }
+
+    @Test
+    public void runStreaming_consumes_every_result_on_the_calling_thread() throws ExecutionException, InterruptedException {
+        ThreadUtils.setParallelism(4);
+        Thread caller = Thread.currentThread();
+        List<Callable<Integer>> callables = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            int value = i;
+            callables.add(() -> {
+                Thread.sleep((100 - value) % 4);
+                return value * 2;
+            });
+        }
+        int[] consumed = new int[100];
+        ThreadUtils.runStreaming(callables, (index, result) -> {
+            Assert.assertEquals(caller, Thread.currentThread());
+            Assert.assertEquals(index * 2, (int) result);
+            consumed[index]++;
+        });
+        for (int c : consumed) {
+            Assert.assertEquals(1, c);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        ThreadUtils.setTaskListener(defaultListener);
+        ThreadUtils.setParallelism(ThreadUtils.DEFAULT_PARALLELISM);
+    }
+}